@@ -0,0 +1,131 @@
+package fr.jixter.badgeuse.domain;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.jixter.badgeuse.config.BadgeuseProperties.BadgeEncoding;
+import fr.jixter.badgeuse.config.MongoMappingConfig;
+import fr.jixter.badgeuse.domain.dto.TimeReport;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+// Sérialisation JSON (réponses de l'API) et conversion Document MongoDB des objets du domaine,
+// dans les deux encodages des badgeages. La taille BSON d'un badgeage est publiée avec les
+// résultats de badgeRecordToBson (compteur secondaire bsonBytes).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializationBenchmark {
+
+  @Param({"STANDARD", "COMPACT"})
+  private BadgeEncoding encoding;
+
+  private ObjectMapper objectMapper;
+  private MappingMongoConverter converter;
+  private BadgeRecord badgeRecord;
+  private TimeReport timeReport;
+  private String badgeRecordJson;
+  private Document badgeRecordDocument;
+  private DocumentCodec documentCodec;
+  private long badgeRecordBsonBytes;
+
+  @Setup
+  public void setUp() throws JsonProcessingException {
+    // Même configuration Jackson que celle appliquée par Spring Boot (JavaTimeModule, dates ISO)
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    // Même correspondance que celle de MongoMappingConfig
+    MongoCustomConversions conversions = MongoMappingConfig.customConversions(encoding);
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    mappingContext.setFieldNamingStrategy(MongoMappingConfig.fieldNamingStrategy(encoding));
+    mappingContext.afterPropertiesSet();
+    converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    MongoMappingConfig.configureTypeMapper(converter, encoding);
+    converter.afterPropertiesSet();
+    documentCodec = new DocumentCodec();
+
+    badgeRecord =
+        BadgeRecord.builder()
+            .id(new ObjectId().toHexString())
+            .employeeId(new ObjectId().toHexString())
+            .timestamp(LocalDateTime.parse("2025-03-03T08:47:12"))
+            .type(BadgeType.IN)
+            .eventId(UUID.randomUUID().toString())
+            .build();
+    timeReport =
+        TimeReport.builder()
+            .employeeId(badgeRecord.getEmployeeId())
+            .month("2025-03")
+            .totalMinutes(8_912)
+            .sufficient(true)
+            .build();
+    badgeRecordJson = objectMapper.writeValueAsString(badgeRecord);
+    badgeRecordDocument = new Document();
+    converter.write(badgeRecord, badgeRecordDocument);
+    badgeRecordBsonBytes =
+        new RawBsonDocument(badgeRecordDocument, documentCodec).getByteBuffer().remaining();
+  }
+
+  // Compteur publié tel quel (EVENTS) à côté du temps moyen : la taille, pas un débit
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class BsonSize {
+    public long bsonBytes;
+  }
+
+  @Benchmark
+  public String badgeRecordToJson() throws JsonProcessingException {
+    return objectMapper.writeValueAsString(badgeRecord);
+  }
+
+  @Benchmark
+  public BadgeRecord badgeRecordFromJson() throws JsonProcessingException {
+    return objectMapper.readValue(badgeRecordJson, BadgeRecord.class);
+  }
+
+  @Benchmark
+  public String timeReportToJson() throws JsonProcessingException {
+    return objectMapper.writeValueAsString(timeReport);
+  }
+
+  @Benchmark
+  public Document badgeRecordToDocument() {
+    Document document = new Document();
+    converter.write(badgeRecord, document);
+    return document;
+  }
+
+  @Benchmark
+  public BadgeRecord badgeRecordFromDocument() {
+    return converter.read(BadgeRecord.class, badgeRecordDocument);
+  }
+
+  // Conversion puis encodage BSON, tel qu'envoyé à MongoDB à chaque insertion
+  @Benchmark
+  public RawBsonDocument badgeRecordToBson(BsonSize size) {
+    Document document = new Document();
+    converter.write(badgeRecord, document);
+    size.bsonBytes = badgeRecordBsonBytes;
+    return new RawBsonDocument(document, documentCodec);
+  }
+}
@@ -0,0 +1,137 @@
+package fr.jixter.badgeuse.service;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.BadgeType;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import reactor.core.publisher.Flux;
+
+// Calcul du temps travaillé (appariement IN/OUT) et du nombre de jours ouvrés d'un mois
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BadgeTimeBenchmark {
+
+  public enum Scenario {
+    // Un mois classique : arrivée, pause déjeuner et départ chaque jour ouvré
+    REGULAR_MONTH,
+    // Terminal défaillant : chaque badgeage est dupliqué, la moitié des enregistrements est
+    // non appariée
+    NOISY_TERMINAL,
+    // Une année entière de badgeages réguliers
+    REGULAR_YEAR,
+    // Uniquement des IN : aucun badgeage n'est apparié
+    ONLY_IN
+  }
+
+  @State(Scope.Benchmark)
+  public static class Punches {
+
+    @Param({"REGULAR_MONTH", "NOISY_TERMINAL", "REGULAR_YEAR", "ONLY_IN"})
+    public Scenario scenario;
+
+    List<BadgeRecord> sorted;
+    List<BadgeRecord> shuffled;
+
+    @Setup
+    public void setUp() {
+      LocalDate start = LocalDate.parse("2025-03-01");
+      sorted =
+          switch (scenario) {
+            case REGULAR_MONTH -> regularDays(start, start.plusMonths(1), false);
+            case NOISY_TERMINAL -> regularDays(start, start.plusMonths(1), true);
+            case REGULAR_YEAR -> regularDays(start, start.plusYears(1), false);
+            case ONLY_IN -> onlyIn(start, 2_000);
+          };
+      shuffled = new ArrayList<>(sorted);
+      Collections.shuffle(shuffled, new Random(42));
+    }
+  }
+
+  // Liste non triée, comme renvoyée par l'ancienne requête : tri en mémoire puis appariement
+  @Benchmark
+  public PairingSummary pairUnsortedList(Punches punches) {
+    return BadgeService.pairRecords(new ArrayList<>(punches.shuffled));
+  }
+
+  // Flux déjà trié par MongoDB : appariement en mémoire constante
+  @Benchmark
+  public PairingSummary pairSortedFlux(Punches punches) {
+    return BadgeService.pairRecords(Flux.fromIterable(punches.sorted)).block();
+  }
+
+  // Calendrier déjà calculé pour l'année : deux popcounts par requête
+  @State(Scope.Benchmark)
+  public static class Calendar {
+
+    final WorkingDayCalendar calendar = new WorkingDayCalendar(new BadgeuseProperties());
+    final YearMonth month = YearMonth.parse("2025-05");
+    final LocalDate from = LocalDate.parse("2024-03-15");
+    final LocalDate to = LocalDate.parse("2026-03-15");
+
+    @Setup
+    public void setUp() {
+      calendar.workingDays(from, to);
+    }
+  }
+
+  @Benchmark
+  public int workingDaysInMonth(Calendar calendar) {
+    return calendar.calendar.workingDaysInMonth(calendar.month);
+  }
+
+  @Benchmark
+  public int workingDaysOverTwoYears(Calendar calendar) {
+    return calendar.calendar.workingDays(calendar.from, calendar.to);
+  }
+
+  private static List<BadgeRecord> regularDays(LocalDate from, LocalDate to, boolean duplicated) {
+    List<BadgeRecord> records = new ArrayList<>();
+    Random random = new Random(7);
+    for (LocalDate day = from; day.isBefore(to); day = day.plusDays(1)) {
+      if (day.getDayOfWeek().getValue() >= 6) {
+        continue;
+      }
+      LocalDateTime arrival = day.atTime(8, random.nextInt(60));
+      addPunch(records, arrival, BadgeType.IN, duplicated);
+      addPunch(records, day.atTime(12, random.nextInt(30)), BadgeType.OUT, duplicated);
+      addPunch(records, day.atTime(13, 30 + random.nextInt(30)), BadgeType.IN, duplicated);
+      addPunch(records, arrival.plusHours(9), BadgeType.OUT, duplicated);
+    }
+    return records;
+  }
+
+  private static void addPunch(
+      List<BadgeRecord> records, LocalDateTime timestamp, BadgeType type, boolean duplicated) {
+    records.add(punch(timestamp, type));
+    if (duplicated) {
+      records.add(punch(timestamp.plusSeconds(2), type));
+    }
+  }
+
+  private static List<BadgeRecord> onlyIn(LocalDate from, int count) {
+    List<BadgeRecord> records = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      records.add(punch(from.atStartOfDay().plusMinutes(15L * i), BadgeType.IN));
+    }
+    return records;
+  }
+
+  private static BadgeRecord punch(LocalDateTime timestamp, BadgeType type) {
+    return BadgeRecord.builder().employeeId("benchmark").timestamp(timestamp).type(type).build();
+  }
+}
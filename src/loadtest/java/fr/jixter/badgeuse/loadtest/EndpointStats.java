@@ -0,0 +1,36 @@
+package fr.jixter.badgeuse.loadtest;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+// Latences (ns) des réponses réussies d'un endpoint et nombre d'erreurs, pendant un scénario
+final class EndpointStats {
+
+  private final Histogram latencies = new ConcurrentHistogram(3);
+  private final LongAdder errors = new LongAdder();
+
+  void success(long nanos) {
+    latencies.recordValue(nanos);
+  }
+
+  void error() {
+    errors.increment();
+  }
+
+  long requests() {
+    return latencies.getTotalCount() + errors.sum();
+  }
+
+  long errors() {
+    return errors.sum();
+  }
+
+  double percentileMillis(double percentile) {
+    return latencies.getValueAtPercentile(percentile) / 1_000_000.0;
+  }
+
+  double maxMillis() {
+    return latencies.getMaxValue() / 1_000_000.0;
+  }
+}
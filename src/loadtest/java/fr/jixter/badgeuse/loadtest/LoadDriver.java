@@ -0,0 +1,86 @@
+package fr.jixter.badgeuse.loadtest;
+
+import fr.jixter.badgeuse.domain.BadgeType;
+import fr.jixter.badgeuse.domain.dto.BadgeDto;
+import java.time.LocalDateTime;
+import java.util.Map;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Exécute les requêtes d'un scénario contre l'application, au plus 'concurrency' requêtes en
+// cours (modèle fermé : chaque client virtuel attend sa réponse avant la requête suivante)
+final class LoadDriver {
+
+  // Terminaux simulés ; chaque employé badge toujours sur le même (contrôle d'admission)
+  private static final int TERMINALS = 20;
+
+  private final WebClient webClient;
+  private final int concurrency;
+  private final Map<String, EndpointStats> stats;
+
+  LoadDriver(WebClient webClient, int concurrency, Map<String, EndpointStats> stats) {
+    this.webClient = webClient;
+    this.concurrency = concurrency;
+    this.stats = stats;
+  }
+
+  WebClient webClient() {
+    return webClient;
+  }
+
+  int concurrency() {
+    return concurrency;
+  }
+
+  Mono<Void> run(Flux<? extends Mono<?>> calls) {
+    return calls.flatMap(call -> call, concurrency).then();
+  }
+
+  // Mesure une requête de l'abonnement à la fin de la réponse. Une erreur est comptée puis
+  // ignorée : le scénario continue.
+  <T> Mono<T> call(String endpoint, Mono<T> request) {
+    EndpointStats endpointStats = stats.computeIfAbsent(endpoint, key -> new EndpointStats());
+    return Mono.defer(
+        () -> {
+          long start = System.nanoTime();
+          return request
+              .doOnSuccess(result -> endpointStats.success(System.nanoTime() - start))
+              .onErrorResume(
+                  e -> {
+                    endpointStats.error();
+                    return Mono.empty();
+                  });
+        });
+  }
+
+  Mono<Void> punch(String employeeId, LocalDateTime timestamp, BadgeType type) {
+    BadgeDto badge =
+        BadgeDto.builder()
+            .timestamp(timestamp)
+            .type(type)
+            // Identifiant d'événement du terminal, comme en production
+            .eventId(employeeId + "-" + timestamp)
+            .build();
+    return call(
+            "POST /api/badges/employee/{id}",
+            webClient
+                .post()
+                .uri("/api/badges/employee/{id}", employeeId)
+                .header("X-Terminal-Id", terminalId(employeeId))
+                .bodyValue(badge)
+                .retrieve()
+                .toBodilessEntity())
+        .then();
+  }
+
+  private static String terminalId(String employeeId) {
+    return "terminal-" + Math.floorMod(employeeId.hashCode(), TERMINALS);
+  }
+
+  Mono<Void> get(String endpoint, String uri, Object... variables) {
+    // Corps entièrement lu (et ignoré) : la latence couvre toute la réponse, flux NDJSON compris
+    return call(endpoint, webClient.get().uri(uri, variables).retrieve().toBodilessEntity())
+        .then();
+  }
+}
@@ -0,0 +1,8 @@
+package fr.jixter.badgeuse.loadtest;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+// Données communes aux scénarios : employés créés, mois simulé et ses jours ouvrés simulés
+record LoadPlan(List<String> employeeIds, YearMonth month, List<LocalDate> days, int polls) {}
@@ -0,0 +1,260 @@
+package fr.jixter.badgeuse.loadtest;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import fr.jixter.badgeuse.BadgeuseApplication;
+import fr.jixter.badgeuse.domain.Employee;
+import fr.jixter.badgeuse.service.WorkingDayCalendar;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+// Test de charge de bout en bout : utilise le MongoDB de --loadtest.mongo-uri (à défaut ou s'il ne
+// répond pas, démarre un MongoDB embarqué),
+// l'application sur un port libre, crée les employés puis rejoue les scénarios contre les vrais
+// endpoints. Débit et latences p50/p95/p99 sont affichés par scénario et par endpoint.
+//
+// Options (--nom=valeur) :
+//   loadtest.employees    nombre d'employés créés (1000)
+//   loadtest.concurrency  requêtes simultanées au plus (64)
+//   loadtest.days         jours ouvrés simulés, à partir du début du mois (5)
+//   loadtest.month        mois simulé, yyyy-MM (mois précédent)
+//   loadtest.polls        requêtes du scénario STATUS_POLLING (10 par employé)
+//   loadtest.scenarios    scénarios à exécuter, séparés par des virgules (tous)
+//   loadtest.mongo-uri    MongoDB existant (celui de docker-compose.yml avec le profil Maven)
+//   loadtest.report       fichier CSV des résultats
+// Les autres options (par exemple --badgeuse.write-coalescing.enabled=true) sont transmises à
+// l'application.
+public final class LoadTest {
+
+  private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+  private static final String DATABASE = "badgeuse-loadtest";
+  private static final Duration RESPONSE_TIMEOUT = Duration.ofSeconds(30);
+  private static final Duration MONGO_PING_TIMEOUT = Duration.ofSeconds(5);
+
+  private LoadTest() {}
+
+  public static void main(String[] args) throws IOException {
+    SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+    String mongoUri = options.getProperty("loadtest.mongo-uri");
+    if (mongoUri != null && !mongoUri.isBlank()) {
+      if (reachable(mongoUri)) {
+        run(options, mongoUri, args);
+        return;
+      }
+      logger.warn("MongoDB injoignable sur {}, démarrage du MongoDB embarqué", mongoUri);
+    }
+    // Repli : binaire MongoDB téléchargé au premier lancement puis réutilisé depuis ~/.embedmongo
+    try (TransitionWalker.ReachedState<RunningMongodProcess> mongod =
+        Mongod.instance().start(Version.Main.V7_0)) {
+      ServerAddress address = mongod.current().getServerAddress();
+      run(options, "mongodb://" + address.getHost() + ":" + address.getPort(), args);
+    }
+  }
+
+  private static boolean reachable(String mongoUri) {
+    try (MongoClient client = MongoClients.create(mongoUri)) {
+      return Mono.from(client.getDatabase("admin").runCommand(new Document("ping", 1)))
+          .timeout(MONGO_PING_TIMEOUT)
+          .onErrorResume(e -> Mono.empty())
+          .hasElement()
+          .block();
+    }
+  }
+
+  private static void run(SimpleCommandLinePropertySource options, String mongoUri, String[] args)
+      throws IOException {
+    int employees = intOption(options, "loadtest.employees", 1000);
+    int concurrency = intOption(options, "loadtest.concurrency", 64);
+    int days = intOption(options, "loadtest.days", 5);
+    int polls = intOption(options, "loadtest.polls", employees * 10);
+    String month = options.getProperty("loadtest.month");
+    String scenarios = options.getProperty("loadtest.scenarios");
+    List<Scenario> selected =
+        scenarios == null
+            ? List.of(Scenario.values())
+            : Arrays.stream(scenarios.split(","))
+                .map(name -> Scenario.valueOf(name.trim().toUpperCase(Locale.ROOT)))
+                .sorted()
+                .toList();
+
+    // Base dédiée vidée à chaque lancement, pour des résultats reproductibles
+    try (MongoClient client = MongoClients.create(mongoUri)) {
+      Mono.from(client.getDatabase(DATABASE).drop()).block();
+    }
+    ConfigurableApplicationContext context =
+        new SpringApplicationBuilder(BadgeuseApplication.class)
+            .properties(
+                Map.of(
+                    "server.port", "0",
+                    "spring.data.mongodb.uri", mongoUri,
+                    "spring.data.mongodb.database", DATABASE))
+            .run(args);
+    // Boucles d'événements distinctes de celles du serveur, qui tourne dans la même JVM
+    LoopResources loops = LoopResources.create("loadtest");
+    ConnectionProvider connections =
+        ConnectionProvider.builder("loadtest")
+            .maxConnections(concurrency)
+            .pendingAcquireMaxCount(-1)
+            .build();
+    try {
+      int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+      WebClient webClient =
+          WebClient.builder()
+              .baseUrl("http://localhost:" + port)
+              .clientConnector(
+                  new ReactorClientHttpConnector(
+                      HttpClient.create(connections)
+                          .runOn(loops)
+                          .responseTimeout(RESPONSE_TIMEOUT)))
+              .build();
+      YearMonth simulatedMonth =
+          month != null ? YearMonth.parse(month) : YearMonth.now().minusMonths(1);
+      WorkingDayCalendar calendar = context.getBean(WorkingDayCalendar.class);
+      List<LocalDate> simulatedDays =
+          simulatedMonth.atDay(1).datesUntil(simulatedMonth.plusMonths(1).atDay(1))
+              .filter(calendar::isWorkingDay)
+              .limit(days)
+              .toList();
+
+      List<ScenarioResult> results = new ArrayList<>();
+      Map<String, EndpointStats> setupStats = new ConcurrentSkipListMap<>();
+      long setupStart = System.nanoTime();
+      List<String> employeeIds =
+          createEmployees(new LoadDriver(webClient, concurrency, setupStats), employees);
+      results.add(new ScenarioResult("SETUP", System.nanoTime() - setupStart, setupStats));
+      LoadPlan plan = new LoadPlan(employeeIds, simulatedMonth, simulatedDays, polls);
+      logger.info(
+          "{} employés, {} jours simulés en {}, {} requêtes simultanées",
+          employeeIds.size(),
+          simulatedDays.size(),
+          simulatedMonth,
+          concurrency);
+
+      for (Scenario scenario : selected) {
+        Map<String, EndpointStats> stats = new ConcurrentSkipListMap<>();
+        long start = System.nanoTime();
+        scenario.run(new LoadDriver(webClient, concurrency, stats), plan).block();
+        results.add(new ScenarioResult(scenario.name(), System.nanoTime() - start, stats));
+        logger.info("Scénario {} terminé", scenario);
+      }
+
+      report(results, options.getProperty("loadtest.report"));
+    } finally {
+      context.close();
+      connections.dispose();
+      loops.dispose();
+    }
+  }
+
+  private static List<String> createEmployees(LoadDriver driver, int count) {
+    return Flux.range(0, count)
+        .flatMap(
+            i ->
+                driver.call(
+                    "POST /api/employees",
+                    driver
+                        .webClient()
+                        .post()
+                        .uri("/api/employees")
+                        .bodyValue(
+                            Employee.builder()
+                                .name("Employé " + i)
+                                .email("employe" + i + "@loadtest.local")
+                                .build())
+                        .retrieve()
+                        .bodyToMono(Employee.class)),
+            driver.concurrency())
+        .map(Employee::getId)
+        .collectList()
+        .block();
+  }
+
+  private static void report(List<ScenarioResult> results, String reportFile) throws IOException {
+    String header =
+        String.format(
+            "%-18s %-44s %9s %7s %9s %9s %9s %9s %9s",
+            "scenario", "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms",
+            "max ms");
+    List<String> csv = new ArrayList<>();
+    csv.add("scenario,endpoint,requests,errors,throughput,p50_ms,p95_ms,p99_ms,max_ms");
+    StringBuilder table = new StringBuilder(header).append('\n');
+    for (ScenarioResult result : results) {
+      double seconds = result.nanos() / 1_000_000_000.0;
+      result
+          .stats()
+          .forEach(
+              (endpoint, stats) -> {
+                double throughput = stats.requests() / seconds;
+                table.append(
+                    String.format(
+                        Locale.ROOT,
+                        "%-18s %-44s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                        result.scenario(),
+                        endpoint,
+                        stats.requests(),
+                        stats.errors(),
+                        throughput,
+                        stats.percentileMillis(50),
+                        stats.percentileMillis(95),
+                        stats.percentileMillis(99),
+                        stats.maxMillis()));
+                csv.add(
+                    String.format(
+                        Locale.ROOT,
+                        "%s,%s,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f",
+                        result.scenario(),
+                        endpoint,
+                        stats.requests(),
+                        stats.errors(),
+                        throughput,
+                        stats.percentileMillis(50),
+                        stats.percentileMillis(95),
+                        stats.percentileMillis(99),
+                        stats.maxMillis()));
+              });
+    }
+    logger.info("Résultats :\n{}", table);
+    if (reportFile != null) {
+      Path path = Path.of(reportFile);
+      Files.createDirectories(path.toAbsolutePath().getParent());
+      Files.write(path, csv);
+      logger.info("Résultats écrits dans {}", path);
+    }
+  }
+
+  private static int intOption(SimpleCommandLinePropertySource options, String name, int value) {
+    String option = options.getProperty(name);
+    return option != null ? Integer.parseInt(option) : value;
+  }
+
+  private record ScenarioResult(String scenario, long nanos, Map<String, EndpointStats> stats) {}
+}
@@ -0,0 +1,146 @@
+package fr.jixter.badgeuse.loadtest;
+
+import fr.jixter.badgeuse.domain.BadgeType;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Random;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Scénarios de charge, exécutés dans l'ordre de déclaration. Les badgeages de chaque jour simulé
+// sont envoyés aussi vite que possible, comme lors d'une arrivée groupée aux terminaux.
+enum Scenario {
+
+  // Tous les employés badgent IN entre 8h et 9h
+  MORNING_RUSH {
+    @Override
+    Mono<Void> run(LoadDriver driver, LoadPlan plan) {
+      return punches(driver, plan, LocalTime.of(8, 0), BadgeType.IN);
+    }
+  },
+
+  // Sortie entre 12h et 13h puis retour entre 13h et 14h
+  LUNCH {
+    @Override
+    Mono<Void> run(LoadDriver driver, LoadPlan plan) {
+      return punches(driver, plan, LocalTime.of(12, 0), BadgeType.OUT)
+          .then(punches(driver, plan, LocalTime.of(13, 0), BadgeType.IN));
+    }
+  },
+
+  // Départ entre 17h et 18h
+  EVENING_RUSH {
+    @Override
+    Mono<Void> run(LoadDriver driver, LoadPlan plan) {
+      return punches(driver, plan, LocalTime.of(17, 0), BadgeType.OUT);
+    }
+  },
+
+  // Interrogations du statut d'employés tirés au hasard à des instants du mois simulé, avec
+  // quelques appels de présence (statut de tous les employés) et consultations d'employés
+  STATUS_POLLING {
+    @Override
+    Mono<Void> run(LoadDriver driver, LoadPlan plan) {
+      Random random = new Random(SEED);
+      return driver.run(
+          Flux.range(0, plan.polls())
+              .map(
+                  i -> {
+                    String employeeId = randomEmployee(plan, random);
+                    LocalDateTime at = randomInstant(plan, random);
+                    if (i % 100 == 0) {
+                      return driver.get(
+                          "GET /api/badges/status", "/api/badges/status?timestamp={at}", at);
+                    }
+                    if (i % 10 == 0) {
+                      return driver.get("GET /api/employees/{id}", "/api/employees/{id}", employeeId);
+                    }
+                    return driver.get(
+                        "GET /api/badges/employee/{id}/status",
+                        "/api/badges/employee/{id}/status?timestamp={at}",
+                        employeeId,
+                        at);
+                  }));
+    }
+  },
+
+  // Fin de mois : tous les employés demandent en même temps leur rapport mensuel et leur détail
+  // par jour, pendant que les rapports de tous les employés sont exportés
+  MONTH_END_REPORTS {
+    @Override
+    Mono<Void> run(LoadDriver driver, LoadPlan plan) {
+      String month = plan.month().toString();
+      LocalDate start = plan.month().atDay(1);
+      LocalDate end = plan.month().atEndOfMonth();
+      Flux<Mono<Void>> monthly =
+          Flux.fromIterable(plan.employeeIds())
+              .map(
+                  employeeId ->
+                      driver.get(
+                          "GET /api/badges/employee/{id}/month/{month}",
+                          "/api/badges/employee/{id}/month/{month}",
+                          employeeId,
+                          month));
+      Flux<Mono<Void>> ranges =
+          Flux.fromIterable(plan.employeeIds())
+              .map(
+                  employeeId ->
+                      driver.get(
+                          "GET /api/badges/employee/{id}/range",
+                          "/api/badges/employee/{id}/range?start={start}&end={end}",
+                          employeeId,
+                          start,
+                          end));
+      Flux<Mono<Void>> exports =
+          Flux.range(0, MONTHLY_EXPORTS)
+              .map(
+                  i ->
+                      driver
+                          .call(
+                              "GET /api/badges/month/{month}",
+                              driver
+                                  .webClient()
+                                  .get()
+                                  .uri("/api/badges/month/{month}", month)
+                                  .accept(MediaType.APPLICATION_NDJSON)
+                                  .retrieve()
+                                  .toBodilessEntity())
+                          .then());
+      return driver.run(Flux.merge(exports, monthly, ranges));
+    }
+  };
+
+  private static final long SEED = 42;
+  private static final int MONTHLY_EXPORTS = 5;
+
+  abstract Mono<Void> run(LoadDriver driver, LoadPlan plan);
+
+  // Un badgeage par employé et par jour simulé, à un instant tiré dans l'heure suivant 'from'
+  private static Mono<Void> punches(
+      LoadDriver driver, LoadPlan plan, LocalTime from, BadgeType type) {
+    Random random = new Random(SEED + from.toSecondOfDay());
+    return Flux.fromIterable(plan.days())
+        .concatMap(
+            day ->
+                driver.run(
+                    Flux.fromIterable(plan.employeeIds())
+                        .map(
+                            employeeId ->
+                                driver.punch(
+                                    employeeId,
+                                    day.atTime(from).plusSeconds(random.nextInt(3600)),
+                                    type))))
+        .then();
+  }
+
+  private static String randomEmployee(LoadPlan plan, Random random) {
+    return plan.employeeIds().get(random.nextInt(plan.employeeIds().size()));
+  }
+
+  private static LocalDateTime randomInstant(LoadPlan plan, Random random) {
+    LocalDate day = plan.days().get(random.nextInt(plan.days().size()));
+    return day.atTime(7, 0).plusSeconds(random.nextInt(12 * 3600));
+  }
+}
@@ -0,0 +1,80 @@
+package fr.jixter.badgeuse.config;
+
+import fr.jixter.badgeuse.service.AdmissionControl;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Optional;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+// Contrôle d'admission des requêtes de badgeage (POST /api/badges/employee/{employeeId} et
+// /api/badges/batch), placé en tête de la chaîne de SecurityConfig. Une requête refusée reçoit
+// aussitôt un 429 sans corps, avec Retry-After en secondes ; son corps n'est pas lu.
+public class AdmissionFilter implements WebFilter {
+
+  private static final PathPattern SINGLE_BADGE =
+      PathPatternParser.defaultInstance.parse("/api/badges/employee/{employeeId}");
+  private static final PathPattern BATCH =
+      PathPatternParser.defaultInstance.parse("/api/badges/batch");
+  private static final String UNKNOWN_TERMINAL = "unknown";
+
+  private final AdmissionControl admissionControl;
+  private final String terminalHeader;
+
+  public AdmissionFilter(AdmissionControl admissionControl, String terminalHeader) {
+    this.admissionControl = admissionControl;
+    this.terminalHeader = terminalHeader;
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    ServerHttpRequest request = exchange.getRequest();
+    if (request.getMethod() != HttpMethod.POST) {
+      return chain.filter(exchange);
+    }
+    PathContainer path = request.getPath().pathWithinApplication();
+    String employeeId;
+    PathPattern.PathMatchInfo single = SINGLE_BADGE.matchAndExtract(path);
+    if (single != null) {
+      employeeId = single.getUriVariables().get("employeeId");
+    } else if (BATCH.matches(path)) {
+      employeeId = null;
+    } else {
+      return chain.filter(exchange);
+    }
+    Optional<Duration> retryAfter = admissionControl.tryAdmit(terminalId(request), employeeId);
+    if (retryAfter.isPresent()) {
+      return reject(exchange.getResponse(), retryAfter.get());
+    }
+    return chain.filter(exchange).doFinally(signal -> admissionControl.release());
+  }
+
+  private String terminalId(ServerHttpRequest request) {
+    String terminalId = request.getHeaders().getFirst(terminalHeader);
+    if (terminalId != null && !terminalId.isBlank()) {
+      return terminalId;
+    }
+    InetSocketAddress remoteAddress = request.getRemoteAddress();
+    return remoteAddress != null && remoteAddress.getAddress() != null
+        ? remoteAddress.getAddress().getHostAddress()
+        : UNKNOWN_TERMINAL;
+  }
+
+  private static Mono<Void> reject(ServerHttpResponse response, Duration retryAfter) {
+    // Retry-After en secondes entières, arrondi au supérieur
+    long seconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+    response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+    return response.setComplete();
+  }
+}
@@ -0,0 +1,87 @@
+package fr.jixter.badgeuse.config;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties.BadgeStorage;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import java.time.Duration;
+import lombok.AllArgsConstructor;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.CollectionOptions.TimeSeriesOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+// Création de badge_records en collection time-series lorsque ce stockage est choisi. Exécuté
+// avant MongoIndexInitializer, dont la création d'index créerait sinon une collection classique.
+@Component
+@Order(0)
+@AllArgsConstructor
+public class BadgeCollectionInitializer implements ApplicationRunner {
+
+  private static final Logger logger = LoggerFactory.getLogger(BadgeCollectionInitializer.class);
+  private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final BadgeuseProperties properties;
+
+  @Override
+  public void run(ApplicationArguments args) {
+    if (properties.getMongo().getBadgeStorage() != BadgeStorage.TIME_SERIES) {
+      return;
+    }
+    String collectionName = mongoTemplate.getCollectionName(BadgeRecord.class);
+    collectionType(mongoTemplate, collectionName)
+        .doOnNext(
+            type -> {
+              if (!"timeseries".equals(type)) {
+                logger.warn(
+                    "La collection {} existe et n'est pas time-series : lancer "
+                        + "--migrate-badge-records-to-time-series pour la convertir",
+                    collectionName);
+              }
+            })
+        .switchIfEmpty(
+            mongoTemplate
+                .createCollection(collectionName, timeSeriesOptions(mongoTemplate.getConverter()))
+                .doOnNext(
+                    collection ->
+                        logger.info("Collection time-series {} créée", collectionName))
+                .then(Mono.empty()))
+        .block(TIMEOUT);
+  }
+
+  // Badgeages regroupés par employé (champ méta) ; quelques badgeages par jour et par employé,
+  // d'où une granularité à l'heure qui regroupe jusqu'à 30 jours par bucket. Champs désignés par
+  // leur nom stocké, qui dépend de l'encodage.
+  public static CollectionOptions timeSeriesOptions(MongoConverter converter) {
+    return CollectionOptions.empty()
+        .timeSeries(
+            TimeSeriesOptions.timeSeries(MongoMappingConfig.badgeField(converter, "timestamp"))
+                .metaField(MongoMappingConfig.badgeField(converter, "employeeId"))
+                .granularity(Granularity.HOURS));
+  }
+
+  // Une collection time-series n'accepte pas les index uniques
+  public static boolean isSupportedOnTimeSeries(IndexDefinition index) {
+    return !Boolean.TRUE.equals(index.getIndexOptions().get("unique"));
+  }
+
+  // Type de la collection ("collection", "timeseries", "view"), vide si elle n'existe pas
+  public static Mono<String> collectionType(ReactiveMongoTemplate mongoTemplate, String name) {
+    return mongoTemplate
+        .getMongoDatabase()
+        .flatMap(
+            database ->
+                Mono.from(
+                    database.listCollections().filter(new Document("name", name)).first()))
+        .map(collection -> collection.getString("type"));
+  }
+}
@@ -0,0 +1,200 @@
+package fr.jixter.badgeuse.config;
+
+import fr.jixter.badgeuse.domain.FrenchHoliday;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "badgeuse")
+public class BadgeuseProperties {
+
+  private Mongo mongo = new Mongo();
+  private Ingest ingest = new Ingest();
+  private WriteCoalescing writeCoalescing = new WriteCoalescing();
+  private Aggregates aggregates = new Aggregates();
+  private Presence presence = new Presence();
+  private EmployeeCache employeeCache = new EmployeeCache();
+  private ReportCache reportCache = new ReportCache();
+  private Calendar calendar = new Calendar();
+  private Partitions partitions = new Partitions();
+  private Admission admission = new Admission();
+  private Export export = new Export();
+  private Anomalies anomalies = new Anomalies();
+  private ChangeStreams changeStreams = new ChangeStreams();
+  private ReadRouting readRouting = new ReadRouting();
+
+  @Data
+  public static class Mongo {
+    // Création des index déclarés sur les documents au démarrage de l'application
+    private boolean createIndexesOnStartup = true;
+    // Comportement si un plan d'exécution n'utilise pas d'index (COLLSCAN ou SORT en mémoire)
+    private QueryPlanCheckMode queryPlanCheck = QueryPlanCheckMode.WARN;
+    // Stockage des badgeages. TIME_SERIES (MongoDB 5.0+) crée badge_records en collection
+    // time-series si elle n'existe pas ; une base existante se convertit avec
+    // --migrate-badge-records-to-time-series
+    private BadgeStorage badgeStorage = BadgeStorage.STANDARD;
+    // Encodage des badgeages. COMPACT raccourcit les noms des champs et stocke le type par son
+    // rang ; une base existante se convertit avec --copy-badge-records-to-compact puis
+    // --switch-badge-records-to-compact
+    private BadgeEncoding badgeEncoding = BadgeEncoding.STANDARD;
+  }
+
+  @Data
+  public static class Ingest {
+    // Nombre maximal d'enregistrements écrits par insertMany lors d'une ingestion par lot
+    private int batchSize = 500;
+  }
+
+  @Data
+  public static class WriteCoalescing {
+    // Regroupement des badgeages unitaires simultanés en insertMany
+    private boolean enabled = false;
+    // Un lot est écrit dès qu'il atteint cette taille...
+    private int maxBatchSize = 256;
+    // ... ou au plus tard après ce délai, qui borne la latence ajoutée à chaque badgeage
+    private Duration maxDelay = Duration.ofMillis(5);
+    // Lots écrits en parallèle
+    private int maxInFlightBatches = 4;
+    // Badgeages en attente au-delà desquels les nouveaux sont écrits directement, sans lot
+    private int queueCapacity = 8_192;
+  }
+
+  @Data
+  public static class Aggregates {
+    // Maintien des agrégats journaliers à l'écriture et lecture des rapports depuis ceux-ci.
+    // Lancer la reconstruction (--rebuild-daily-aggregates) avant la première activation.
+    private boolean enabled = false;
+  }
+
+  @Data
+  public static class Presence {
+    // Tableau de présence en mémoire, chargé au démarrage. Il ne voit les badgeages des autres
+    // instances qu'avec change-streams.enabled : à n'activer seul qu'avec une instance unique.
+    private boolean enabled = false;
+  }
+
+  @Data
+  public static class EmployeeCache {
+    private long maximumSize = 50_000;
+    // Durée de vie d'un employé en cache
+    private Duration ttl = Duration.ofMinutes(10);
+    // Durée de vie d'un identifiant inconnu en cache, plus courte pour limiter l'effet d'un
+    // employé créé sur une autre instance
+    private Duration negativeTtl = Duration.ofSeconds(30);
+  }
+
+  @Data
+  public static class ReportCache {
+    // Sans change-streams.enabled, un badgeage reçu par une autre instance n'évince rien ici : à
+    // n'activer seul qu'avec une instance unique
+    private boolean enabled = false;
+    private long maximumSize = 100_000;
+    // Durée de vie d'un rapport de jour ou de mois passé. Les badgeages rétroactifs l'évincent
+    // aussitôt, ceux des autres instances par les flux de modifications.
+    private Duration ttl = Duration.ofHours(1);
+    // Durée de vie d'un rapport du jour ou du mois en cours, encore susceptible de changer
+    private Duration openPeriodTtl = Duration.ofSeconds(30);
+  }
+
+  @Data
+  public static class Calendar {
+    // Jours fériés chômés. Retirer WHIT_MONDAY si la journée de solidarité est travaillée,
+    // ajouter GOOD_FRIDAY et SAINT_STEPHEN en Alsace-Moselle.
+    private Set<FrenchHoliday> holidays =
+        EnumSet.complementOf(EnumSet.of(FrenchHoliday.GOOD_FRIDAY, FrenchHoliday.SAINT_STEPHEN));
+    // Jours de fermeture de l'entreprise (ponts, fermeture estivale...)
+    private List<LocalDate> closureDays = new ArrayList<>();
+  }
+
+  @Data
+  public static class Partitions {
+    // Archivage mensuel des badgeages (--compact-badge-records) et lecture des mois archivés
+    // dans leurs partitions badge_records_yyyy_MM et résumés mensuels
+    private boolean enabled = false;
+    // Mois conservés dans badge_records, mois en cours compris ; les précédents sont archivés
+    private int hotMonths = 3;
+    // Délai de prise en compte d'un archivage par les autres instances. La compaction attend ce
+    // délai avant de recopier les mois fermés, puis avant de les supprimer de badge_records.
+    private Duration refreshInterval = Duration.ofMinutes(1);
+  }
+
+  @Data
+  public static class Admission {
+    // Contrôle d'admission des badgeages unitaires et par lot : au-delà des limites, réponse 429
+    // avec Retry-After, sans lecture du corps ni accès à MongoDB
+    private boolean enabled = false;
+    // En-tête identifiant le terminal ; à défaut, adresse IP du client
+    private String terminalHeader = "X-Terminal-Id";
+    // Débit soutenu (requêtes par seconde) et rafale admis par terminal
+    private double terminalRate = 5;
+    private int terminalBurst = 50;
+    // Débit et rafale admis par employé : le rejeu de la file d'un terminal passe, un badge
+    // maintenu sur le lecteur non
+    private double employeeRate = 0.2;
+    private int employeeBurst = 10;
+    // Requêtes de badgeage traitées simultanément, le reste du pool de connexions MongoDB restant
+    // disponible pour les rapports
+    private int maxConcurrentWrites = 50;
+    // Délai annoncé lorsque maxConcurrentWrites est atteint
+    private Duration busyRetryAfter = Duration.ofSeconds(1);
+    // Terminaux et employés suivis au plus, par seau
+    private long maximumTrackedKeys = 100_000;
+  }
+
+  @Data
+  public static class Export {
+    // Rapports mensuels calculés simultanément pour l'export de paie ; les lignes restent dans
+    // l'ordre des employés
+    private int concurrency = 16;
+  }
+
+  @Data
+  public static class Anomalies {
+    // Employés suivis au plus par le relevé des badgeages non appariés (/api/badges/anomalies)
+    private long maximumEmployees = 50_000;
+    // Une journée en anomalie non détectée de nouveau pendant ce délai est oubliée
+    private Duration retention = Duration.ofDays(92);
+  }
+
+  @Data
+  public static class ChangeStreams {
+    // Suivi des écritures des autres instances par les flux de modifications de badge_records et
+    // employees (MongoDB en replica set) : tableau de présence et caches tenus à jour sans
+    // relecture périodique
+    private boolean enabled = false;
+  }
+
+  @Data
+  public static class ReadRouting {
+    // Lectures de reporting (rapports de temps, export de paie, listes d'employés) envoyées
+    // selon read-preference, les statuts et vérifications du chemin d'écriture restant sur le
+    // primaire. Un rapport peut alors ignorer les badgeages des max-staleness dernières secondes.
+    private boolean enabled = false;
+    // primary, primaryPreferred, secondary, secondaryPreferred ou nearest
+    private String readPreference = "secondaryPreferred";
+    // Retard de réplication au-delà duquel un secondaire n'est plus interrogé (90 s au minimum)
+    private Duration maxStaleness = Duration.ofSeconds(90);
+  }
+
+  public enum BadgeStorage {
+    STANDARD,
+    TIME_SERIES
+  }
+
+  public enum BadgeEncoding {
+    STANDARD,
+    COMPACT
+  }
+
+  public enum QueryPlanCheckMode {
+    OFF,
+    WARN,
+    FAIL
+  }
+}
@@ -0,0 +1,33 @@
+package fr.jixter.badgeuse.config;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fr.jixter.badgeuse.service.EmployeeCache;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+// Statistiques du cache des employés : GET /actuator/employeecache
+@Component
+@Endpoint(id = "employeecache")
+@AllArgsConstructor
+public class EmployeeCacheEndpoint {
+
+  private final EmployeeCache employeeCache;
+
+  @ReadOperation
+  public Map<String, Object> stats() {
+    CacheStats stats = employeeCache.stats();
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("size", employeeCache.size());
+    result.put("hitCount", stats.hitCount());
+    result.put("missCount", stats.missCount());
+    result.put("hitRate", stats.hitRate());
+    result.put("evictionCount", stats.evictionCount());
+    result.put("loadFailureCount", stats.loadFailureCount());
+    result.put("averageLoadPenaltyNanos", stats.averageLoadPenalty());
+    return result;
+  }
+}
@@ -0,0 +1,72 @@
+package fr.jixter.badgeuse.config;
+
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.DailyAggregate;
+import fr.jixter.badgeuse.domain.MonthlySummary;
+import java.time.Duration;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+@Component
+@Order(1)
+@AllArgsConstructor
+public class MongoIndexInitializer implements ApplicationRunner {
+
+  private static final Logger logger = LoggerFactory.getLogger(MongoIndexInitializer.class);
+  private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+  // Documents dont les index déclarés (@Indexed, @CompoundIndex) doivent exister au démarrage
+  private static final List<Class<?>> INDEXED_DOCUMENTS =
+      List.of(BadgeRecord.class, DailyAggregate.class, MonthlySummary.class);
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final BadgeuseProperties properties;
+
+  @Override
+  public void run(ApplicationArguments args) {
+    if (!properties.getMongo().isCreateIndexesOnStartup()) {
+      return;
+    }
+    IndexResolver indexResolver =
+        IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+    Flux.fromIterable(INDEXED_DOCUMENTS)
+        .concatMap(
+            type ->
+                BadgeCollectionInitializer.collectionType(
+                        mongoTemplate, mongoTemplate.getCollectionName(type))
+                    .map("timeseries"::equals)
+                    .defaultIfEmpty(false)
+                    .flatMapMany(
+                        timeSeries ->
+                            Flux.fromIterable(indexResolver.resolveIndexFor(type))
+                                .filter(
+                                    index ->
+                                        !timeSeries
+                                            || BadgeCollectionInitializer
+                                                .isSupportedOnTimeSeries(index)))
+                    .concatMap(
+                        index ->
+                            mongoTemplate
+                                .indexOps(type)
+                                .ensureIndex(
+                                    MongoMappingConfig.mappedIndex(
+                                        mongoTemplate.getConverter(), type, index)))
+                    .doOnNext(
+                        name ->
+                            logger.info(
+                                "Index {} vérifié sur la collection {}",
+                                name,
+                                mongoTemplate.getCollectionName(type))))
+        .then()
+        .block(TIMEOUT);
+  }
+}
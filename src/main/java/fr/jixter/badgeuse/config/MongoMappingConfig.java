@@ -0,0 +1,164 @@
+package fr.jixter.badgeuse.config;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties.BadgeEncoding;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.BadgeType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mapping.PersistentProperty;
+import org.springframework.data.mapping.model.FieldNamingStrategy;
+import org.springframework.data.mapping.model.PropertyNameFieldNamingStrategy;
+import org.springframework.data.mongodb.MongoManagedTypes;
+import org.springframework.data.mongodb.core.convert.DefaultMongoTypeMapper;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+
+// Correspondance entre objets du domaine et documents MongoDB, à la place de celle de Spring Boot.
+// En encodage COMPACT (badgeuse.mongo.badge-encoding), les champs de BadgeRecord sont stockés sous
+// des clés d'une lettre, BadgeType par son rang et la clé _class n'est plus écrite. Les
+// horodatages restent des dates BSON, déjà stockées en millisecondes epoch sur 8 octets, que les
+// index, les collections time-series et les opérateurs de date savent exploiter.
+@Configuration
+public class MongoMappingConfig {
+
+  // Clés des champs de BadgeRecord en encodage COMPACT, par nom de propriété
+  public static final Map<String, String> COMPACT_BADGE_FIELDS =
+      Map.of("employeeId", "e", "timestamp", "t", "type", "k", "eventId", "v");
+
+  @Bean
+  MongoCustomConversions mongoCustomConversions(BadgeuseProperties properties) {
+    return customConversions(properties.getMongo().getBadgeEncoding());
+  }
+
+  @Bean
+  MongoMappingContext mongoMappingContext(
+      MongoProperties mongoProperties,
+      MongoCustomConversions conversions,
+      MongoManagedTypes managedTypes,
+      BadgeuseProperties properties) {
+    MongoMappingContext context = new MongoMappingContext();
+    if (mongoProperties.isAutoIndexCreation() != null) {
+      context.setAutoIndexCreation(mongoProperties.isAutoIndexCreation());
+    }
+    context.setManagedTypes(managedTypes);
+    context.setFieldNamingStrategy(fieldNamingStrategy(properties.getMongo().getBadgeEncoding()));
+    context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    return context;
+  }
+
+  @Bean
+  MappingMongoConverter mappingMongoConverter(
+      MongoMappingContext context,
+      MongoCustomConversions conversions,
+      BadgeuseProperties properties) {
+    MappingMongoConverter converter =
+        new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+    converter.setCustomConversions(conversions);
+    configureTypeMapper(converter, properties.getMongo().getBadgeEncoding());
+    return converter;
+  }
+
+  // Les deux représentations de BadgeType sont lues quel que soit l'encodage, les documents des
+  // deux encodages coexistant pendant la migration
+  public static MongoCustomConversions customConversions(BadgeEncoding encoding) {
+    List<Converter<?, ?>> converters = new ArrayList<>();
+    converters.add(new IntegerToBadgeTypeConverter());
+    if (encoding == BadgeEncoding.COMPACT) {
+      converters.add(new BadgeTypeToIntegerConverter());
+    }
+    return new MongoCustomConversions(converters);
+  }
+
+  public static FieldNamingStrategy fieldNamingStrategy(BadgeEncoding encoding) {
+    return encoding == BadgeEncoding.COMPACT
+        ? new CompactBadgeFieldNamingStrategy()
+        : PropertyNameFieldNamingStrategy.INSTANCE;
+  }
+
+  // Aucun document n'est polymorphe : _class n'est utile qu'aux documents déjà écrits
+  public static void configureTypeMapper(MappingMongoConverter converter, BadgeEncoding encoding) {
+    if (encoding == BadgeEncoding.COMPACT) {
+      converter.setTypeMapper(new DefaultMongoTypeMapper(null, converter.getMappingContext()));
+    }
+  }
+
+  // Nom stocké d'une propriété de BadgeRecord, pour les requêtes et options écrites sans passer
+  // par la correspondance de Spring Data
+  public static String badgeField(MongoConverter converter, String property) {
+    return converter
+        .getMappingContext()
+        .getRequiredPersistentEntity(BadgeRecord.class)
+        .getRequiredPersistentProperty(property)
+        .getFieldName();
+  }
+
+  // Les clés d'un @CompoundIndex et son filtre partiel sont des noms de propriétés, que Spring
+  // Data ne traduit pas : index équivalent sur les noms stockés
+  public static IndexDefinition mappedIndex(
+      MongoConverter converter, Class<?> type, IndexDefinition index) {
+    QueryMapper queryMapper = new QueryMapper(converter);
+    MongoPersistentEntity<?> entity =
+        converter.getMappingContext().getRequiredPersistentEntity(type);
+    Document keys = queryMapper.getMappedSort(index.getIndexKeys(), entity);
+    Document options = new Document(index.getIndexOptions());
+    if (options.get("partialFilterExpression") instanceof Document filter) {
+      options.put("partialFilterExpression", queryMapper.getMappedObject(filter, entity));
+    }
+    return new IndexDefinition() {
+      @Override
+      public Document getIndexKeys() {
+        return keys;
+      }
+
+      @Override
+      public Document getIndexOptions() {
+        return options;
+      }
+    };
+  }
+
+  static class CompactBadgeFieldNamingStrategy implements FieldNamingStrategy {
+
+    @Override
+    public String getFieldName(PersistentProperty<?> property) {
+      if (property.getOwner().getType() == BadgeRecord.class
+          && COMPACT_BADGE_FIELDS.containsKey(property.getName())) {
+        return COMPACT_BADGE_FIELDS.get(property.getName());
+      }
+      return PropertyNameFieldNamingStrategy.INSTANCE.getFieldName(property);
+    }
+  }
+
+  // Le rang de BadgeType est stocké : ne pas réordonner ses valeurs
+  @WritingConverter
+  static class BadgeTypeToIntegerConverter implements Converter<BadgeType, Integer> {
+
+    @Override
+    public Integer convert(BadgeType source) {
+      return source.ordinal();
+    }
+  }
+
+  @ReadingConverter
+  static class IntegerToBadgeTypeConverter implements Converter<Integer, BadgeType> {
+
+    @Override
+    public BadgeType convert(Integer source) {
+      return BadgeType.values()[source];
+    }
+  }
+}
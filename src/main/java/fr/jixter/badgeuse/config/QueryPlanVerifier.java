@@ -0,0 +1,395 @@
+package fr.jixter.badgeuse.config;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import com.mongodb.ExplainVerbosity;
+import fr.jixter.badgeuse.config.BadgeuseProperties.QueryPlanCheckMode;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.BadgeType;
+import fr.jixter.badgeuse.domain.DailyAggregate;
+import fr.jixter.badgeuse.domain.Employee;
+import fr.jixter.badgeuse.domain.MonthlySummary;
+import fr.jixter.badgeuse.repository.ReactiveBadgeRepositoryCustomImpl;
+import fr.jixter.badgeuse.repository.ReactiveEmployeeRepositoryCustomImpl;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperationContext;
+import org.springframework.data.mongodb.core.aggregation.TypeBasedAggregationOperationContext;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Exécute au démarrage un explain des requêtes et agrégations des repositories et signale les
+// plans qui parcourent toute une collection (COLLSCAN, y compris dans un $lookup) ou trient en
+// mémoire (SORT). Les requêtes des méthodes personnalisées sont construites par les repositories
+// eux-mêmes. Les plans sont obtenus sur des copies temporaires des collections, avec leurs index
+// et quelques documents : sur une collection vide ou absente, tout plan se réduit à EOF. Les
+// copies portent un suffixe propre à chaque vérification : des instances démarrant ensemble ne
+// suppriment pas les copies des autres en cours d'explain.
+@Component
+@Order(2)
+public class QueryPlanVerifier implements ApplicationRunner {
+
+  private static final Logger logger = LoggerFactory.getLogger(QueryPlanVerifier.class);
+  private static final Duration TIMEOUT = Duration.ofSeconds(30);
+  private static final Set<String> FORBIDDEN_STAGES = Set.of("COLLSCAN", "SORT");
+  private static final String PROBE_EMPLOYEE_ID = "query-plan-probe";
+  private static final String SCRATCH_SUFFIX = "_query_plan_probe_";
+  // Âge au-delà duquel une copie est celle d'une vérification interrompue (arrêt brutal)
+  private static final Duration STALE_SCRATCH = Duration.ofHours(1);
+  private static final List<Class<?>> PROBED_DOCUMENTS =
+      List.of(BadgeRecord.class, MonthlySummary.class, DailyAggregate.class, Employee.class);
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final ReactiveBadgeRepositoryCustomImpl badgeQueries;
+  private final QueryMapper queryMapper;
+  private final BadgeuseProperties properties;
+
+  public QueryPlanVerifier(
+      ReactiveMongoTemplate mongoTemplate,
+      ReactiveBadgeRepositoryCustomImpl badgeQueries,
+      BadgeuseProperties properties) {
+    this.mongoTemplate = mongoTemplate;
+    this.badgeQueries = badgeQueries;
+    this.queryMapper = new QueryMapper(mongoTemplate.getConverter());
+    this.properties = properties;
+  }
+
+  record QueryProbe(String name, Class<?> type, Query query) {}
+
+  record AggregationProbe(String name, Class<?> type, Aggregation aggregation) {}
+
+  List<QueryProbe> queryProbes() {
+    LocalDateTime now = LocalDateTime.now();
+    BadgeRecord event =
+        BadgeRecord.builder().employeeId(PROBE_EMPLOYEE_ID).eventId(PROBE_EMPLOYEE_ID).build();
+    return List.of(
+        new QueryProbe(
+            "findRange",
+            BadgeRecord.class,
+            ReactiveBadgeRepositoryCustomImpl.rangeQuery(
+                PROBE_EMPLOYEE_ID, now.minusDays(1), now)),
+        new QueryProbe(
+            "findNeighbours",
+            BadgeRecord.class,
+            ReactiveBadgeRepositoryCustomImpl.edgeQuery(
+                PROBE_EMPLOYEE_ID, now.minusDays(1), now, Sort.Direction.DESC)),
+        new QueryProbe(
+            "findLatestBefore",
+            BadgeRecord.class,
+            ReactiveBadgeRepositoryCustomImpl.latestBeforeQuery(PROBE_EMPLOYEE_ID, now)),
+        new QueryProbe(
+            "findLatestBefore (résumés)",
+            MonthlySummary.class,
+            ReactiveBadgeRepositoryCustomImpl.latestSummaryQuery(
+                PROBE_EMPLOYEE_ID, YearMonth.from(now).toString())),
+        new QueryProbe(
+            "findByEvents",
+            BadgeRecord.class,
+            ReactiveBadgeRepositoryCustomImpl.eventsQuery(List.of(event, event))),
+        new QueryProbe(
+            "findByIdGreaterThanOrderByIdAsc",
+            Employee.class,
+            ReactiveEmployeeRepositoryCustomImpl.pageQuery(PROBE_EMPLOYEE_ID, Limit.of(100))),
+        // Équivalents des requêtes dérivées des noms de méthodes, à tenir à jour avec ceux-ci
+        new QueryProbe(
+            "findByEmployeeIdAndTimestampBetween",
+            BadgeRecord.class,
+            query(
+                where("employeeId")
+                    .is(PROBE_EMPLOYEE_ID)
+                    .and("timestamp")
+                    .gt(now.minusDays(1))
+                    .lt(now))),
+        new QueryProbe(
+            "findAllByOrderByEmployeeIdAscTimestampAsc",
+            BadgeRecord.class,
+            new Query().with(Sort.by("employeeId", "timestamp"))),
+        new QueryProbe(
+            "findByEmployeeIdAndDateGreaterThanEqualAndDateLessThan",
+            DailyAggregate.class,
+            query(
+                where("employeeId")
+                    .is(PROBE_EMPLOYEE_ID)
+                    .and("date")
+                    .gte(now.toLocalDate().withDayOfMonth(1))
+                    .lt(now.toLocalDate()))));
+  }
+
+  List<AggregationProbe> aggregationProbes() {
+    LocalDateTime now = LocalDateTime.now();
+    YearMonth month = YearMonth.from(now);
+    return List.of(
+        new AggregationProbe(
+            "sumMinutesByEmployee",
+            Employee.class,
+            badgeQueries.minutesPerEmployee(
+                month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay())),
+        new AggregationProbe(
+            "sumArchivedMinutesByEmployee",
+            Employee.class,
+            badgeQueries.archivedMinutesPerEmployee(month.minusMonths(1))),
+        // Tous les employés, complétés par les résumés mensuels : comprend la variante simple
+        new AggregationProbe(
+            "findLatestPerEmployee",
+            BadgeRecord.class,
+            badgeQueries.latestPerEmployee(now, null, month.toString())));
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    QueryPlanCheckMode mode = properties.getMongo().getQueryPlanCheck();
+    if (mode == QueryPlanCheckMode.OFF) {
+      return;
+    }
+    List<String> violations = verify().block(TIMEOUT);
+    if (violations == null || violations.isEmpty()) {
+      logger.info("Plans d'exécution vérifiés : toutes les requêtes utilisent un index");
+      return;
+    }
+    violations.forEach(violation -> logger.warn("Plan d'exécution non indexé : {}", violation));
+    if (mode == QueryPlanCheckMode.FAIL) {
+      throw new IllegalStateException("Plans d'exécution non indexés : " + violations);
+    }
+  }
+
+  // Violations de toutes les sondes, sur les copies temporaires supprimées ensuite
+  Mono<List<String>> verify() {
+    Map<String, String> scratch = scratchNames();
+    Flux<String> violations =
+        Flux.concat(
+            Flux.fromIterable(queryProbes()).concatMap(probe -> check(probe, scratch)),
+            Flux.fromIterable(aggregationProbes()).concatMap(probe -> check(probe, scratch)));
+    return dropStale()
+        .then(Flux.fromIterable(scratch.entrySet()).concatMap(this::copyIndexes).then())
+        .then(seed(scratch))
+        .then(violations.collectList())
+        .flatMap(found -> dropAll(scratch).thenReturn(found))
+        .onErrorResume(e -> dropAll(scratch).then(Mono.error(e)));
+  }
+
+  // Noms des copies de cette vérification, suffixés d'un ObjectId qui en date la création
+  Map<String, String> scratchNames() {
+    String suffix = SCRATCH_SUFFIX + new ObjectId().toHexString();
+    return PROBED_DOCUMENTS.stream()
+        .map(mongoTemplate::getCollectionName)
+        .collect(Collectors.toMap(Function.identity(), name -> name + suffix));
+  }
+
+  // Copie laissée par une vérification interrompue depuis plus d'une heure ; celles des
+  // vérifications en cours, sur d'autres instances, sont plus récentes
+  static boolean isStaleScratch(String collection, Instant now) {
+    int suffix = collection.lastIndexOf(SCRATCH_SUFFIX);
+    if (suffix < 0) {
+      return false;
+    }
+    String id = collection.substring(suffix + SCRATCH_SUFFIX.length());
+    return ObjectId.isValid(id)
+        && new ObjectId(id).getDate().toInstant().isBefore(now.minus(STALE_SCRATCH));
+  }
+
+  private Mono<Void> dropStale() {
+    Instant now = Instant.now();
+    return mongoTemplate
+        .getCollectionNames()
+        .filter(collection -> isStaleScratch(collection, now))
+        .concatMap(mongoTemplate::dropCollection)
+        .then();
+  }
+
+  private Mono<Void> dropAll(Map<String, String> scratch) {
+    return Flux.fromIterable(scratch.values()).concatMap(mongoTemplate::dropCollection).then();
+  }
+
+  // Index de la collection réelle, tels qu'ils existent en base, recréés sur sa copie
+  private Mono<Void> copyIndexes(Map.Entry<String, String> collection) {
+    return mongoTemplate
+        .getCollection(collection.getKey())
+        .flatMapMany(source -> Flux.from(source.listIndexes(Document.class)))
+        .filter(index -> !"_id_".equals(index.getString("name")))
+        .map(
+            index -> {
+              index.remove("v");
+              index.remove("ns");
+              return index;
+            })
+        .collectList()
+        .flatMap(
+            indexes ->
+                indexes.isEmpty()
+                    ? mongoTemplate.createCollection(collection.getValue()).then()
+                    : mongoTemplate
+                        .executeCommand(
+                            new Document("createIndexes", collection.getValue())
+                                .append("indexes", indexes))
+                        .then());
+  }
+
+  // Quelques documents par collection, dont ceux de l'employé sondé
+  private Mono<Void> seed(Map<String, String> scratch) {
+    LocalDateTime now = LocalDateTime.now();
+    LocalDate today = now.toLocalDate();
+    List<Object> documents = new ArrayList<>();
+    for (String employeeId : List.of(PROBE_EMPLOYEE_ID, PROBE_EMPLOYEE_ID + "-2")) {
+      documents.add(Employee.builder().id(employeeId).name(employeeId).build());
+      documents.add(
+          BadgeRecord.builder()
+              .employeeId(employeeId)
+              .timestamp(now.minusHours(2))
+              .type(BadgeType.IN)
+              .eventId(employeeId)
+              .build());
+      documents.add(
+          BadgeRecord.builder()
+              .employeeId(employeeId)
+              .timestamp(now.minusHours(1))
+              .type(BadgeType.OUT)
+              .build());
+      String month = YearMonth.from(now).minusMonths(1).toString();
+      documents.add(
+          MonthlySummary.builder()
+              .id(MonthlySummary.idOf(employeeId, month))
+              .employeeId(employeeId)
+              .month(month)
+              .lastType(BadgeType.OUT)
+              .lastTimestamp(now.minusMonths(1))
+              .build());
+      documents.add(
+          DailyAggregate.builder()
+              .id(DailyAggregate.idOf(employeeId, today))
+              .employeeId(employeeId)
+              .date(today)
+              .build());
+    }
+    return Flux.fromIterable(documents)
+        .concatMap(
+            document ->
+                mongoTemplate.insert(
+                    document, scratch.get(mongoTemplate.getCollectionName(document.getClass()))))
+        .then();
+  }
+
+  private Flux<String> check(QueryProbe probe, Map<String, String> scratch) {
+    MongoPersistentEntity<?> entity =
+        mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(probe.type());
+    Document filter = queryMapper.getMappedObject(probe.query().getQueryObject(), entity);
+    Document sort = queryMapper.getMappedSort(probe.query().getSortObject(), entity);
+    return mongoTemplate
+        .getCollection(scratch.get(mongoTemplate.getCollectionName(probe.type())))
+        .flatMap(
+            collection ->
+                Mono.from(
+                    collection
+                        .find(filter)
+                        .sort(sort)
+                        .limit(probe.query().getLimit())
+                        .explain(Document.class, ExplainVerbosity.QUERY_PLANNER)))
+        .flatMapIterable(explain -> violations(probe.name(), explain));
+  }
+
+  private Flux<String> check(AggregationProbe probe, Map<String, String> scratch) {
+    AggregationOperationContext context =
+        probe.aggregation() instanceof TypedAggregation<?> typed
+            ? new TypeBasedAggregationOperationContext(
+                typed.getInputType(), mongoTemplate.getConverter().getMappingContext(), queryMapper)
+            : Aggregation.DEFAULT_CONTEXT;
+    List<Document> pipeline = new ArrayList<>();
+    probe.aggregation().toPipeline(context).forEach(stage -> pipeline.add(scratch(stage, scratch)));
+    // executionStats : seul niveau où $lookup rapporte les parcours de la collection jointe
+    return mongoTemplate
+        .getCollection(scratch.get(mongoTemplate.getCollectionName(probe.type())))
+        .flatMap(
+            collection ->
+                Mono.from(
+                    collection
+                        .aggregate(pipeline)
+                        .allowDiskUse(true)
+                        .explain(Document.class, ExplainVerbosity.EXECUTION_STATS)))
+        .flatMapIterable(explain -> violations(probe.name(), explain));
+  }
+
+  // Étape dont les collections jointes ($lookup, $unionWith) sont remplacées par leurs copies
+  static Document scratch(Document stage, Map<String, String> scratch) {
+    Document copy = new Document();
+    stage.forEach(
+        (key, value) -> {
+          if (value instanceof Document document) {
+            Document nested = scratch(document, scratch);
+            if (key.equals("$lookup") || key.equals("$unionWith")) {
+              String from = key.equals("$lookup") ? "from" : "coll";
+              nested.computeIfPresent(from, (name, collection) -> scratch.get(collection));
+            }
+            copy.put(key, nested);
+          } else if (value instanceof List<?> list) {
+            copy.put(
+                key,
+                list.stream()
+                    .map(item -> item instanceof Document d ? scratch(d, scratch) : item)
+                    .toList());
+          } else {
+            copy.put(key, value);
+          }
+        });
+    return copy;
+  }
+
+  // Étapes interdites du plan retenu par MongoDB pour la sonde
+  static List<String> violations(String probe, Document explain) {
+    List<String> stages = new ArrayList<>();
+    collectStages(explain, stages);
+    return stages.stream()
+        .filter(FORBIDDEN_STAGES::contains)
+        .distinct()
+        .map(stage -> probe + " (" + stage + ")")
+        .toList();
+  }
+
+  // Parcourt récursivement le plan retenu (inputStage, inputStages, queryPlan...), sans les plans
+  // rejetés. Un $lookup parcourant la collection jointe compte collectionScans ou, exécuté par
+  // le moteur SBE, utilise la stratégie NestedLoopJoin : il est relevé comme COLLSCAN.
+  static void collectStages(Object node, List<String> stages) {
+    if (node instanceof Document document) {
+      Object stage = document.get("stage");
+      if (stage instanceof String name) {
+        stages.add(name);
+      }
+      if (document.get("collectionScans") instanceof Number scans && scans.longValue() > 0
+          || "NestedLoopJoin".equals(document.get("strategy"))) {
+        stages.add("COLLSCAN");
+      }
+      document.forEach(
+          (key, value) -> {
+            if (!key.equals("rejectedPlans")) {
+              collectStages(value, stages);
+            }
+          });
+    } else if (node instanceof List<?> list) {
+      list.forEach(value -> collectStages(value, stages));
+    }
+  }
+}
@@ -1,7 +1,9 @@
 package fr.jixter.badgeuse.config;
 
+import fr.jixter.badgeuse.service.AdmissionControl;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity.CsrfSpec;
 import org.springframework.security.web.server.SecurityWebFilterChain;
@@ -10,7 +12,15 @@ import org.springframework.security.web.server.SecurityWebFilterChain;
 public class SecurityConfig {
 
   @Bean
-  public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+  public SecurityWebFilterChain securityWebFilterChain(
+      ServerHttpSecurity http, BadgeuseProperties properties, AdmissionControl admissionControl) {
+    BadgeuseProperties.Admission admission = properties.getAdmission();
+    if (admission.isEnabled()) {
+      // Refus des rafales de badgeages avant tout autre traitement de la requête
+      http.addFilterAt(
+          new AdmissionFilter(admissionControl, admission.getTerminalHeader()),
+          SecurityWebFiltersOrder.FIRST);
+    }
     return http.csrf(CsrfSpec::disable)
         .authorizeExchange(
             exchange ->
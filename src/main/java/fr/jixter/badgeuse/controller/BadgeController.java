@@ -2,14 +2,33 @@ package fr.jixter.badgeuse.controller;
 
 import fr.jixter.badgeuse.domain.BadgeRecord;
 import fr.jixter.badgeuse.domain.BadgeType;
+import fr.jixter.badgeuse.domain.dto.BadgeBatchResult;
 import fr.jixter.badgeuse.domain.dto.BadgeDto;
+import fr.jixter.badgeuse.domain.dto.EmployeeStatus;
+import fr.jixter.badgeuse.domain.dto.PayrollLine;
+import fr.jixter.badgeuse.domain.dto.PunchAnomaly;
+import fr.jixter.badgeuse.domain.dto.RangeReport;
 import fr.jixter.badgeuse.domain.dto.TimeReport;
+import fr.jixter.badgeuse.exception.ResourceNotFoundException;
+import fr.jixter.badgeuse.service.AnomalyTracker;
 import fr.jixter.badgeuse.service.BadgeService;
+import fr.jixter.badgeuse.service.PresenceBoard;
 import jakarta.validation.Valid;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -17,16 +36,29 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping("/api/badges")
 public class BadgeController {
 
+  private static final Duration SSE_KEEPALIVE = Duration.ofSeconds(15);
+  private static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+  private static final String PAYROLL_HEADER =
+      "employeeId,name,email,month,totalMinutes,expectedMinutes,sufficient\r\n";
+  // Lignes écrites par tampon : seul le tampon en cours est en mémoire
+  private static final int PAYROLL_ROWS_PER_BUFFER = 256;
+
   private final BadgeService badgeService;
+  private final PresenceBoard presenceBoard;
+  private final AnomalyTracker anomalyTracker;
 
-  public BadgeController(BadgeService badgeService) {
+  public BadgeController(
+      BadgeService badgeService, PresenceBoard presenceBoard, AnomalyTracker anomalyTracker) {
     this.badgeService = badgeService;
+    this.presenceBoard = presenceBoard;
+    this.anomalyTracker = anomalyTracker;
   }
 
   @PostMapping("/employee/{employeeId}")
@@ -37,6 +69,15 @@ public class BadgeController {
         .map(badgeRecord -> ResponseEntity.status(HttpStatus.CREATED).body(badgeRecord));
   }
 
+  // Ingestion par lot : un BadgeDto (avec employeeId) par ligne NDJSON, un résultat par ligne
+  @PostMapping(
+      value = "/batch",
+      consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+      produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<BadgeBatchResult> addBadgeRecords(@RequestBody Flux<BadgeDto> badges) {
+    return badgeService.addBadgeRecords(badges);
+  }
+
   @GetMapping("/employee/{employeeId}/day/{date}")
   public Mono<ResponseEntity<TimeReport>> getDailyTimeReport(
       @PathVariable String employeeId, @PathVariable String date) {
@@ -49,6 +90,44 @@ public class BadgeController {
     return badgeService.calculateMonthlyTime(employeeId, month).map(ResponseEntity::ok);
   }
 
+  // Rapport par jour et total sur la plage [start, end], bornes incluses (format "yyyy-MM-dd")
+  @GetMapping("/employee/{employeeId}/range")
+  public Mono<ResponseEntity<RangeReport>> getRangeTimeReport(
+      @PathVariable String employeeId,
+      @RequestParam("start") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+      @RequestParam("end") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end) {
+    return badgeService.calculateRangeTime(employeeId, start, end).map(ResponseEntity::ok);
+  }
+
+  // Rapports mensuels de tous les employés, diffusés au fur et à mesure de leur calcul
+  @GetMapping(
+      value = "/month/{month}",
+      produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+  public Flux<TimeReport> getMonthlyTimeReports(@PathVariable String month) {
+    return badgeService.calculateMonthlyTimeForAll(month);
+  }
+
+  // Export de paie CSV de tous les employés, écrit par tampons au fil du calcul des rapports
+  @GetMapping(value = "/month/{month}/export", produces = "text/csv")
+  public ResponseEntity<Flux<DataBuffer>> exportMonthlyPayroll(
+      @PathVariable String month, ServerHttpResponse response) {
+    DataBufferFactory bufferFactory = response.bufferFactory();
+    Flux<DataBuffer> body =
+        badgeService
+            .exportMonthlyPayroll(month)
+            .map(BadgeController::toCsvRow)
+            .startWith(PAYROLL_HEADER)
+            .buffer(PAYROLL_ROWS_PER_BUFFER)
+            .map(
+                rows -> bufferFactory.wrap(String.join("", rows).getBytes(StandardCharsets.UTF_8)));
+    return ResponseEntity.ok()
+        .contentType(TEXT_CSV)
+        .header(
+            HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename("paie-" + month + ".csv").build().toString())
+        .body(body);
+  }
+
   @GetMapping("/employee/{employeeId}/status")
   public Mono<ResponseEntity<BadgeType>> getEmployeeStatus(
       @PathVariable String employeeId,
@@ -57,4 +136,86 @@ public class BadgeController {
         .map(ResponseEntity::ok);
   }
 
+  // Statut de tous les employés (ou de ceux listés dans employeeIds) à un instant donné,
+  // diffusé au fur et à mesure
+  @GetMapping(
+      value = "/status",
+      produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+  public Flux<EmployeeStatus> getEmployeesStatus(
+      @RequestParam("timestamp") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime timestamp,
+      @RequestParam(value = "employeeIds", required = false) List<String> employeeIds) {
+    return badgeService.getEmployeesStatusAt(timestamp, employeeIds);
+  }
+
+  // Journées comptant des badgeages non appariés, relevées par les calculs de temps de cette
+  // instance ; employeeId, start et end (bornes incluses) sont facultatifs
+  @GetMapping(
+      value = "/anomalies",
+      produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+  public Flux<PunchAnomaly> getAnomalies(
+      @RequestParam(value = "employeeId", required = false) String employeeId,
+      @RequestParam(value = "start", required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+          LocalDate start,
+      @RequestParam(value = "end", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+          LocalDate end) {
+    return anomalyTracker.find(employeeId, start, end);
+  }
+
+  // Dernier badgeage connu de chaque employé, à charger avant de s'abonner au flux
+  @GetMapping("/presence")
+  public Flux<EmployeeStatus> getPresence() {
+    return presenceBoard.snapshot();
+  }
+
+  // Flux SSE des passages IN/OUT, avec un commentaire périodique pour garder la connexion ouverte.
+  // Sans tableau de présence, aucun passage ne serait publié : 404 plutôt qu'un flux muet
+  @GetMapping(value = "/presence/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public Flux<ServerSentEvent<EmployeeStatus>> streamPresence() {
+    if (!presenceBoard.isEnabled()) {
+      return Flux.error(
+          new ResourceNotFoundException(
+              "Presence stream disabled, see badgeuse.presence.enabled"));
+    }
+    return Flux.merge(
+        presenceBoard
+            .changes()
+            .map(
+                status ->
+                    ServerSentEvent.builder(status)
+                        .event("presence")
+                        .id(status.getEmployeeId())
+                        .build()),
+        Flux.interval(SSE_KEEPALIVE)
+            .map(tick -> ServerSentEvent.<EmployeeStatus>builder().comment("keepalive").build()));
+  }
+
+  static String toCsvRow(PayrollLine line) {
+    return String.join(
+            ",",
+            csvField(line.getEmployeeId()),
+            csvField(line.getName()),
+            csvField(line.getEmail()),
+            line.getMonth(),
+            String.valueOf(line.getTotalMinutes()),
+            String.valueOf(line.getExpectedMinutes()),
+            String.valueOf(line.isSufficient()))
+        + "\r\n";
+  }
+
+  // Champ entre guillemets s'il contient un séparateur, un guillemet ou un saut de ligne
+  // (RFC 4180)
+  private static String csvField(String value) {
+    if (value == null) {
+      return "";
+    }
+    if (value.contains(",")
+        || value.contains("\"")
+        || value.contains("\n")
+        || value.contains("\r")) {
+      return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+    return value;
+  }
 }
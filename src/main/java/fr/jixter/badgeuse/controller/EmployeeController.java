@@ -2,9 +2,11 @@ package fr.jixter.badgeuse.controller;
 
 import fr.jixter.badgeuse.domain.Employee;
 import fr.jixter.badgeuse.domain.dto.EmployeeDto;
+import fr.jixter.badgeuse.domain.dto.EmployeePage;
 import fr.jixter.badgeuse.service.EmployeeService;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,6 +15,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -52,8 +55,24 @@ public class EmployeeController {
         .thenReturn(ResponseEntity.noContent().build());
   }
 
-  @GetMapping
+  // Tableau JSON de tous les employés, réponse historique de GET /api/employees conservée pour
+  // les clients qui ne passent ni cursor ni size ; lu par pages sur l'index _id
+  @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE, params = {"!cursor", "!size"})
   public Flux<Employee> getAllEmployees() {
-    return employeeService.getAllEmployees();
+    return employeeService.streamEmployees(null);
+  }
+
+  // Page d'employés triés par identifiant, dès que cursor ou size est passé ; passer nextCursor
+  // pour obtenir la page suivante
+  @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<EmployeePage> getEmployees(@RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "50") int size) {
+    return employeeService.getEmployeesPage(cursor, size);
+  }
+
+  // Liste complète (ou à partir d'un curseur) en NDJSON, au rythme de lecture du client
+  @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<Employee> streamEmployees(@RequestParam(required = false) String cursor) {
+    return employeeService.streamEmployees(cursor);
   }
 }
@@ -1,5 +1,8 @@
 package fr.jixter.badgeuse.controller;
 
+import fr.jixter.badgeuse.exception.ClosedPeriodException;
+import fr.jixter.badgeuse.exception.InvalidCursorException;
+import fr.jixter.badgeuse.exception.InvalidRangeException;
 import fr.jixter.badgeuse.exception.ResourceNotFoundException;
 import java.time.LocalDateTime;
 import java.util.stream.Collectors;
@@ -27,6 +30,33 @@ public class GlobalExceptionHandler {
     return ResponseEntity.status(HttpStatus.NOT_FOUND).body(problemDetail);
   }
 
+  @ExceptionHandler(InvalidCursorException.class)
+  public ResponseEntity<ProblemDetail> handleInvalidCursor(InvalidCursorException ex) {
+    logger.error("Invalid cursor: {}", ex.getMessage());
+    ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, ex.getMessage());
+    problemDetail.setTitle("Invalid Cursor");
+    problemDetail.setProperty(TIMESTAMP, LocalDateTime.now());
+    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(problemDetail);
+  }
+
+  @ExceptionHandler(ClosedPeriodException.class)
+  public ResponseEntity<ProblemDetail> handleClosedPeriod(ClosedPeriodException ex) {
+    logger.error("Closed period: {}", ex.getMessage());
+    ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, ex.getMessage());
+    problemDetail.setTitle("Closed Period");
+    problemDetail.setProperty(TIMESTAMP, LocalDateTime.now());
+    return ResponseEntity.status(HttpStatus.CONFLICT).body(problemDetail);
+  }
+
+  @ExceptionHandler(InvalidRangeException.class)
+  public ResponseEntity<ProblemDetail> handleInvalidRange(InvalidRangeException ex) {
+    logger.error("Invalid range: {}", ex.getMessage());
+    ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, ex.getMessage());
+    problemDetail.setTitle("Invalid Range");
+    problemDetail.setProperty(TIMESTAMP, LocalDateTime.now());
+    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(problemDetail);
+  }
+
   @ExceptionHandler(WebExchangeBindException.class)
   public ResponseEntity<ProblemDetail> handleValidationException(WebExchangeBindException ex) {
     String errorMsg = ex.getFieldErrors().stream()
@@ -0,0 +1,37 @@
+package fr.jixter.badgeuse.domain;
+
+import java.time.YearMonth;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// État de l'archivage mensuel d'une collection de badgeages (mois au format "yyyy-MM", null si
+// aucun). Un mois est d'abord fermé aux écritures, puis archivé une fois recopié.
+@Document(collection = "badge_partitions")
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class BadgePartitionState {
+
+  // Nom de la collection chaude, badge_records
+  @Id
+  private String id;
+
+  // Les badgeages antérieurs à ce mois sont refusés
+  private String closedBefore;
+
+  // Les badgeages antérieurs à ce mois sont lus dans leurs partitions mensuelles
+  private String archivedBefore;
+
+  public YearMonth closedBeforeMonth() {
+    return closedBefore != null ? YearMonth.parse(closedBefore) : null;
+  }
+
+  public YearMonth archivedBeforeMonth() {
+    return archivedBefore != null ? YearMonth.parse(archivedBefore) : null;
+  }
+}
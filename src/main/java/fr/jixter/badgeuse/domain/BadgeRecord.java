@@ -8,9 +8,19 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "badge_records")
+// Index composé utilisé par toutes les recherches par employé et par plage horaire
+@CompoundIndex(name = "employee_timestamp_idx", def = "{'employeeId': 1, 'timestamp': 1}")
+// Unicité de l'identifiant d'événement du terminal, par employé, pour les seuls badgeages qui en
+// ont un. Non créé sur une collection time-series, qui n'accepte pas les index uniques.
+@CompoundIndex(
+    name = "employee_event_idx",
+    def = "{'employeeId': 1, 'eventId': 1}",
+    unique = true,
+    partialFilter = "{'eventId': {'$exists': true}}")
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
@@ -28,4 +38,7 @@ public class BadgeRecord {
 
   @NotNull(message = "Le type (IN/OUT) est requis")
   private BadgeType type;
+
+  // Identifiant attribué par le terminal, identique lors des rejeux d'un même badgeage
+  private String eventId;
 }
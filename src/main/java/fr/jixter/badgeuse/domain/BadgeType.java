@@ -1,5 +1,6 @@
 package fr.jixter.badgeuse.domain;
 
+// Rang stocké en encodage COMPACT : ajouter les nouvelles valeurs à la fin
 public enum BadgeType {
   IN,
   OUT
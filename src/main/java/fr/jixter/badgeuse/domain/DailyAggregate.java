@@ -0,0 +1,44 @@
+package fr.jixter.badgeuse.domain;
+
+import java.time.LocalDate;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// Agrégat journalier d'un employé, recalculé à chaque badgeage du jour concerné ou de ses voisins
+@Document(collection = "daily_aggregates")
+@CompoundIndex(name = "employee_date_idx", def = "{'employeeId': 1, 'date': 1}", unique = true)
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class DailyAggregate {
+
+  // Identifiant déterministe "employeeId_yyyy-MM-dd" pour permettre l'upsert
+  @Id
+  private String id;
+
+  private String employeeId;
+
+  private LocalDate date;
+
+  private long workedMinutes;
+
+  private int unmatchedCount;
+
+  // Nombre de badgeages de la journée
+  private int punchCount;
+
+  // Nombre de badgeages de l'employé dans le mois lors du calcul, toujours croissant puisque les
+  // badgeages ne sont jamais supprimés. Une journée dépend aussi de ses badgeages voisins dans le
+  // mois (présence franchissant minuit) : sert à ignorer l'écriture d'un recalcul plus ancien.
+  private long monthPunchCount;
+
+  public static String idOf(String employeeId, LocalDate date) {
+    return employeeId + "_" + date;
+  }
+}
@@ -0,0 +1,18 @@
+package fr.jixter.badgeuse.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Temps travaillé d'un employé sur une période, calculé côté MongoDB
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class EmployeeMinutes {
+
+  private String employeeId;
+  private long totalMinutes;
+  private int unmatchedCount;
+}
@@ -0,0 +1,56 @@
+package fr.jixter.badgeuse.domain;
+
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.function.IntFunction;
+
+// Jours fériés français. GOOD_FRIDAY et SAINT_STEPHEN ne sont fériés qu'en Alsace-Moselle.
+public enum FrenchHoliday {
+  NEW_YEAR(fixed(1, 1)),
+  GOOD_FRIDAY(year -> easterSunday(year).minusDays(2)),
+  EASTER_MONDAY(year -> easterSunday(year).plusDays(1)),
+  LABOUR_DAY(fixed(5, 1)),
+  VICTORY_1945(fixed(5, 8)),
+  ASCENSION(year -> easterSunday(year).plusDays(39)),
+  WHIT_MONDAY(year -> easterSunday(year).plusDays(50)),
+  BASTILLE_DAY(fixed(7, 14)),
+  ASSUMPTION(fixed(8, 15)),
+  ALL_SAINTS(fixed(11, 1)),
+  ARMISTICE_1918(fixed(11, 11)),
+  CHRISTMAS(fixed(12, 25)),
+  SAINT_STEPHEN(fixed(12, 26));
+
+  private final IntFunction<LocalDate> date;
+
+  FrenchHoliday(IntFunction<LocalDate> date) {
+    this.date = date;
+  }
+
+  public LocalDate dateIn(int year) {
+    return date.apply(year);
+  }
+
+  private static IntFunction<LocalDate> fixed(int month, int day) {
+    MonthDay monthDay = MonthDay.of(month, day);
+    return monthDay::atYear;
+  }
+
+  // Dimanche de Pâques du calendrier grégorien (algorithme de Meeus / Jones / Butcher)
+  static LocalDate easterSunday(int year) {
+    int a = year % 19;
+    int b = year / 100;
+    int c = year % 100;
+    int d = b / 4;
+    int e = b % 4;
+    int f = (b + 8) / 25;
+    int g = (b - f + 1) / 3;
+    int h = (19 * a + b - d - g + 15) % 30;
+    int i = c / 4;
+    int k = c % 4;
+    int l = (32 + 2 * e + 2 * i - h - k) % 7;
+    int m = (a + 11 * h + 22 * l) / 451;
+    int month = (h + l - 7 * m + 114) / 31;
+    int day = (h + l - 7 * m + 114) % 31 + 1;
+    return LocalDate.of(year, month, day);
+  }
+}
@@ -0,0 +1,46 @@
+package fr.jixter.badgeuse.domain;
+
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// Résumé mensuel d'un employé, calculé lors de l'archivage du mois : remplace les badgeages
+// bruts pour les rapports mensuels et garde le dernier badgeage pour les statuts
+@Document(collection = "badge_monthly_summaries")
+@CompoundIndex(name = "employee_month_idx", def = "{'employeeId': 1, 'month': 1}", unique = true)
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class MonthlySummary {
+
+  // Identifiant déterministe "employeeId_yyyy-MM" pour permettre l'upsert
+  @Id
+  private String id;
+
+  private String employeeId;
+
+  // Mois au format "yyyy-MM", dont l'ordre alphabétique est l'ordre chronologique
+  @Indexed(name = "month_idx")
+  private String month;
+
+  private long workedMinutes;
+
+  private int unmatchedCount;
+
+  private int punchCount;
+
+  private BadgeType lastType;
+
+  private LocalDateTime lastTimestamp;
+
+  public static String idOf(String employeeId, String month) {
+    return employeeId + "_" + month;
+  }
+}
@@ -0,0 +1,28 @@
+package fr.jixter.badgeuse.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class BadgeBatchResult {
+
+  // Position de l'enregistrement dans le flux reçu (à partir de 0)
+  private long index;
+  private String employeeId;
+  private Status status;
+  // Identifiant de l'enregistrement créé, ou de l'original pour un rejeu, absent en cas de rejet
+  private String id;
+  private String error;
+
+  public enum Status {
+    CREATED,
+    // Rejeu d'un badgeage déjà enregistré avec le même eventId : accepté, sans nouvelle écriture
+    DUPLICATE,
+    REJECTED
+  }
+}
@@ -2,6 +2,7 @@ package fr.jixter.badgeuse.domain.dto;
 
 import fr.jixter.badgeuse.domain.BadgeType;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import java.time.LocalDateTime;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -14,9 +15,16 @@ import lombok.NoArgsConstructor;
 @Data
 public class BadgeDto {
 
+  // Renseigné uniquement pour l'ingestion par lot, l'employé étant sinon porté par l'URL
+  private String employeeId;
+
   @NotNull(message = "Le timestamp est requis")
   private LocalDateTime timestamp;
 
   @NotNull(message = "Le type (IN/OUT) est requis")
   private BadgeType type;
+
+  // Facultatif : un badgeage rejoué avec le même eventId n'est enregistré qu'une fois
+  @Size(max = 128, message = "L'identifiant d'événement ne doit pas dépasser 128 caractères")
+  private String eventId;
 }
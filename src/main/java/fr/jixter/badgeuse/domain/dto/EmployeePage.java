@@ -0,0 +1,19 @@
+package fr.jixter.badgeuse.domain.dto;
+
+import fr.jixter.badgeuse.domain.Employee;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Page d'employés triés par identifiant. nextCursor est absent sur la dernière page.
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class EmployeePage {
+
+  private List<Employee> items;
+  private String nextCursor;
+}
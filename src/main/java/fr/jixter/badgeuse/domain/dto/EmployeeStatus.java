@@ -0,0 +1,20 @@
+package fr.jixter.badgeuse.domain.dto;
+
+import fr.jixter.badgeuse.domain.BadgeType;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Statut d'un employé : type et horodatage de son dernier badgeage
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class EmployeeStatus {
+
+  private String employeeId;
+  private BadgeType type;
+  private LocalDateTime timestamp;
+}
@@ -0,0 +1,22 @@
+package fr.jixter.badgeuse.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Ligne de l'export de paie : rapport mensuel d'un employé, avec son identité
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class PayrollLine {
+
+  private String employeeId;
+  private String name;
+  private String email;
+  private String month;
+  private long totalMinutes;
+  private long expectedMinutes;
+  private boolean sufficient;
+}
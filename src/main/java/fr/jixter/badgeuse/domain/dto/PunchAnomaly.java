@@ -0,0 +1,23 @@
+package fr.jixter.badgeuse.domain.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Journée d'un employé comptant des badgeages non appariés, lors du dernier calcul de temps qui
+// l'a parcourue
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class PunchAnomaly {
+
+  private String employeeId;
+  private LocalDate date;
+  private int unmatchedCount;
+  private LocalDateTime firstDetectedAt;
+  private LocalDateTime lastDetectedAt;
+}
@@ -0,0 +1,24 @@
+package fr.jixter.badgeuse.domain.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Rapport sur une plage de dates (bornes incluses, format "yyyy-MM-dd") : un rapport par jour
+// et le total de la plage, comparé aux minutes attendues sur les jours ouvrés
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class RangeReport {
+
+  private String employeeId;
+  private String start;
+  private String end;
+  private List<TimeReport> days;
+  private long totalMinutes;
+  private long expectedMinutes;
+  private boolean sufficient;
+}
@@ -0,0 +1,7 @@
+package fr.jixter.badgeuse.exception;
+
+public class ClosedPeriodException extends RuntimeException {
+  public ClosedPeriodException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,7 @@
+package fr.jixter.badgeuse.exception;
+
+public class InvalidCursorException extends RuntimeException {
+  public InvalidCursorException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,7 @@
+package fr.jixter.badgeuse.exception;
+
+public class InvalidRangeException extends RuntimeException {
+  public InvalidRangeException(String message) {
+    super(message);
+  }
+}
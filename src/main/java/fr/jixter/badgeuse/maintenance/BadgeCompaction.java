@@ -0,0 +1,215 @@
+package fr.jixter.badgeuse.maintenance;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.out;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.config.MongoMappingConfig;
+import fr.jixter.badgeuse.domain.BadgePartitionState;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.MonthlySummary;
+import fr.jixter.badgeuse.repository.BadgePartitions;
+import fr.jixter.badgeuse.repository.ReactiveMonthlySummaryRepository;
+import fr.jixter.badgeuse.service.BadgePairing;
+import fr.jixter.badgeuse.service.PairingSummary;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.Stream;
+import lombok.AllArgsConstructor;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Archivage des mois antérieurs à l'horizon (badgeuse.partitions.hot-months) :
+//   1. les mois sont fermés aux écritures, puis la compaction attend que toutes les instances
+//      l'aient pris en compte (refresh-interval) ;
+//   2. chaque mois est recopié dans sa partition badge_records_yyyy_MM, résumé par employé dans
+//      badge_monthly_summaries, puis marqué archivé : les lectures passent alors par la partition ;
+//   3. après un nouveau délai, les badgeages archivés sont supprimés de badge_records.
+// Une compaction interrompue reprend au premier mois non archivé.
+@Component
+@AllArgsConstructor
+public class BadgeCompaction {
+
+  private static final Logger logger = LoggerFactory.getLogger(BadgeCompaction.class);
+  private static final int SUMMARY_CONCURRENCY = 8;
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final BadgePartitions partitions;
+  private final ReactiveMonthlySummaryRepository summaryRepository;
+  private final BadgeuseProperties properties;
+
+  public Mono<Void> compact() {
+    BadgeuseProperties.Partitions settings = properties.getPartitions();
+    if (!settings.isEnabled()) {
+      return Mono.error(
+          new IllegalStateException(
+              "badgeuse.partitions.enabled doit être activé sur toutes les instances avant la"
+                  + " compaction"));
+    }
+    // Le mois en cours compte parmi les mois conservés
+    YearMonth horizon = YearMonth.now().minusMonths(settings.getHotMonths() - 1L);
+    String hot = partitions.hotCollection();
+    // État relu directement, sans le cache de BadgePartitions
+    return mongoTemplate
+        .findById(hot, BadgePartitionState.class)
+        .defaultIfEmpty(BadgePartitionState.builder().id(hot).build())
+        .flatMap(
+            state ->
+                firstMonthToArchive(state)
+                    .filter(first -> first.isBefore(horizon))
+                    .flatMap(
+                        first -> {
+                          state.setClosedBefore(horizon.toString());
+                          return mongoTemplate
+                              .save(state)
+                              .then(awaitRefresh(settings, "fermeture des mois à archiver"))
+                              .thenMany(
+                                  Flux.fromStream(
+                                      Stream.iterate(
+                                          first, horizon::isAfter, month -> month.plusMonths(1))))
+                              .concatMap(month -> archive(month).then(markArchived(state, month)))
+                              .then();
+                        })
+                    .then(Mono.defer(() -> deleteArchived(settings, state))));
+  }
+
+  // Premier mois non archivé : mois du plus ancien badgeage de badge_records lors de la première
+  // compaction (parcours complet, sans index sur timestamp seul)
+  private Mono<YearMonth> firstMonthToArchive(BadgePartitionState state) {
+    if (state.archivedBeforeMonth() != null) {
+      return Mono.just(state.archivedBeforeMonth());
+    }
+    return mongoTemplate
+        .findOne(new Query().with(Sort.by("timestamp")).limit(1), BadgeRecord.class)
+        .map(oldest -> YearMonth.from(oldest.getTimestamp()));
+  }
+
+  private Mono<Void> archive(YearMonth month) {
+    String partition = partitions.archiveCollection(month);
+    LocalDateTime start = month.atDay(1).atStartOfDay();
+    LocalDateTime end = month.plusMonths(1).atDay(1).atStartOfDay();
+    // $out remplace le contenu de la partition (reprise après interruption) en conservant ses
+    // index, créés au préalable ; la copie reste côté serveur, sans relecture du résultat
+    return mongoTemplate
+        .indexOps(partition)
+        .ensureIndex(
+            new Index()
+                .on(badgeField("employeeId"), Sort.Direction.ASC)
+                .on(badgeField("timestamp"), Sort.Direction.ASC)
+                .named("employee_timestamp_idx"))
+        .thenMany(
+            mongoTemplate.aggregate(
+                newAggregation(
+                        BadgeRecord.class,
+                        match(where("timestamp").gte(start).lt(end)),
+                        out(partition))
+                    .withOptions(AggregationOptions.builder().skipOutput().build()),
+                partitions.hotCollection(),
+                Document.class))
+        .then(
+            Mono.zip(
+                mongoTemplate.count(
+                    query(where("timestamp").gte(start).lt(end)), BadgeRecord.class),
+                mongoTemplate.count(new Query(), partition)))
+        .flatMap(
+            counts -> {
+              if (!counts.getT1().equals(counts.getT2())) {
+                return Mono.error(
+                    new IllegalStateException(
+                        counts.getT2() + " badgeages recopiés dans " + partition + " sur "
+                            + counts.getT1()));
+              }
+              return summarize(month, partition)
+                  .doOnNext(
+                      summaries ->
+                          logger.info(
+                              "{} : {} badgeages recopiés dans {}, {} résumés mensuels",
+                              month,
+                              counts.getT1(),
+                              partition,
+                              summaries));
+            })
+        .then();
+  }
+
+  // Un résumé par employé, avec les règles d'appariement des rapports mensuels
+  private Mono<Long> summarize(YearMonth month, String partition) {
+    return mongoTemplate
+        .find(new Query().with(Sort.by("employeeId", "timestamp")), BadgeRecord.class, partition)
+        .bufferUntilChanged(BadgeRecord::getEmployeeId)
+        .map(records -> toSummary(month, records))
+        .flatMap(summaryRepository::save, SUMMARY_CONCURRENCY)
+        .count();
+  }
+
+  private static MonthlySummary toSummary(YearMonth month, List<BadgeRecord> records) {
+    BadgePairing pairing = new BadgePairing();
+    records.forEach(pairing::accept);
+    PairingSummary summary = pairing.finish();
+    BadgeRecord last = records.get(records.size() - 1);
+    return MonthlySummary.builder()
+        .id(MonthlySummary.idOf(last.getEmployeeId(), month.toString()))
+        .employeeId(last.getEmployeeId())
+        .month(month.toString())
+        .workedMinutes(summary.totalMinutes())
+        .unmatchedCount(summary.unmatchedCount())
+        .punchCount(summary.punchCount())
+        .lastType(last.getType())
+        .lastTimestamp(last.getTimestamp())
+        .build();
+  }
+
+  private String badgeField(String property) {
+    return MongoMappingConfig.badgeField(mongoTemplate.getConverter(), property);
+  }
+
+  private Mono<Void> markArchived(BadgePartitionState state, YearMonth month) {
+    state.setArchivedBefore(month.plusMonths(1).toString());
+    return mongoTemplate.save(state).then();
+  }
+
+  private Mono<Void> awaitRefresh(BadgeuseProperties.Partitions settings, String step) {
+    Duration delay = settings.getRefreshInterval();
+    return Mono.fromRunnable(
+            () -> logger.info("Attente de {} pour la prise en compte de la {}", delay, step))
+        .then(Mono.delay(delay))
+        .then();
+  }
+
+  // Suppression de badge_records des mois archivés, y compris ceux d'une compaction interrompue,
+  // une fois que toutes les instances les lisent dans leurs partitions
+  private Mono<Void> deleteArchived(
+      BadgeuseProperties.Partitions settings, BadgePartitionState state) {
+    YearMonth archivedBefore = state.archivedBeforeMonth();
+    if (archivedBefore == null) {
+      logger.info("Aucun mois à archiver");
+      return Mono.empty();
+    }
+    return awaitRefresh(settings, "lecture des mois archivés dans leurs partitions")
+        .then(mongoTemplate.remove(
+            query(where("timestamp").lt(archivedBefore.atDay(1).atStartOfDay())),
+            BadgeRecord.class))
+        .doOnNext(
+            result ->
+                logger.info(
+                    "{} badgeages antérieurs à {} supprimés de {}",
+                    result.getDeletedCount(),
+                    archivedBefore,
+                    partitions.hotCollection()))
+        .then();
+  }
+}
@@ -0,0 +1,298 @@
+package fr.jixter.badgeuse.maintenance;
+
+import static fr.jixter.badgeuse.config.MongoMappingConfig.COMPACT_BADGE_FIELDS;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import fr.jixter.badgeuse.config.BadgeCollectionInitializer;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.BadgeType;
+import fr.jixter.badgeuse.domain.MonthlySummary;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import lombok.AllArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Passage des badgeages à l'encodage COMPACT (badgeuse.mongo.badge-encoding), en deux temps et
+// sans arrêt des écritures :
+//   1. --copy-badge-records-to-compact, instances en encodage STANDARD : badge_records et ses
+//      partitions mensuelles sont recopiées côté serveur, converties, dans <collection>_compact,
+//      dont les index sont ensuite créés. Relancée, la copie reprend peu avant le dernier badgeage
+//      recopié et rattrape les badgeages écrits entre-temps ;
+//   2. --switch-badge-records-to-compact, juste avant de redémarrer les instances en COMPACT :
+//      dernier rattrapage, échange des collections (l'ancienne est conservée en
+//      <collection>_legacy) et conversion sur place des résumés mensuels. Relancer la commande
+//      une fois toutes les instances redémarrées : elle convertit les badgeages écrits au format
+//      STANDARD par les instances pas encore redémarrées.
+// Ne pas lancer --compact-badge-records entre les deux étapes. Les tailles des deux encodages
+// sont journalisées à la fin de chaque étape. Une collection time-series ne pouvant être
+// renommée, convertir en time-series après le passage à l'encodage compact.
+@Component
+@AllArgsConstructor
+public class BadgeEncodingMigration {
+
+  static final String COMPACT_SUFFIX = "_compact";
+  static final String LEGACY_SUFFIX = "_legacy";
+
+  private static final Logger logger = LoggerFactory.getLogger(BadgeEncodingMigration.class);
+  // Décalage d'horloge admis entre instances : un badgeage écrit pendant la copie peut avoir un
+  // identifiant légèrement antérieur au dernier recopié
+  private static final Duration RESUME_MARGIN = Duration.ofMinutes(5);
+  private static final List<String> TYPE_RANKS =
+      Arrays.stream(BadgeType.values()).map(BadgeType::name).toList();
+  private static final List<Document> COLL_STATS =
+      List.of(new Document("$collStats", new Document("storageStats", new Document())));
+
+  private final ReactiveMongoTemplate mongoTemplate;
+
+  public Mono<Void> copy() {
+    return badgeCollections()
+        .concatMap(
+            collection ->
+                copy(collection)
+                    .then(createIndexes(collection + COMPACT_SUFFIX))
+                    .then(compareSizes(collection, collection + COMPACT_SUFFIX)))
+        .then();
+  }
+
+  public Mono<Void> switchEncoding() {
+    String hot = mongoTemplate.getCollectionName(BadgeRecord.class);
+    return badgeCollections()
+        .concatMap(
+            collection ->
+                mongoTemplate
+                    .collectionExists(collection + COMPACT_SUFFIX)
+                    .flatMap(
+                        copied ->
+                            copied
+                                ? copy(collection)
+                                    .then(rename(collection, collection + LEGACY_SUFFIX))
+                                    .then(rename(collection + COMPACT_SUFFIX, collection))
+                                    .then(compareSizes(collection + LEGACY_SUFFIX, collection))
+                                : Mono.empty()))
+        .then(convertInPlace(hot))
+        .then(convertSummaries());
+  }
+
+  // badge_records et ses partitions badge_records_yyyy_MM, partitions en premier
+  private Flux<String> badgeCollections() {
+    String hot = mongoTemplate.getCollectionName(BadgeRecord.class);
+    Pattern partition = Pattern.compile(Pattern.quote(hot) + "_\\d{4}_\\d{2}");
+    return BadgeCollectionInitializer.collectionType(mongoTemplate, hot)
+        .filter("timeseries"::equals)
+        .flatMap(
+            type ->
+                Mono.<String>error(
+                    new IllegalStateException(
+                        "La collection " + hot + " est time-series : migration interrompue")))
+        .thenMany(
+            mongoTemplate
+                .getCollectionNames()
+                .filter(name -> partition.matcher(name).matches())
+                .sort()
+                .concatWith(Mono.just(hot)));
+  }
+
+  // Copie convertie côté serveur, idempotente : les badgeages déjà recopiés sont conservés
+  private Mono<Void> copy(String collection) {
+    String target = collection + COMPACT_SUFFIX;
+    return resumeFrom(target)
+        .map(from -> new Document("_id", new Document("$gte", from)))
+        .defaultIfEmpty(new Document())
+        .flatMap(
+            filter -> {
+              List<Document> pipeline =
+                  List.of(
+                      new Document("$match", filter),
+                      new Document("$project", compactProjection()),
+                      new Document(
+                          "$merge",
+                          new Document("into", target)
+                              .append("on", "_id")
+                              .append("whenMatched", "keepExisting")
+                              .append("whenNotMatched", "insert")));
+              return mongoTemplate
+                  .getCollection(collection)
+                  .flatMap(
+                      source ->
+                          Mono.from(source.aggregate(pipeline).allowDiskUse(true).toCollection()))
+                  .then(Mono.zip(count(collection), count(target)))
+                  .doOnNext(
+                      counts ->
+                          logger.info(
+                              "{} : {} badgeages, {} dans {}",
+                              collection,
+                              counts.getT1(),
+                              counts.getT2(),
+                              target));
+            })
+        .then();
+  }
+
+  private Mono<Long> count(String collection) {
+    return mongoTemplate
+        .getCollection(collection)
+        .flatMap(source -> Mono.from(source.countDocuments()));
+  }
+
+  // Premier identifiant à reprendre : celui du dernier badgeage recopié, moins la marge
+  private Mono<ObjectId> resumeFrom(String target) {
+    return mongoTemplate
+        .getCollection(target)
+        .flatMap(
+            copy ->
+                Mono.from(
+                    copy.find()
+                        .projection(new Document("_id", 1))
+                        .sort(new Document("_id", -1))
+                        .first()))
+        .mapNotNull(last -> last.get("_id") instanceof ObjectId id ? id : null)
+        .map(
+            last ->
+                new ObjectId(
+                    String.format(
+                        "%08x%016x",
+                        last.getTimestamp() - RESUME_MARGIN.toSeconds(), 0)));
+  }
+
+  // Index de BadgeRecord sous les clés compactes, les instances étant encore en STANDARD
+  private Mono<Void> createIndexes(String collection) {
+    IndexResolver indexResolver =
+        IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+    return mongoTemplate
+        .getCollection(collection)
+        .flatMapMany(
+            target ->
+                Flux.fromIterable(indexResolver.resolveIndexFor(BadgeRecord.class))
+                    .concatMap(index -> createIndex(target, index)))
+        .then();
+  }
+
+  private Mono<String> createIndex(MongoCollection<Document> target, IndexDefinition index) {
+    Document options = index.getIndexOptions();
+    IndexOptions indexOptions =
+        new IndexOptions()
+            .name(options.getString("name"))
+            .unique(Boolean.TRUE.equals(options.get("unique")));
+    if (options.get("partialFilterExpression") instanceof Document filter) {
+      indexOptions.partialFilterExpression(compactKeys(filter));
+    }
+    return Mono.from(target.createIndex(compactKeys(index.getIndexKeys()), indexOptions))
+        .doOnNext(name -> logger.info("Index {} créé sur {}", name, target.getNamespace()));
+  }
+
+  private static Document compactKeys(Document document) {
+    Document mapped = new Document();
+    document.forEach(
+        (key, value) -> mapped.append(COMPACT_BADGE_FIELDS.getOrDefault(key, key), value));
+    return mapped;
+  }
+
+  // Document STANDARD vers COMPACT : clés courtes, rang du type, sans _class ; un eventId absent
+  // reste absent
+  static Document compactProjection() {
+    Document projection = new Document("_id", 1);
+    COMPACT_BADGE_FIELDS.forEach(
+        (property, key) ->
+            projection.append(
+                key,
+                "type".equals(property)
+                    ? new Document("$indexOfArray", Arrays.asList(TYPE_RANKS, "$type"))
+                    : "$" + property));
+    return projection;
+  }
+
+  // Badgeages écrits au format STANDARD après l'échange des collections
+  private Mono<Void> convertInPlace(String collection) {
+    Document set = compactProjection();
+    set.remove("_id");
+    List<String> removed = new ArrayList<>(COMPACT_BADGE_FIELDS.keySet());
+    removed.add("_class");
+    return mongoTemplate
+        .getCollection(collection)
+        .flatMap(
+            target ->
+                Mono.from(
+                    target.updateMany(
+                        new Document("employeeId", new Document("$exists", true)),
+                        List.of(new Document("$set", set), new Document("$unset", removed)))))
+        .doOnNext(
+            result ->
+                logger.info(
+                    "{} badgeages au format STANDARD convertis dans {}",
+                    result.getModifiedCount(),
+                    collection))
+        .then();
+  }
+
+  // Type du dernier badgeage des résumés mensuels, lu sous ses deux formes par les instances
+  private Mono<Void> convertSummaries() {
+    String collection = mongoTemplate.getCollectionName(MonthlySummary.class);
+    return mongoTemplate
+        .getCollection(collection)
+        .flatMap(
+            summaries ->
+                Mono.from(
+                    summaries.updateMany(
+                        new Document("lastType", new Document("$type", "string")),
+                        List.of(
+                            new Document(
+                                "$set",
+                                new Document(
+                                    "lastType",
+                                    new Document(
+                                        "$indexOfArray",
+                                        Arrays.asList(TYPE_RANKS, "$lastType"))))))))
+        .doOnNext(
+            result ->
+                logger.info(
+                    "{} résumés mensuels convertis dans {}", result.getModifiedCount(), collection))
+        .then();
+  }
+
+  private Mono<Void> rename(String from, String to) {
+    return Mono.zip(mongoTemplate.getMongoDatabase(), mongoTemplate.getCollection(from))
+        .flatMap(
+            tuple ->
+                Mono.from(
+                    tuple
+                        .getT2()
+                        .renameCollection(new MongoNamespace(tuple.getT1().getName(), to))))
+        .then(Mono.fromRunnable(() -> logger.info("Collection {} renommée en {}", from, to)));
+  }
+
+  private Mono<Void> compareSizes(String standard, String compact) {
+    return Flux.just(standard, compact)
+        .concatMap(
+            collection ->
+                mongoTemplate
+                    .getCollection(collection)
+                    .flatMap(source -> Mono.from(source.aggregate(COLL_STATS).first()))
+                    .map(stats -> stats.get("storageStats", Document.class))
+                    .doOnNext(
+                        storage ->
+                            logger.info(
+                                "{} : {} documents, taille moyenne {} o, données {} o, stockage {}"
+                                    + " o, index {} o",
+                                collection,
+                                storage.get("count"),
+                                storage.get("avgObjSize"),
+                                storage.get("size"),
+                                storage.get("storageSize"),
+                                storage.get("totalIndexSize"))))
+        .then();
+  }
+}
@@ -0,0 +1,262 @@
+package fr.jixter.badgeuse.maintenance;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import fr.jixter.badgeuse.config.BadgeCollectionInitializer;
+import fr.jixter.badgeuse.config.MongoMappingConfig;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+
+// Conversion de badge_records en collection time-series. Une collection time-series ne pouvant
+// pas être renommée, l'ancienne collection est renommée en badge_records_standard, puis ses
+// documents sont recopiés dans une nouvelle collection badge_records time-series. L'ancienne
+// collection est conservée pour la comparaison et un éventuel retour arrière ; la supprimer
+// manuellement une fois la migration validée. Les écritures doivent être arrêtées pendant la
+// migration.
+@Component
+@AllArgsConstructor
+public class BadgeStorageMigration {
+
+  static final String STANDARD_SUFFIX = "_standard";
+
+  private static final Logger logger = LoggerFactory.getLogger(BadgeStorageMigration.class);
+  private static final int COPY_BATCH_SIZE = 1_000;
+  // Requêtes de comparaison : plages de 30 jours autour de badgeages tirés au hasard
+  private static final int SAMPLE_QUERIES = 20;
+  private static final int MEASURED_RUNS = 5;
+  private static final Duration QUERY_RANGE = Duration.ofDays(30);
+  private static final List<Document> COLL_STATS =
+      List.of(new Document("$collStats", new Document("storageStats", new Document())));
+
+  private final ReactiveMongoTemplate mongoTemplate;
+
+  public Mono<Void> migrateToTimeSeries() {
+    String name = mongoTemplate.getCollectionName(BadgeRecord.class);
+    String standardName = name + STANDARD_SUFFIX;
+    return BadgeCollectionInitializer.collectionType(mongoTemplate, name)
+        .defaultIfEmpty("")
+        .flatMap(
+            type ->
+                switch (type) {
+                  case "timeseries" -> {
+                    logger.info("La collection {} est déjà time-series", name);
+                    yield Mono.<Void>empty();
+                  }
+                  case "" -> createTimeSeries(name);
+                  default ->
+                      mongoTemplate
+                          .collectionExists(standardName)
+                          .flatMap(
+                              exists ->
+                                  exists
+                                      ? Mono.error(
+                                          new IllegalStateException(
+                                              "La collection "
+                                                  + standardName
+                                                  + " existe déjà : migration interrompue"))
+                                      : Mono.empty())
+                          .then(rename(name, standardName))
+                          .then(createTimeSeries(name))
+                          .then(copy(standardName, name))
+                          .then(compareLayouts())
+                          .then();
+                });
+  }
+
+  // Taille et latence des requêtes par plage de badge_records (time-series) et de
+  // badge_records_standard (classique), tant que les deux collections existent
+  public Mono<List<LayoutStats>> compareLayouts() {
+    String name = mongoTemplate.getCollectionName(BadgeRecord.class);
+    String standardName = name + STANDARD_SUFFIX;
+    return sampleRanges(standardName)
+        .flatMap(
+            ranges ->
+                Flux.just(standardName, name).concatMap(collection -> stats(collection, ranges))
+                    .collectList())
+        .doOnNext(
+            stats ->
+                stats.forEach(
+                    layout ->
+                        logger.info(
+                            "{} : {} documents, données {} o, stockage {} o, index {} o, "
+                                + "requête par plage médiane {} ms, p95 {} ms",
+                            layout.collection(),
+                            layout.count(),
+                            layout.dataSize(),
+                            layout.storageSize(),
+                            layout.totalIndexSize(),
+                            layout.medianLatency().toMillis(),
+                            layout.p95Latency().toMillis())));
+  }
+
+  private Mono<Void> createTimeSeries(String name) {
+    IndexResolver indexResolver =
+        IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+    return mongoTemplate
+        .createCollection(
+            name, BadgeCollectionInitializer.timeSeriesOptions(mongoTemplate.getConverter()))
+        .thenMany(Flux.fromIterable(indexResolver.resolveIndexFor(BadgeRecord.class)))
+        .filter(BadgeCollectionInitializer::isSupportedOnTimeSeries)
+        .concatMap(
+            index ->
+                mongoTemplate
+                    .indexOps(name)
+                    .ensureIndex(
+                        MongoMappingConfig.mappedIndex(
+                            mongoTemplate.getConverter(), BadgeRecord.class, index)))
+        .then(Mono.fromRunnable(() -> logger.info("Collection time-series {} créée", name)));
+  }
+
+  private Mono<Void> rename(String from, String to) {
+    return Mono.zip(mongoTemplate.getMongoDatabase(), mongoTemplate.getCollection(from))
+        .flatMap(
+            tuple ->
+                Mono.from(
+                    tuple
+                        .getT2()
+                        .renameCollection(new MongoNamespace(tuple.getT1().getName(), to))))
+        .then(Mono.fromRunnable(() -> logger.info("Collection {} renommée en {}", from, to)));
+  }
+
+  // Recopie par lots ; les deux collections doivent ensuite contenir le même nombre de documents
+  private Mono<Void> copy(String from, String to) {
+    return Mono.zip(mongoTemplate.getCollection(from), mongoTemplate.getCollection(to))
+        .flatMap(
+            collections -> {
+              MongoCollection<Document> source = collections.getT1();
+              MongoCollection<Document> target = collections.getT2();
+              Mono<Long> copied =
+                  Flux.from(source.find().batchSize(COPY_BATCH_SIZE))
+                      .buffer(COPY_BATCH_SIZE)
+                      .concatMap(
+                          documents ->
+                              Mono.from(
+                                      target.insertMany(
+                                          documents, new InsertManyOptions().ordered(false)))
+                                  .thenReturn((long) documents.size()))
+                      .reduce(0L, Long::sum);
+              return Mono.zip(copied, Mono.from(source.countDocuments()));
+            })
+        .flatMap(
+            counts -> {
+              if (!counts.getT1().equals(counts.getT2())) {
+                return Mono.error(
+                    new IllegalStateException(
+                        counts.getT1() + " badgeages recopiés sur " + counts.getT2()));
+              }
+              logger.info("{} badgeages recopiés de {} vers {}", counts.getT1(), from, to);
+              return Mono.empty();
+            });
+  }
+
+  private Mono<List<Document>> sampleRanges(String collection) {
+    String employeeId = MongoMappingConfig.badgeField(mongoTemplate.getConverter(), "employeeId");
+    String timestampField = timestampField();
+    List<Document> pipeline =
+        List.of(
+            new Document("$sample", new Document("size", SAMPLE_QUERIES)),
+            new Document("$project", new Document(employeeId, 1).append(timestampField, 1)));
+    return mongoTemplate
+        .getCollection(collection)
+        .flatMapMany(source -> source.aggregate(pipeline))
+        .map(
+            sample -> {
+              Date timestamp = sample.getDate(timestampField);
+              Date start = new Date(timestamp.getTime() - QUERY_RANGE.toMillis() / 2);
+              return new Document(employeeId, sample.getString(employeeId))
+                  .append(
+                      timestampField,
+                      new Document("$gte", start)
+                          .append("$lt", new Date(start.getTime() + QUERY_RANGE.toMillis())));
+            })
+        .collectList();
+  }
+
+  private Mono<LayoutStats> stats(String collection, List<Document> ranges) {
+    return mongoTemplate
+        .getCollection(collection)
+        .flatMap(
+            source ->
+                // Mesures des latences après les statistiques, pour ne pas les perturber
+                Mono.zip(
+                        Mono.from(source.aggregate(COLL_STATS).first()),
+                        Mono.from(source.countDocuments()))
+                    .flatMap(
+                        stats ->
+                            measure(source, ranges)
+                                .map(
+                                    latencies ->
+                                        Tuples.of(stats.getT1(), stats.getT2(), latencies))))
+        .map(
+            tuple -> {
+              Document storage = tuple.getT1().get("storageStats", Document.class);
+              List<Long> latencies = tuple.getT3();
+              return new LayoutStats(
+                  collection,
+                  tuple.getT2(),
+                  storage.get("size", Number.class).longValue(),
+                  storage.get("storageSize", Number.class).longValue(),
+                  storage.get("totalIndexSize", Number.class).longValue(),
+                  Duration.ofNanos(percentile(latencies, 50)),
+                  Duration.ofNanos(percentile(latencies, 95)));
+            });
+  }
+
+  // Durées (ns) des requêtes par plage, résultat entièrement lu. Un premier passage non mesuré
+  // charge les index et les données en cache.
+  private Mono<List<Long>> measure(MongoCollection<Document> source, List<Document> ranges) {
+    String timestampField = timestampField();
+    Flux<Long> run =
+        Flux.fromIterable(ranges)
+            .concatMap(
+                filter ->
+                    Mono.defer(
+                        () -> {
+                          long start = System.nanoTime();
+                          return Flux.from(
+                                  source.find(filter).sort(Sorts.ascending(timestampField)))
+                              .then()
+                              .then(Mono.fromCallable(() -> System.nanoTime() - start));
+                        }));
+    return run.then(Flux.range(0, MEASURED_RUNS).concatMap(i -> run).collectList());
+  }
+
+  private String timestampField() {
+    return MongoMappingConfig.badgeField(mongoTemplate.getConverter(), "timestamp");
+  }
+
+  static long percentile(List<Long> values, int percentile) {
+    if (values.isEmpty()) {
+      return 0;
+    }
+    List<Long> sorted = new ArrayList<>(values);
+    Collections.sort(sorted);
+    int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+    return sorted.get(Math.max(rank, 1) - 1);
+  }
+
+  public record LayoutStats(
+      String collection,
+      long count,
+      long dataSize,
+      long storageSize,
+      long totalIndexSize,
+      Duration medianLatency,
+      Duration p95Latency) {}
+}
@@ -0,0 +1,78 @@
+package fr.jixter.badgeuse.maintenance;
+
+import fr.jixter.badgeuse.service.DailyAggregateService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Commandes de maintenance lancées en ligne de commande, l'application s'arrête ensuite :
+//   java -jar badgeuse.jar --rebuild-daily-aggregates
+//   java -jar badgeuse.jar --migrate-badge-records-to-time-series
+//   java -jar badgeuse.jar --compare-badge-storage
+//   java -jar badgeuse.jar --compact-badge-records
+//   java -jar badgeuse.jar --copy-badge-records-to-compact
+//   java -jar badgeuse.jar --switch-badge-records-to-compact
+@Component
+@Order(10)
+@AllArgsConstructor
+public class MaintenanceCommandRunner implements ApplicationRunner {
+
+  public static final String REBUILD_DAILY_AGGREGATES = "rebuild-daily-aggregates";
+  public static final String MIGRATE_TO_TIME_SERIES = "migrate-badge-records-to-time-series";
+  public static final String COMPARE_BADGE_STORAGE = "compare-badge-storage";
+  public static final String COMPACT_BADGE_RECORDS = "compact-badge-records";
+  public static final String COPY_TO_COMPACT_ENCODING = "copy-badge-records-to-compact";
+  public static final String SWITCH_TO_COMPACT_ENCODING = "switch-badge-records-to-compact";
+
+  private static final Logger logger = LoggerFactory.getLogger(MaintenanceCommandRunner.class);
+  private static final Duration TIMEOUT = Duration.ofHours(6);
+
+  private final DailyAggregateService dailyAggregateService;
+  private final BadgeStorageMigration badgeStorageMigration;
+  private final BadgeCompaction badgeCompaction;
+  private final BadgeEncodingMigration badgeEncodingMigration;
+  private final ConfigurableApplicationContext context;
+
+  @Override
+  public void run(ApplicationArguments args) {
+    List<Mono<?>> commands = new ArrayList<>();
+    // Changement d'encodage en premier : les autres commandes écrivent dans l'encodage configuré
+    if (args.containsOption(COPY_TO_COMPACT_ENCODING)) {
+      commands.add(badgeEncodingMigration.copy());
+    }
+    if (args.containsOption(SWITCH_TO_COMPACT_ENCODING)) {
+      commands.add(badgeEncodingMigration.switchEncoding());
+    }
+    // Migration avant la reconstruction des agrégats, qui relit les badgeages
+    if (args.containsOption(MIGRATE_TO_TIME_SERIES)) {
+      commands.add(badgeStorageMigration.migrateToTimeSeries());
+    }
+    if (args.containsOption(COMPARE_BADGE_STORAGE)) {
+      commands.add(badgeStorageMigration.compareLayouts());
+    }
+    if (args.containsOption(REBUILD_DAILY_AGGREGATES)) {
+      commands.add(dailyAggregateService.rebuild());
+    }
+    // Après la reconstruction, qui ne relit que badge_records
+    if (args.containsOption(COMPACT_BADGE_RECORDS)) {
+      commands.add(badgeCompaction.compact());
+    }
+    if (commands.isEmpty()) {
+      return;
+    }
+    Flux.fromIterable(commands).concatMap(Mono::then).then().block(TIMEOUT);
+    logger.info("Commandes de maintenance terminées, arrêt de l'application");
+    System.exit(SpringApplication.exit(context, () -> 0));
+  }
+}
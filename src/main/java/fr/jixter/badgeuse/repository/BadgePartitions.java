@@ -0,0 +1,93 @@
+package fr.jixter.badgeuse.repository;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.BadgePartitionState;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Répartition des badgeages entre badge_records, qui ne contient que les mois récents, et les
+// partitions mensuelles badge_records_yyyy_MM des mois archivés par --compact-badge-records.
+// L'état de l'archivage est relu au plus une fois par refresh-interval.
+@Component
+public class BadgePartitions {
+
+  private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+  private final String hotCollection;
+  private final Mono<BadgePartitionState> state;
+
+  public BadgePartitions(ReactiveMongoTemplate mongoTemplate, BadgeuseProperties properties) {
+    BadgeuseProperties.Partitions settings = properties.getPartitions();
+    this.hotCollection = mongoTemplate.getCollectionName(BadgeRecord.class);
+    BadgePartitionState none = BadgePartitionState.builder().id(hotCollection).build();
+    this.state =
+        settings.isEnabled()
+            ? Mono.defer(() -> mongoTemplate.findById(hotCollection, BadgePartitionState.class))
+                .defaultIfEmpty(none)
+                .cache(
+                    value -> settings.getRefreshInterval(),
+                    error -> Duration.ZERO,
+                    settings::getRefreshInterval)
+            : Mono.just(none);
+  }
+
+  public String hotCollection() {
+    return hotCollection;
+  }
+
+  public String archiveCollection(YearMonth month) {
+    return hotCollection + "_" + month.format(PARTITION_SUFFIX);
+  }
+
+  public Mono<BadgePartitionState> state() {
+    return state;
+  }
+
+  // Premier instant accepté pour un nouveau badgeage, LocalDateTime.MIN si aucun mois n'est fermé
+  public Mono<LocalDateTime> writableFrom() {
+    return state.map(
+        current ->
+            current.closedBeforeMonth() != null
+                ? current.closedBeforeMonth().atDay(1).atStartOfDay()
+                : LocalDateTime.MIN);
+  }
+
+  public Mono<Boolean> isArchived(YearMonth month) {
+    return state.map(
+        current ->
+            current.archivedBeforeMonth() != null
+                && month.isBefore(current.archivedBeforeMonth()));
+  }
+
+  // Collections contenant les badgeages de [start, end[, dans l'ordre chronologique : une
+  // partition par mois archivé touché par la plage, puis badge_records si la plage le touche
+  public Flux<String> collectionsFor(LocalDateTime start, LocalDateTime end) {
+    return state.flatMapIterable(
+        current -> {
+          YearMonth archivedBefore = current.archivedBeforeMonth();
+          if (archivedBefore == null) {
+            return List.of(hotCollection);
+          }
+          List<String> collections = new ArrayList<>();
+          YearMonth last = YearMonth.from(end.minusNanos(1));
+          for (YearMonth month = YearMonth.from(start);
+              !month.isAfter(last) && month.isBefore(archivedBefore);
+              month = month.plusMonths(1)) {
+            collections.add(archiveCollection(month));
+          }
+          if (end.isAfter(archivedBefore.atDay(1).atStartOfDay())) {
+            collections.add(hotCollection);
+          }
+          return collections;
+        });
+  }
+}
@@ -0,0 +1,70 @@
+package fr.jixter.badgeuse.repository;
+
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.EmployeeMinutes;
+import fr.jixter.badgeuse.domain.dto.EmployeeStatus;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.springframework.dao.DataAccessException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveBadgeRepositoryCustom {
+
+  // Insertion non ordonnée (insertMany ordered=false) : un document en erreur n'empêche pas
+  // l'insertion des autres. Renvoie les erreurs indexées par position dans la liste :
+  // DuplicateKeyException pour une clé unique déjà présente (rejeu d'un eventId),
+  // DataIntegrityViolationException sinon.
+  Mono<Map<Integer, DataAccessException>> insertAllUnordered(List<BadgeRecord> records);
+
+  // Badgeages enregistrés ayant le même couple (employeeId, eventId) que l'un de ceux donnés,
+  // lus sur le primaire depuis l'index unique
+  Flux<BadgeRecord> findByEvents(List<BadgeRecord> records);
+
+  // Insère le badgeage s'il n'existe pas de badgeage du même employé avec le même eventId, en un
+  // seul aller-retour (upsert). Renvoie le badgeage existant, vide si celui-ci a été inséré.
+  Mono<BadgeRecord> insertIfAbsent(BadgeRecord badgeRecord);
+
+  // Badgeages d'un employé sur [start, end[ triés par horodatage, lus dans badge_records et
+  // dans les seules partitions mensuelles archivées que touche la plage. Lus sur le primaire :
+  // réservé au chemin d'écriture, les rapports utilisent findReportRange.
+  Flux<BadgeRecord> findRange(String employeeId, LocalDateTime start, LocalDateTime end);
+
+  // Comme findRange, pour les rapports : lecture routée selon badgeuse.read-routing
+  Flux<BadgeRecord> findReportRange(String employeeId, LocalDateTime start, LocalDateTime end);
+
+  // Badgeages voisins de la plage [start, end[ dans ses mois, dans l'ordre chronologique : le
+  // dernier du mois de start antérieur à start puis le premier du mois de fin de plage à partir
+  // de end, s'ils existent. L'appariement d'une plage en dépend : une présence franchissant minuit
+  // est comptée le jour de son IN. Lus sur le primaire, comme findRange.
+  Flux<BadgeRecord> findNeighbours(String employeeId, LocalDateTime start, LocalDateTime end);
+
+  // Comme findNeighbours, pour les rapports : lecture routée selon badgeuse.read-routing
+  Flux<BadgeRecord> findReportNeighbours(
+      String employeeId, LocalDateTime start, LocalDateTime end);
+
+  // Nombre de badgeages d'un employé dans le mois, lu sur le primaire
+  Mono<Long> countInMonth(String employeeId, YearMonth month);
+
+  // Dernier badgeage d'un employé antérieur ou égal à 'at', y compris dans les mois archivés
+  // (reconstitué depuis le résumé mensuel, sans identifiant)
+  Mono<BadgeRecord> findLatestBefore(String employeeId, LocalDateTime at);
+
+  // Appariement IN/OUT et somme des minutes de chaque employé sur [start, end[ en une seule
+  // agrégation, avec les mêmes règles que BadgeService.computeTotalMinutes. Tous les employés
+  // sont renvoyés, dans l'ordre des identifiants, y compris sans badgeage (0 minute). Lit
+  // badge_records seulement : les mois archivés sont résumés dans badge_monthly_summaries.
+  // Lecture de reporting, routée selon badgeuse.read-routing.
+  Flux<EmployeeMinutes> sumMinutesByEmployee(LocalDateTime start, LocalDateTime end);
+
+  // Comme sumMinutesByEmployee pour un mois archivé, d'après les résumés mensuels
+  Flux<EmployeeMinutes> sumArchivedMinutesByEmployee(YearMonth month);
+
+  // Dernier badgeage de chaque employé antérieur ou égal à 'at', en une seule agrégation.
+  // 'at' null : aucune borne ; employeeIds null : tous les employés. Les employés sans badgeage
+  // depuis l'archivage sont complétés depuis les résumés mensuels.
+  Flux<EmployeeStatus> findLatestPerEmployee(LocalDateTime at, Collection<String> employeeIds);
+}
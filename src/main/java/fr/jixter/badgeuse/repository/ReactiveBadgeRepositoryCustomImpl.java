@@ -0,0 +1,571 @@
+package fr.jixter.badgeuse.repository;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.project;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.sort;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.stage;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import fr.jixter.badgeuse.config.MongoMappingConfig;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.BadgeType;
+import fr.jixter.badgeuse.domain.Employee;
+import fr.jixter.badgeuse.domain.EmployeeMinutes;
+import fr.jixter.badgeuse.domain.MonthlySummary;
+import fr.jixter.badgeuse.domain.dto.EmployeeStatus;
+import fr.jixter.badgeuse.repository.ReadRouting.Route;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+@AllArgsConstructor
+public class ReactiveBadgeRepositoryCustomImpl implements ReactiveBadgeRepositoryCustom {
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final BadgePartitions partitions;
+  private final ReadRouting readRouting;
+
+  @Override
+  public Mono<Map<Integer, DataAccessException>> insertAllUnordered(List<BadgeRecord> records) {
+    if (records.isEmpty()) {
+      return Mono.just(Map.of());
+    }
+    List<Document> documents =
+        records.stream()
+            .map(
+                badgeRecord -> {
+                  // Identifiant attribué avant l'envoi pour pouvoir le restituer à l'appelant
+                  if (badgeRecord.getId() == null) {
+                    badgeRecord.setId(new ObjectId().toHexString());
+                  }
+                  Document document = new Document();
+                  mongoTemplate.getConverter().write(badgeRecord, document);
+                  return document;
+                })
+            .toList();
+    return mongoTemplate
+        .getCollection(mongoTemplate.getCollectionName(BadgeRecord.class))
+        .flatMap(
+            collection ->
+                Mono.from(collection.insertMany(documents, new InsertManyOptions().ordered(false))))
+        .<Map<Integer, DataAccessException>>map(result -> Map.of())
+        .onErrorResume(
+            MongoBulkWriteException.class,
+            e ->
+                Mono.just(
+                    e.getWriteErrors().stream()
+                        .collect(
+                            Collectors.toMap(
+                                BulkWriteError::getIndex,
+                                ReactiveBadgeRepositoryCustomImpl::translate,
+                                (first, second) -> first))));
+  }
+
+  private static DataAccessException translate(BulkWriteError error) {
+    return ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY
+        ? new DuplicateKeyException(error.getMessage())
+        : new DataIntegrityViolationException(error.getMessage());
+  }
+
+  @Override
+  public Flux<BadgeRecord> findByEvents(List<BadgeRecord> records) {
+    if (records.isEmpty()) {
+      return Flux.empty();
+    }
+    // Chaque branche du $or est servie par l'index unique (employeeId, eventId)
+    return readRouting.timed(
+        Route.PRIMARY,
+        "findByEvents",
+        mongoTemplate.find(eventsQuery(records), BadgeRecord.class, partitions.hotCollection()));
+  }
+
+  // Requêtes publiques, comme les agrégations : exécutées par ce repository et expliquées au
+  // démarrage par QueryPlanVerifier
+
+  public static Query eventsQuery(List<BadgeRecord> records) {
+    Criteria[] events =
+        records.stream()
+            .map(
+                badgeRecord ->
+                    where("employeeId")
+                        .is(badgeRecord.getEmployeeId())
+                        .and("eventId")
+                        .is(badgeRecord.getEventId()))
+            .toArray(Criteria[]::new);
+    return query(new Criteria().orOperator(events));
+  }
+
+  // Début inclus : un badgeage à minuit appartient à la journée qui commence, comme dans rebuild
+  public static Query rangeQuery(String employeeId, LocalDateTime start, LocalDateTime end) {
+    return query(where("employeeId").is(employeeId).and("timestamp").gte(start).lt(end))
+        .with(Sort.by("timestamp"));
+  }
+
+  // Badgeage de [start, end[ le plus proche de start (ASC) ou de end (DESC)
+  public static Query edgeQuery(
+      String employeeId, LocalDateTime start, LocalDateTime end, Sort.Direction direction) {
+    return query(where("employeeId").is(employeeId).and("timestamp").gte(start).lt(end))
+        .with(Sort.by(direction, "timestamp"))
+        .limit(1);
+  }
+
+  public static Query latestBeforeQuery(String employeeId, LocalDateTime at) {
+    return query(where("employeeId").is(employeeId).and("timestamp").lte(at))
+        .with(Sort.by(Sort.Direction.DESC, "timestamp"))
+        .limit(1);
+  }
+
+  // Résumé mensuel le plus récent d'un employé parmi les mois antérieurs à before (yyyy-MM)
+  public static Query latestSummaryQuery(String employeeId, String before) {
+    return query(where("employeeId").is(employeeId).and("month").lt(before))
+        .with(Sort.by(Sort.Direction.DESC, "month"))
+        .limit(1);
+  }
+
+  @Override
+  public Mono<BadgeRecord> insertIfAbsent(BadgeRecord badgeRecord) {
+    // Identifiant attribué avant l'envoi : l'upsert ne renvoie pas le document inséré
+    if (badgeRecord.getId() == null) {
+      badgeRecord.setId(new ObjectId().toHexString());
+    }
+    Update update =
+        new Update()
+            .setOnInsert("id", badgeRecord.getId())
+            .setOnInsert("timestamp", badgeRecord.getTimestamp())
+            .setOnInsert("type", badgeRecord.getType());
+    // returnNew(false) : document antérieur à la mise à jour, absent en cas d'insertion. Deux
+    // rejeux simultanés peuvent échouer sur l'index unique ; le second relu renvoie l'original.
+    return mongoTemplate
+        .findAndModify(
+            query(
+                where("employeeId")
+                    .is(badgeRecord.getEmployeeId())
+                    .and("eventId")
+                    .is(badgeRecord.getEventId())),
+            update,
+            FindAndModifyOptions.options().upsert(true).returnNew(false),
+            BadgeRecord.class)
+        .retryWhen(Retry.max(1).filter(DuplicateKeyException.class::isInstance));
+  }
+
+  @Override
+  public Flux<EmployeeMinutes> sumMinutesByEmployee(LocalDateTime start, LocalDateTime end) {
+    return readRouting.timed(
+        Route.REPORTING,
+        "sumMinutesByEmployee",
+        readRouting
+            .template(Route.REPORTING)
+            .aggregate(
+                minutesPerEmployee(start, end),
+                mongoTemplate.getCollectionName(Employee.class),
+                EmployeeMinutes.class));
+  }
+
+  // Parcours des employés dans l'ordre de _id, chacun joint à ses badgeages de [start, end[ lus
+  // dans l'ordre de l'index (employeeId, timestamp) : un employé sans badgeage reste présent,
+  // avec un tableau vide
+  public Aggregation minutesPerEmployee(LocalDateTime start, LocalDateTime end) {
+    MongoConverter converter = mongoTemplate.getConverter();
+    String employeeId = MongoMappingConfig.badgeField(converter, "employeeId");
+    String timestamp = MongoMappingConfig.badgeField(converter, "timestamp");
+    String type = MongoMappingConfig.badgeField(converter, "type");
+    Document range =
+        new QueryMapper(converter)
+            .getMappedObject(
+                where("timestamp").gte(start).lt(end).getCriteriaObject(),
+                converter.getMappingContext().getPersistentEntity(BadgeRecord.class));
+    List<Document> punches =
+        List.of(
+            new Document("$match", range),
+            new Document("$sort", new Document(timestamp, 1)),
+            new Document("$project", new Document("_id", 0).append(timestamp, 1).append(type, 1)));
+    return employeeLookup(
+        new Document("from", partitions.hotCollection())
+            .append("localField", "employeeId")
+            .append("foreignField", employeeId)
+            .append("pipeline", punches)
+            .append("as", "punches"),
+        new Document("employeeId", 1)
+            .append("timestamps", "$punches." + timestamp)
+            .append("types", "$punches." + type),
+        new Document("employeeId", 1)
+            .append(
+                "pairing",
+                pairing(
+                    converter.convertToMongoType(BadgeType.IN),
+                    converter.convertToMongoType(BadgeType.OUT))),
+        new Document("_id", 0)
+            .append("employeeId", 1)
+            .append("totalMinutes", "$pairing.total")
+            .append(
+                "unmatchedCount",
+                new Document(
+                    "$add", Arrays.asList("$pairing.unmatched", pendingCount("$pairing")))));
+  }
+
+  @Override
+  public Flux<EmployeeMinutes> sumArchivedMinutesByEmployee(YearMonth month) {
+    return readRouting.timed(
+        Route.REPORTING,
+        "sumArchivedMinutesByEmployee",
+        readRouting
+            .template(Route.REPORTING)
+            .aggregate(
+                archivedMinutesPerEmployee(month),
+                mongoTemplate.getCollectionName(Employee.class),
+                EmployeeMinutes.class));
+  }
+
+  // Même parcours que minutesPerEmployee, joint au résumé du mois par l'index (employeeId, month)
+  public Aggregation archivedMinutesPerEmployee(YearMonth month) {
+    return employeeLookup(
+        new Document("from", mongoTemplate.getCollectionName(MonthlySummary.class))
+            .append("localField", "employeeId")
+            .append("foreignField", "employeeId")
+            .append(
+                "pipeline",
+                List.of(new Document("$match", new Document("month", month.toString()))))
+            .append("as", "summary"),
+        new Document("_id", 0)
+            .append("employeeId", 1)
+            .append("totalMinutes", firstOrZero("$summary.workedMinutes"))
+            .append("unmatchedCount", firstOrZero("$summary.unmatchedCount")));
+  }
+
+  // Employés triés par _id, identifiant converti en chaîne comme dans les badgeages, joints par
+  // lookup puis projetés successivement par projections
+  private Aggregation employeeLookup(Document lookup, Document... projections) {
+    List<AggregationOperation> operations = new ArrayList<>();
+    operations.add(stage(new Document("$sort", new Document("_id", 1))));
+    operations.add(
+        stage(
+            new Document(
+                "$project",
+                new Document("employeeId", new Document("$toString", "$_id")))));
+    operations.add(stage(new Document("$lookup", lookup)));
+    for (Document projection : projections) {
+      operations.add(stage(new Document("$project", projection)));
+    }
+    return newAggregation(operations)
+        .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+  }
+
+  private static Document firstOrZero(String array) {
+    return new Document("$ifNull", Arrays.asList(new Document("$first", array), 0));
+  }
+
+  @Override
+  public Flux<BadgeRecord> findRange(String employeeId, LocalDateTime start, LocalDateTime end) {
+    return range(Route.PRIMARY, employeeId, start, end);
+  }
+
+  @Override
+  public Flux<BadgeRecord> findReportRange(
+      String employeeId, LocalDateTime start, LocalDateTime end) {
+    return range(Route.REPORTING, employeeId, start, end);
+  }
+
+  private Flux<BadgeRecord> range(
+      Route route, String employeeId, LocalDateTime start, LocalDateTime end) {
+    ReactiveMongoTemplate template = readRouting.template(route);
+    return readRouting.timed(
+        route,
+        "findRange",
+        partitions
+            .collectionsFor(start, end)
+            .concatMap(
+                collection ->
+                    template.find(
+                        rangeQuery(employeeId, start, end), BadgeRecord.class, collection)));
+  }
+
+  @Override
+  public Flux<BadgeRecord> findNeighbours(
+      String employeeId, LocalDateTime start, LocalDateTime end) {
+    return neighbours(Route.PRIMARY, employeeId, start, end);
+  }
+
+  @Override
+  public Flux<BadgeRecord> findReportNeighbours(
+      String employeeId, LocalDateTime start, LocalDateTime end) {
+    return neighbours(Route.REPORTING, employeeId, start, end);
+  }
+
+  private Flux<BadgeRecord> neighbours(
+      Route route, String employeeId, LocalDateTime start, LocalDateTime end) {
+    LocalDateTime monthStart = YearMonth.from(start).atDay(1).atStartOfDay();
+    LocalDateTime monthEnd =
+        YearMonth.from(end.minusNanos(1)).plusMonths(1).atDay(1).atStartOfDay();
+    return readRouting.timed(
+        route,
+        "findNeighbours",
+        Flux.concat(
+            edge(route, employeeId, monthStart, start, Sort.Direction.DESC),
+            edge(route, employeeId, end, monthEnd, Sort.Direction.ASC)));
+  }
+
+  // Badgeage de edgeQuery sur une plage d'un seul mois, donc d'une seule collection
+  private Mono<BadgeRecord> edge(
+      Route route,
+      String employeeId,
+      LocalDateTime start,
+      LocalDateTime end,
+      Sort.Direction direction) {
+    if (!start.isBefore(end)) {
+      return Mono.empty();
+    }
+    return partitions
+        .collectionsFor(start, end)
+        .next()
+        .flatMap(
+            collection ->
+                readRouting
+                    .template(route)
+                    .findOne(
+                        edgeQuery(employeeId, start, end, direction),
+                        BadgeRecord.class,
+                        collection));
+  }
+
+  @Override
+  public Mono<Long> countInMonth(String employeeId, YearMonth month) {
+    LocalDateTime start = month.atDay(1).atStartOfDay();
+    LocalDateTime end = month.plusMonths(1).atDay(1).atStartOfDay();
+    return readRouting.timed(
+        Route.PRIMARY,
+        "countInMonth",
+        partitions
+            .collectionsFor(start, end)
+            .next()
+            .flatMap(
+                collection ->
+                    mongoTemplate.count(rangeQuery(employeeId, start, end), collection)));
+  }
+
+  @Override
+  public Mono<BadgeRecord> findLatestBefore(String employeeId, LocalDateTime at) {
+    return readRouting.timed(Route.PRIMARY, "findLatestBefore", latestBefore(employeeId, at));
+  }
+
+  private Mono<BadgeRecord> latestBefore(String employeeId, LocalDateTime at) {
+    return partitions
+        .state()
+        .flatMap(
+            state -> {
+              YearMonth archivedBefore = state.archivedBeforeMonth();
+              YearMonth month = YearMonth.from(at);
+              boolean archived = archivedBefore != null && month.isBefore(archivedBefore);
+              Mono<BadgeRecord> latest =
+                  mongoTemplate.findOne(
+                      latestBeforeQuery(employeeId, at),
+                      BadgeRecord.class,
+                      archived ? partitions.archiveCollection(month) : partitions.hotCollection());
+              if (archivedBefore == null) {
+                return latest;
+              }
+              // Aucun badgeage dans la collection du mois : dernier badgeage des mois archivés
+              // antérieurs, conservé dans leur résumé
+              String before = (archived ? month : archivedBefore).toString();
+              return latest.switchIfEmpty(
+                  Mono.defer(
+                      () ->
+                          mongoTemplate
+                              .findOne(
+                                  latestSummaryQuery(employeeId, before), MonthlySummary.class)
+                              .map(
+                                  summary ->
+                                      BadgeRecord.builder()
+                                          .employeeId(employeeId)
+                                          .timestamp(summary.getLastTimestamp())
+                                          .type(summary.getLastType())
+                                          .build())));
+            });
+  }
+
+  @Override
+  public Flux<EmployeeStatus> findLatestPerEmployee(
+      LocalDateTime at, Collection<String> employeeIds) {
+    // Statuts de présence : lus sur le primaire, comme ceux d'un seul employé
+    return readRouting.timed(
+        Route.PRIMARY,
+        "findLatestPerEmployee",
+        partitions
+            .state()
+            .flatMapMany(
+                state -> {
+                  YearMonth archivedBefore = state.archivedBeforeMonth();
+                  if (archivedBefore == null) {
+                    return mongoTemplate.aggregate(
+                        latestPerEmployee(at, employeeIds, null),
+                        partitions.hotCollection(),
+                        EmployeeStatus.class);
+                  }
+                  // Instant dans un mois archivé : partition de ce mois au lieu de badge_records
+                  YearMonth month = at != null ? YearMonth.from(at) : null;
+                  boolean archived = month != null && month.isBefore(archivedBefore);
+                  return mongoTemplate.aggregate(
+                      latestPerEmployee(
+                          at, employeeIds, (archived ? month : archivedBefore).toString()),
+                      archived ? partitions.archiveCollection(month) : partitions.hotCollection(),
+                      EmployeeStatus.class);
+                }));
+  }
+
+  // Dernier badgeage de chaque employé dans la collection. summariesBefore non null : complété,
+  // par $unionWith, du dernier badgeage des résumés mensuels antérieurs à ce mois, pour les
+  // employés n'ayant pas badgé depuis
+  public TypedAggregation<BadgeRecord> latestPerEmployee(
+      LocalDateTime at, Collection<String> employeeIds, String summariesBefore) {
+    Criteria criteria = new Criteria();
+    if (employeeIds != null) {
+      criteria = criteria.and("employeeId").in(employeeIds);
+    }
+    if (at != null) {
+      criteria = criteria.and("timestamp").lte(at);
+    }
+    List<AggregationOperation> operations = new ArrayList<>();
+    operations.add(match(criteria));
+    // Parcours inverse de l'index (employeeId, timestamp) : le premier document de chaque groupe
+    // est le plus récent, ce qui permet à MongoDB de sauter directement d'un employé au suivant
+    operations.add(sort(Sort.by(Sort.Direction.DESC, "employeeId", "timestamp")));
+    operations.add(
+        group("employeeId").first("type").as("type").first("timestamp").as("timestamp"));
+    operations.add(project("type", "timestamp").and("_id").as("employeeId").andExclude("_id"));
+    if (summariesBefore != null) {
+      Document summaryMatch = new Document("month", new Document("$lt", summariesBefore));
+      if (employeeIds != null) {
+        summaryMatch.append("employeeId", new Document("$in", employeeIds));
+      }
+      List<Document> summaries =
+          List.of(
+              new Document("$match", summaryMatch),
+              // Parcours inverse de l'index (employeeId, month), sans tri en mémoire : le premier
+              // résumé de chaque employé est le plus récent
+              new Document("$sort", new Document("employeeId", -1).append("month", -1)),
+              new Document(
+                  "$group",
+                  new Document("_id", "$employeeId")
+                      .append("type", new Document("$first", "$lastType"))
+                      .append("timestamp", new Document("$first", "$lastTimestamp"))),
+              new Document(
+                  "$project",
+                  new Document("_id", 0)
+                      .append("employeeId", "$_id")
+                      .append("type", 1)
+                      .append("timestamp", 1)));
+      operations.add(
+          stage(
+              new Document(
+                  "$unionWith",
+                  new Document("coll", mongoTemplate.getCollectionName(MonthlySummary.class))
+                      .append("pipeline", summaries))));
+      // Au plus deux documents par employé : le plus récent l'emporte
+      operations.add(
+          sort(
+              Sort.by(Sort.Direction.ASC, "employeeId")
+                  .and(Sort.by(Sort.Direction.DESC, "timestamp"))));
+      operations.add(
+          group("employeeId").first("type").as("type").first("timestamp").as("timestamp"));
+      operations.add(project("type", "timestamp").and("_id").as("employeeId").andExclude("_id"));
+    }
+    return newAggregation(BadgeRecord.class, operations);
+  }
+
+  // Parcourt les badgeages triés d'un employé en gardant au plus un badgeage en attente :
+  // un IN suivi d'un OUT forme une paire, tout autre badgeage en attente est non apparié
+  private static Document pairing(Object in, Object out) {
+    Document type = elementAt("$types");
+    Document timestamp = elementAt("$timestamps");
+    Document paired =
+        new Document(
+                "total",
+                new Document(
+                    "$add",
+                    Arrays.asList(
+                        "$$value.total",
+                        new Document(
+                            "$toLong",
+                            new Document(
+                                "$trunc",
+                                new Document(
+                                    "$divide",
+                                    Arrays.asList(
+                                        new Document(
+                                            "$subtract",
+                                            Arrays.asList(timestamp, "$$value.pendingTimestamp")),
+                                        60000)))))))
+            .append("pendingType", null)
+            .append("pendingTimestamp", null)
+            .append("unmatched", "$$value.unmatched");
+    Document pending =
+        new Document("total", "$$value.total")
+            .append("pendingType", type)
+            .append("pendingTimestamp", timestamp)
+            .append(
+                "unmatched",
+                new Document("$add", Arrays.asList("$$value.unmatched", pendingCount("$$value"))));
+    Document isPair =
+        new Document(
+            "$and",
+            Arrays.asList(
+                new Document("$eq", Arrays.asList("$$value.pendingType", in)),
+                new Document("$eq", Arrays.asList(type, out))));
+    return new Document(
+        "$reduce",
+        new Document(
+                "input",
+                new Document("$range", Arrays.asList(0, new Document("$size", "$types"))))
+            .append(
+                "initialValue",
+                new Document("total", 0L)
+                    .append("pendingType", null)
+                    .append("pendingTimestamp", null)
+                    .append("unmatched", 0))
+            .append("in", new Document("$cond", Arrays.asList(isPair, paired, pending))));
+  }
+
+  private static Document elementAt(String array) {
+    return new Document("$arrayElemAt", Arrays.asList(array, "$$this"));
+  }
+
+  // 1 si un badgeage est en attente dans l'état donné, 0 sinon
+  private static Document pendingCount(String state) {
+    return new Document(
+        "$cond",
+        Arrays.asList(
+            new Document("$eq", Arrays.asList(state + ".pendingType", null)), 0, 1));
+  }
+}
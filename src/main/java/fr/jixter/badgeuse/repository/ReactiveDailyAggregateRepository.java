@@ -0,0 +1,19 @@
+package fr.jixter.badgeuse.repository;
+
+import fr.jixter.badgeuse.domain.DailyAggregate;
+import java.time.LocalDate;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveDailyAggregateRepository
+    extends ReactiveMongoRepository<DailyAggregate, String>,
+        ReactiveDailyAggregateRepositoryCustom {
+
+  // Agrégats d'un employé sur l'intervalle [from, to[
+  Flux<DailyAggregate> findByEmployeeIdAndDateGreaterThanEqualAndDateLessThan(
+      String employeeId, LocalDate from, LocalDate to);
+
+  // Suppression des agrégats à partir d'une date, ceux des mois archivés étant conservés
+  Mono<Long> deleteByDateGreaterThanEqual(LocalDate from);
+}
@@ -0,0 +1,10 @@
+package fr.jixter.badgeuse.repository;
+
+import fr.jixter.badgeuse.domain.DailyAggregate;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveDailyAggregateRepositoryCustom {
+
+  // Upsert de l'agrégat, ignoré si la version stockée compte déjà autant de badgeages du mois
+  Mono<Void> saveIfNewer(DailyAggregate aggregate);
+}
@@ -0,0 +1,43 @@
+package fr.jixter.badgeuse.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import fr.jixter.badgeuse.domain.DailyAggregate;
+import lombok.AllArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+@AllArgsConstructor
+public class ReactiveDailyAggregateRepositoryCustomImpl
+    implements ReactiveDailyAggregateRepositoryCustom {
+
+  private final ReactiveMongoTemplate mongoTemplate;
+
+  @Override
+  public Mono<Void> saveIfNewer(DailyAggregate aggregate) {
+    Update update =
+        new Update()
+            .set("employeeId", aggregate.getEmployeeId())
+            .set("date", aggregate.getDate())
+            .set("workedMinutes", aggregate.getWorkedMinutes())
+            .set("unmatchedCount", aggregate.getUnmatchedCount())
+            .set("punchCount", aggregate.getPunchCount())
+            .set("monthPunchCount", aggregate.getMonthPunchCount());
+    // Si le document existe avec un monthPunchCount supérieur ou égal, le filtre ne correspond pas
+    // et l'upsert échoue sur la clé _id : un recalcul concurrent plus récent a déjà été écrit
+    return mongoTemplate
+        .upsert(
+            query(
+                where("id")
+                    .is(aggregate.getId())
+                    .and("monthPunchCount")
+                    .lt(aggregate.getMonthPunchCount())),
+            update,
+            DailyAggregate.class)
+        .then()
+        .onErrorResume(DuplicateKeyException.class, e -> Mono.empty());
+  }
+}
@@ -3,4 +3,7 @@ package fr.jixter.badgeuse.repository;
 import fr.jixter.badgeuse.domain.Employee;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 
-public interface ReactiveEmployeeRepository extends ReactiveMongoRepository<Employee, String> {}
+// Les listes d'employés (ReactiveEmployeeRepositoryCustom) sont des lectures de reporting ;
+// findById et existsById, utilisés au badgeage, restent sur le primaire
+public interface ReactiveEmployeeRepository
+    extends ReactiveMongoRepository<Employee, String>, ReactiveEmployeeRepositoryCustom {}
@@ -0,0 +1,19 @@
+package fr.jixter.badgeuse.repository;
+
+import fr.jixter.badgeuse.domain.Employee;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Flux;
+
+// Listes d'employés, lues selon badgeuse.read-routing au lieu du primaire
+public interface ReactiveEmployeeRepositoryCustom {
+
+  Flux<Employee> findAll();
+
+  Flux<Employee> findAll(Sort sort);
+
+  // Pagination par clé sur _id : chaque page est lue depuis l'index _id, quel que soit son rang
+  Flux<Employee> findAllByOrderByIdAsc(Limit limit);
+
+  Flux<Employee> findByIdGreaterThanOrderByIdAsc(String id, Limit limit);
+}
@@ -0,0 +1,52 @@
+package fr.jixter.badgeuse.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import fr.jixter.badgeuse.domain.Employee;
+import fr.jixter.badgeuse.repository.ReadRouting.Route;
+import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+@AllArgsConstructor
+public class ReactiveEmployeeRepositoryCustomImpl implements ReactiveEmployeeRepositoryCustom {
+
+  private final ReadRouting readRouting;
+
+  @Override
+  public Flux<Employee> findAll() {
+    return find("findAll", new Query());
+  }
+
+  @Override
+  public Flux<Employee> findAll(Sort sort) {
+    return find("findAll", new Query().with(sort));
+  }
+
+  @Override
+  public Flux<Employee> findAllByOrderByIdAsc(Limit limit) {
+    return find("findAllByOrderByIdAsc", pageQuery(null, limit));
+  }
+
+  @Override
+  public Flux<Employee> findByIdGreaterThanOrderByIdAsc(String id, Limit limit) {
+    return find("findByIdGreaterThanOrderByIdAsc", pageQuery(id, limit));
+  }
+
+  // Page d'employés de la pagination par clé, après after s'il est fourni, servie par l'index _id.
+  // Également expliquée au démarrage par QueryPlanVerifier.
+  public static Query pageQuery(String after, Limit limit) {
+    Query page = after != null ? query(where("id").gt(after)) : new Query();
+    return page.with(Sort.by("id")).limit(limit);
+  }
+
+  private Flux<Employee> find(String operation, Query query) {
+    return readRouting.timed(
+        Route.REPORTING,
+        operation,
+        readRouting.template(Route.REPORTING).find(query, Employee.class));
+  }
+}
@@ -0,0 +1,7 @@
+package fr.jixter.badgeuse.repository;
+
+import fr.jixter.badgeuse.domain.MonthlySummary;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface ReactiveMonthlySummaryRepository
+    extends ReactiveMongoRepository<MonthlySummary, String> {}
@@ -0,0 +1,99 @@
+package fr.jixter.badgeuse.repository;
+
+import com.mongodb.ReadPreference;
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+// Routage des lectures des repositories (badgeuse.read-routing) : le chemin d'écriture lit le
+// primaire, le reporting lit selon la préférence configurée, éventuellement sur un secondaire.
+// Les durées des lectures sont publiées par route sous badgeuse.reads.
+@Component
+public class ReadRouting {
+
+  static final String READ_TIMER = "badgeuse.reads";
+
+  public enum Route {
+    // Statuts, existence et recalculs consécutifs à un badgeage : données toujours à jour
+    PRIMARY,
+    // Rapports, export et listes : retard de réplication borné par max-staleness
+    REPORTING
+  }
+
+  private final ReactiveMongoTemplate primary;
+  private final ReactiveMongoTemplate reporting;
+  private final MeterRegistry registry;
+
+  public ReadRouting(
+      ReactiveMongoTemplate mongoTemplate, BadgeuseProperties properties, MeterRegistry registry) {
+    BadgeuseProperties.ReadRouting settings = properties.getReadRouting();
+    this.primary = mongoTemplate;
+    this.registry = registry;
+    if (settings.isEnabled()) {
+      // Template distinct, non déclaré comme bean pour ne pas remplacer celui de Spring Boot
+      this.reporting =
+          new ReactiveMongoTemplate(
+              mongoTemplate.getMongoDatabaseFactory(), mongoTemplate.getConverter());
+      this.reporting.setReadPreference(readPreference(settings));
+    } else {
+      this.reporting = mongoTemplate;
+    }
+  }
+
+  static ReadPreference readPreference(BadgeuseProperties.ReadRouting settings) {
+    ReadPreference readPreference = ReadPreference.valueOf(settings.getReadPreference());
+    if (readPreference.equals(ReadPreference.primary())) {
+      // max-staleness n'a pas de sens pour le primaire, et y est refusé par le driver
+      return readPreference;
+    }
+    return ReadPreference.valueOf(
+        settings.getReadPreference(),
+        List.of(),
+        settings.getMaxStaleness().toSeconds(),
+        TimeUnit.SECONDS);
+  }
+
+  public ReactiveMongoTemplate template(Route route) {
+    return route == Route.PRIMARY ? primary : reporting;
+  }
+
+  public <T> Mono<T> timed(Route route, String operation, Mono<T> mono) {
+    return Mono.defer(
+        () -> {
+          Timer.Sample sample = Timer.start(registry);
+          return mono.doFinally(signal -> stop(sample, route, operation, signal));
+        });
+  }
+
+  public <T> Flux<T> timed(Route route, String operation, Flux<T> flux) {
+    return Flux.defer(
+        () -> {
+          Timer.Sample sample = Timer.start(registry);
+          return flux.doFinally(signal -> stop(sample, route, operation, signal));
+        });
+  }
+
+  private void stop(Timer.Sample sample, Route route, String operation, SignalType signal) {
+    String outcome =
+        switch (signal) {
+          case ON_COMPLETE -> "success";
+          case ON_ERROR -> "error";
+          default -> "cancelled";
+        };
+    sample.stop(
+        Timer.builder(READ_TIMER)
+            .description("Durée des lectures MongoDB, par route")
+            .tag("route", route.name().toLowerCase())
+            .tag("operation", operation)
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(registry));
+  }
+}
@@ -0,0 +1,166 @@
+package fr.jixter.badgeuse.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// Contrôle d'admission des badgeages : seaux à jetons par terminal et par employé, et nombre
+// borné de requêtes de badgeage en cours, pour qu'une rafale de terminaux qui se reconnectent ne
+// sature pas le pool de connexions MongoDB. Chaque décision est prise en mémoire.
+@Component
+public class AdmissionControl implements MeterBinder {
+
+  private final BadgeuseProperties.Admission settings;
+  private final BadgeuseMetrics metrics;
+  private final LongSupplier nanoClock;
+  private final Semaphore writes;
+  private final BucketSet terminalBuckets;
+  private final BucketSet employeeBuckets;
+
+  @Autowired
+  public AdmissionControl(BadgeuseProperties properties, BadgeuseMetrics metrics) {
+    this(properties, metrics, System::nanoTime);
+  }
+
+  // Horloge remplaçable par les tests
+  AdmissionControl(
+      BadgeuseProperties properties, BadgeuseMetrics metrics, LongSupplier nanoClock) {
+    this.settings = properties.getAdmission();
+    this.metrics = metrics;
+    this.nanoClock = nanoClock;
+    this.writes = new Semaphore(settings.getMaxConcurrentWrites());
+    this.terminalBuckets =
+        new BucketSet(settings.getTerminalBurst(), settings.getTerminalRate());
+    this.employeeBuckets =
+        new BucketSet(settings.getEmployeeBurst(), settings.getEmployeeRate());
+  }
+
+  // Délai avant un nouvel essai si la requête est refusée, vide si elle est admise : release()
+  // doit alors être appelé à la fin de son traitement. employeeId est null pour un lot, dont
+  // les badgeages passent ensuite un à un par tryAdmitEmployee.
+  public Optional<Duration> tryAdmit(String terminalId, String employeeId) {
+    if (!writes.tryAcquire()) {
+      metrics.busyRejected();
+      return Optional.of(settings.getBusyRetryAfter());
+    }
+    long now = nanoClock.getAsLong();
+    long wait = terminalBuckets.tryTake(terminalId, now);
+    if (wait > 0) {
+      metrics.terminalRejected();
+    } else if (employeeId != null) {
+      wait = employeeBuckets.tryTake(employeeId, now);
+      if (wait > 0) {
+        // Le refus vient de l'employé : le terminal retrouve son jeton
+        terminalBuckets.refund(terminalId);
+        metrics.employeeRejected();
+      }
+    }
+    if (wait > 0) {
+      writes.release();
+      return Optional.of(Duration.ofNanos(wait));
+    }
+    return Optional.empty();
+  }
+
+  // Seau de l'employé appliqué à un badgeage d'un lot admis, sans effet si le contrôle
+  // d'admission est désactivé : un terminal qui rejoue sa file par lot reste limité par employé
+  public boolean tryAdmitEmployee(String employeeId) {
+    if (!settings.isEnabled()) {
+      return true;
+    }
+    if (employeeBuckets.tryTake(employeeId, nanoClock.getAsLong()) > 0) {
+      metrics.employeeRejected();
+      return false;
+    }
+    return true;
+  }
+
+  public void release() {
+    writes.release();
+  }
+
+  public int inFlight() {
+    return settings.getMaxConcurrentWrites() - writes.availablePermits();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("badgeuse.admission.in.flight", this, AdmissionControl::inFlight)
+        .description("Requêtes de badgeage admises en cours de traitement")
+        .register(registry);
+  }
+
+  // Seaux de même capacité et même débit, un par clé. Un seau inutilisé le temps de se remplir
+  // entièrement est retiré : recréé plein, il se comporte de la même façon.
+  private final class BucketSet {
+
+    private final int burst;
+    private final double rate;
+    private final Cache<String, TokenBucket> buckets;
+
+    BucketSet(int burst, double rate) {
+      this.burst = burst;
+      this.rate = rate;
+      this.buckets =
+          Caffeine.newBuilder()
+              .maximumSize(settings.getMaximumTrackedKeys())
+              .expireAfterAccess(Duration.ofNanos((long) (burst / rate * 1e9)))
+              .ticker(nanoClock::getAsLong)
+              .build();
+    }
+
+    long tryTake(String key, long now) {
+      return buckets.get(key, ignored -> new TokenBucket(burst, rate, now)).tryTake(now);
+    }
+
+    void refund(String key) {
+      TokenBucket bucket = buckets.getIfPresent(key);
+      if (bucket != null) {
+        bucket.refund();
+      }
+    }
+  }
+
+  // Seau de burst jetons, rempli de rate jetons par seconde ; une requête prend un jeton
+  private static final class TokenBucket {
+
+    private final double capacity;
+    private final double nanosPerToken;
+    private double tokens;
+    private long updatedAt;
+
+    TokenBucket(int capacity, double rate, long now) {
+      this.capacity = capacity;
+      this.nanosPerToken = 1e9 / rate;
+      this.tokens = capacity;
+      this.updatedAt = now;
+    }
+
+    // 0 si un jeton a été pris, sinon délai en nanosecondes avant le prochain jeton
+    synchronized long tryTake(long now) {
+      // Instants lus avant le verrou : un appel concurrent a pu mettre le seau à jour après
+      if (now > updatedAt) {
+        tokens = Math.min(capacity, tokens + (now - updatedAt) / nanosPerToken);
+        updatedAt = now;
+      }
+      if (tokens >= 1) {
+        tokens -= 1;
+        return 0;
+      }
+      return (long) Math.ceil((1 - tokens) * nanosPerToken);
+    }
+
+    synchronized void refund() {
+      tokens = Math.min(capacity, tokens + 1);
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package fr.jixter.badgeuse.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.dto.PunchAnomaly;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+// Anomalies de badgeage (badgeages non appariés) par employé et par jour, relevées par les calculs
+// de temps et les agrégats journaliers. Une journée n'est journalisée qu'à sa première détection
+// ou lorsque son nombre de non appariés augmente : recalculer un rapport ne relogue rien. Le suivi
+// est en mémoire, propre à chaque instance et borné en nombre d'employés ; une journée non
+// détectée de nouveau pendant la rétention est oubliée.
+@Component
+public class AnomalyTracker implements MeterBinder {
+
+  private static final Logger logger = LoggerFactory.getLogger(AnomalyTracker.class);
+
+  private final BadgeuseMetrics metrics;
+  private final Duration retention;
+  private final Cache<String, EmployeeAnomalies> employees;
+
+  public AnomalyTracker(BadgeuseProperties properties, BadgeuseMetrics metrics) {
+    BadgeuseProperties.Anomalies settings = properties.getAnomalies();
+    this.metrics = metrics;
+    this.retention = settings.getRetention();
+    this.employees =
+        Caffeine.newBuilder()
+            .maximumSize(settings.getMaximumEmployees())
+            .expireAfterWrite(retention)
+            .build();
+  }
+
+  // Résultat de l'appariement des journées [from, to[ d'un employé : les jours de unmatchedDays
+  // sont enregistrés, les anomalies des autres jours de l'intervalle sont levées
+  public void record(
+      String employeeId, LocalDate from, LocalDate to, Map<LocalDate, Integer> unmatchedDays) {
+    if (unmatchedDays.isEmpty() && employees.getIfPresent(employeeId) == null) {
+      return;
+    }
+    LocalDateTime now = LocalDateTime.now();
+    employees
+        .asMap()
+        .compute(
+            employeeId,
+            (id, known) -> {
+              EmployeeAnomalies anomalies = known != null ? known : new EmployeeAnomalies();
+              anomalies.update(id, from, to, unmatchedDays, now, now.minus(retention));
+              return anomalies.isEmpty() ? null : anomalies;
+            });
+  }
+
+  // Anomalies d'un employé, ou de tous si employeeId est null, dont le jour est dans [from, to]
+  // (bornes facultatives), triées par employé puis par jour
+  public Flux<PunchAnomaly> find(String employeeId, LocalDate from, LocalDate to) {
+    return Flux.defer(
+        () -> {
+          Map<String, EmployeeAnomalies> selected = new TreeMap<>();
+          if (employeeId == null) {
+            selected.putAll(employees.asMap());
+          } else {
+            EmployeeAnomalies anomalies = employees.getIfPresent(employeeId);
+            if (anomalies != null) {
+              selected.put(employeeId, anomalies);
+            }
+          }
+          List<PunchAnomaly> found = new ArrayList<>();
+          selected.values().forEach(anomalies -> anomalies.copyTo(found, from, to));
+          return Flux.fromIterable(found);
+        });
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("badgeuse.anomalies.employees", employees, Cache::estimatedSize)
+        .description("Employés ayant au moins une journée de badgeages non appariés")
+        .register(registry);
+  }
+
+  // Journées en anomalie d'un employé, par jour
+  private final class EmployeeAnomalies {
+
+    private final TreeMap<LocalDate, PunchAnomaly> days = new TreeMap<>();
+
+    synchronized void update(
+        String employeeId,
+        LocalDate from,
+        LocalDate to,
+        Map<LocalDate, Integer> unmatchedDays,
+        LocalDateTime now,
+        LocalDateTime expired) {
+      days.subMap(from, to).keySet().retainAll(unmatchedDays.keySet());
+      days.values().removeIf(anomaly -> anomaly.getLastDetectedAt().isBefore(expired));
+      unmatchedDays.forEach(
+          (day, count) -> {
+            PunchAnomaly anomaly = days.get(day);
+            if (anomaly == null || count > anomaly.getUnmatchedCount()) {
+              logger.warn(
+                  "{} badgeage(s) non apparié(s) pour l'employé {} le {}", count, employeeId, day);
+              metrics.anomalyDetected();
+            }
+            if (anomaly == null) {
+              anomaly =
+                  PunchAnomaly.builder()
+                      .employeeId(employeeId)
+                      .date(day)
+                      .firstDetectedAt(now)
+                      .build();
+              days.put(day, anomaly);
+            }
+            anomaly.setUnmatchedCount(count);
+            anomaly.setLastDetectedAt(now);
+          });
+    }
+
+    synchronized boolean isEmpty() {
+      return days.isEmpty();
+    }
+
+    // Copies, les anomalies suivies continuant d'être mises à jour
+    synchronized void copyTo(List<PunchAnomaly> found, LocalDate from, LocalDate to) {
+      if (from != null && to != null && from.isAfter(to)) {
+        return;
+      }
+      Map<LocalDate, PunchAnomaly> range = days;
+      if (from != null || to != null) {
+        range =
+            days.subMap(
+                from != null ? from : LocalDate.MIN, true, to != null ? to : LocalDate.MAX, true);
+      }
+      range
+          .values()
+          .forEach(
+              anomaly ->
+                  found.add(
+                      PunchAnomaly.builder()
+                          .employeeId(anomaly.getEmployeeId())
+                          .date(anomaly.getDate())
+                          .unmatchedCount(anomaly.getUnmatchedCount())
+                          .firstDetectedAt(anomaly.getFirstDetectedAt())
+                          .lastDetectedAt(anomaly.getLastDetectedAt())
+                          .build()));
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package fr.jixter.badgeuse.service;
+
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.BadgeType;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Appariement IN/OUT incrémental d'une suite de badgeages triés par horodatage. L'état se limite
+// au badgeage en attente, aux compteurs et aux jours ayant un badgeage non apparié : la mémoire ne
+// dépend pas du nombre de badgeages.
+// Un IN immédiatement suivi d'un OUT forme une paire, même d'un jour à l'autre ; tout autre
+// badgeage est non apparié et compté pour son jour, sans journalisation : les anomalies sont
+// suivies par AnomalyTracker.
+public class BadgePairing {
+
+  private BadgeRecord pending;
+  private long totalMinutes;
+  private int unmatchedCount;
+  private int punchCount;
+  // Alloué au premier badgeage non apparié
+  private Map<LocalDate, Integer> unmatchedDays = Map.of();
+
+  public BadgePairing accept(BadgeRecord badgeRecord) {
+    punchCount++;
+    if (pending != null
+        && BadgeType.IN.equals(pending.getType())
+        && BadgeType.OUT.equals(badgeRecord.getType())) {
+      totalMinutes +=
+          Duration.between(pending.getTimestamp(), badgeRecord.getTimestamp()).toMinutes();
+      pending = null;
+    } else {
+      if (pending != null) {
+        unmatched(pending);
+      }
+      pending = badgeRecord;
+    }
+    return this;
+  }
+
+  public PairingSummary finish() {
+    if (pending != null) {
+      unmatched(pending);
+      pending = null;
+    }
+    return new PairingSummary(totalMinutes, unmatchedCount, punchCount, unmatchedDays);
+  }
+
+  private void unmatched(BadgeRecord badgeRecord) {
+    unmatchedCount++;
+    if (unmatchedDays.isEmpty()) {
+      unmatchedDays = new TreeMap<>();
+    }
+    unmatchedDays.merge(badgeRecord.getTimestamp().toLocalDate(), 1, Integer::sum);
+  }
+}
@@ -0,0 +1,18 @@
+package fr.jixter.badgeuse.service;
+
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import java.util.List;
+import reactor.core.publisher.Mono;
+
+// Notifié après l'écriture de badgeages, pour maintenir les projections qui en dépendent
+public interface BadgeRecordListener {
+
+  // Ordre de notification (@Order), les écouteurs étant appelés l'un après l'autre : les
+  // agrégats journaliers sont recalculés avant l'éviction des rapports. Évincé avant, un rapport
+  // redemandé entre-temps serait recalculé depuis l'ancien agrégat et resterait en cache.
+  int AGGREGATES_ORDER = 0;
+  int PRESENCE_ORDER = 10;
+  int REPORT_CACHE_ORDER = 20;
+
+  Mono<Void> onBadgeRecorded(List<BadgeRecord> records);
+}
@@ -0,0 +1,12 @@
+package fr.jixter.badgeuse.service;
+
+import reactor.core.publisher.Mono;
+
+// Projection en mémoire des badgeages, propre à chaque instance. Tenue à jour par les écritures de
+// l'instance et, avec badgeuse.change-streams.enabled, par celles des autres instances : un même
+// badgeage peut donc lui être notifié deux fois.
+public interface BadgeRecordProjection extends BadgeRecordListener {
+
+  // Badgeages manqués (historique des modifications perdu) : reconstruire la projection
+  Mono<Void> reset();
+}
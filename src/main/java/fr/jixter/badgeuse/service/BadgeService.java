@@ -1,140 +1,690 @@
 package fr.jixter.badgeuse.service;
 
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.config.BadgeuseProperties.BadgeStorage;
 import fr.jixter.badgeuse.domain.BadgeRecord;
 import fr.jixter.badgeuse.domain.BadgeType;
+import fr.jixter.badgeuse.domain.DailyAggregate;
+import fr.jixter.badgeuse.domain.Employee;
+import fr.jixter.badgeuse.domain.EmployeeMinutes;
+import fr.jixter.badgeuse.domain.MonthlySummary;
+import fr.jixter.badgeuse.domain.dto.BadgeBatchResult;
 import fr.jixter.badgeuse.domain.dto.BadgeDto;
+import fr.jixter.badgeuse.domain.dto.EmployeeStatus;
+import fr.jixter.badgeuse.domain.dto.PayrollLine;
+import fr.jixter.badgeuse.domain.dto.RangeReport;
 import fr.jixter.badgeuse.domain.dto.TimeReport;
+import fr.jixter.badgeuse.exception.ClosedPeriodException;
+import fr.jixter.badgeuse.exception.InvalidRangeException;
 import fr.jixter.badgeuse.exception.ResourceNotFoundException;
+import fr.jixter.badgeuse.repository.BadgePartitions;
 import fr.jixter.badgeuse.repository.ReactiveBadgeRepository;
 import fr.jixter.badgeuse.repository.ReactiveEmployeeRepository;
-import java.time.DayOfWeek;
-import java.time.Duration;
+import fr.jixter.badgeuse.repository.ReactiveMonthlySummaryRepository;
+import fr.jixter.badgeuse.repository.ReadRouting.Route;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
 @Service
 @AllArgsConstructor
 public class BadgeService {
 
   private static final Logger logger = LoggerFactory.getLogger(BadgeService.class);
+  private static final String METRICS_SERVICE = "badge";
+  // Plage maximale d'un rapport par jour
+  private static final int MAX_RANGE_DAYS = 366;
 
   private final ReactiveBadgeRepository badgeRepository;
   private final ReactiveEmployeeRepository employeeRepository;
+  private final EmployeeCache employeeCache;
+  private final Validator validator;
+  private final BadgeuseProperties properties;
+  private final DailyAggregateService dailyAggregateService;
+  private final PresenceBoard presenceBoard;
+  private final List<BadgeRecordListener> listeners;
+  private final BadgeuseMetrics metrics;
+  private final TimeReportCache reportCache;
+  private final BadgeWriteBatcher writeBatcher;
+  private final WorkingDayCalendar workingDayCalendar;
+  private final BadgePartitions partitions;
+  private final ReactiveMonthlySummaryRepository summaryRepository;
+  private final AnomalyTracker anomalyTracker;
+  private final AdmissionControl admissionControl;
 
   public Mono<BadgeType> getEmployeeStatusAt(String employeeId, LocalDateTime timestamp) {
-    return badgeRepository
-        .findFirstByEmployeeIdAndTimestampLessThanEqualOrderByTimestampDesc(employeeId, timestamp)
-        .map(BadgeRecord::getType)
-        .defaultIfEmpty(BadgeType.OUT); // Par défaut, on considère l'employé OUT s'il n'y a aucun enregistrement
+    Optional<BadgeType> known = presenceBoard.statusAt(employeeId, timestamp);
+    Mono<BadgeType> status =
+        known.isPresent()
+            ? Mono.just(known.get())
+            : badgeRepository
+                .findLatestBefore(employeeId, timestamp)
+                .map(BadgeRecord::getType)
+                // Par défaut, on considère l'employé OUT s'il n'y a aucun enregistrement
+                .defaultIfEmpty(BadgeType.OUT);
+    return metrics.timed(METRICS_SERVICE, "getEmployeeStatusAt", status);
+  }
+
+  // Statut de plusieurs employés à un même instant, en une seule agrégation (appel de sécurité
+  // incendie). employeeIds null : tous les employés ayant badgé avant l'instant. Un employé
+  // demandé sans badgeage antérieur est renvoyé OUT, sans horodatage.
+  public Flux<EmployeeStatus> getEmployeesStatusAt(
+      LocalDateTime timestamp, Collection<String> employeeIds) {
+    Flux<EmployeeStatus> statuses;
+    if (employeeIds == null) {
+      statuses = badgeRepository.findLatestPerEmployee(timestamp, null);
+    } else {
+      statuses =
+          Flux.defer(
+              () -> {
+                Set<String> missing = new HashSet<>(employeeIds);
+                return badgeRepository
+                    .findLatestPerEmployee(timestamp, employeeIds)
+                    .doOnNext(status -> missing.remove(status.getEmployeeId()))
+                    .concatWith(
+                        Flux.defer(() -> Flux.fromIterable(missing))
+                            .map(
+                                employeeId ->
+                                    EmployeeStatus.builder()
+                                        .employeeId(employeeId)
+                                        .type(BadgeType.OUT)
+                                        .build()));
+              });
+    }
+    return metrics.timed(METRICS_SERVICE, "getEmployeesStatusAt", statuses);
   }
 
   public Mono<BadgeRecord> addBadgeRecord(String employeeId, BadgeDto badgeDto) {
-    return employeeRepository
-        .findById(employeeId)
-        .switchIfEmpty(
-            Mono.error(new ResourceNotFoundException("Employee not found with id " + employeeId)))
+    Mono<BadgeRecord> saved =
+        checkWritable(badgeDto.getTimestamp())
+            .then(Mono.defer(() -> employeeCache.findById(employeeId)))
+            .switchIfEmpty(
+                Mono.error(
+                    new ResourceNotFoundException("Employee not found with id " + employeeId)))
+            .doOnError(
+                e -> e instanceof ResourceNotFoundException || e instanceof ClosedPeriodException,
+                e -> metrics.punchesRejected(1))
+            .flatMap(
+                employee -> {
+                  BadgeRecord badgeRecord =
+                      BadgeRecord.builder()
+                          .employeeId(employee.getId())
+                          .timestamp(badgeDto.getTimestamp())
+                          .type(badgeDto.getType())
+                          .eventId(badgeDto.getEventId())
+                          .build();
+                  if (isIdempotent(badgeRecord)) {
+                    // Rejeu : l'original est renvoyé, sans nouvelle notification
+                    return badgeRepository
+                        .insertIfAbsent(badgeRecord)
+                        .doOnNext(existing -> metrics.punchesDuplicated(1))
+                        .switchIfEmpty(Mono.defer(() -> recorded(badgeRecord)));
+                  }
+                  Mono<BadgeRecord> write =
+                      writeBatcher.isEnabled()
+                          ? writeBatcher.insert(badgeRecord)
+                          : badgeRepository.save(badgeRecord);
+                  return write.flatMap(this::recorded);
+                });
+    return metrics.timed(METRICS_SERVICE, "addBadgeRecord", saved);
+  }
+
+  // Les mois archivés sont fermés : leurs résumés ne seraient plus à jour
+  private Mono<Void> checkWritable(LocalDateTime timestamp) {
+    return partitions
+        .writableFrom()
         .flatMap(
-            employee -> {
-              BadgeRecord badgeRecord =
-                  BadgeRecord.builder()
-                      .employeeId(employee.getId())
-                      .timestamp(badgeDto.getTimestamp())
-                      .type(badgeDto.getType())
-                      .build();
-              return badgeRepository.save(badgeRecord);
+            writableFrom ->
+                timestamp.isBefore(writableFrom)
+                    ? Mono.error(new ClosedPeriodException(closedPeriodMessage(writableFrom)))
+                    : Mono.empty());
+  }
+
+  private static String closedPeriodMessage(LocalDateTime writableFrom) {
+    return "Punches before " + writableFrom.toLocalDate() + " are archived";
+  }
+
+  // Une collection time-series n'accepte ni index unique ni upsert : l'eventId y est conservé
+  // mais les rejeux ne sont pas dédoublonnés
+  private boolean isIdempotent(BadgeRecord badgeRecord) {
+    return badgeRecord.getEventId() != null
+        && properties.getMongo().getBadgeStorage() != BadgeStorage.TIME_SERIES;
+  }
+
+  private Mono<BadgeRecord> recorded(BadgeRecord badgeRecord) {
+    metrics.punchesAccepted(1);
+    return notifyListeners(List.of(badgeRecord)).thenReturn(badgeRecord);
+  }
+
+  // Une projection en échec ne doit pas faire échouer un badgeage déjà enregistré. Les écouteurs
+  // sont appelés l'un après l'autre, dans l'ordre de BadgeRecordListener (@Order)
+  private Mono<Void> notifyListeners(List<BadgeRecord> records) {
+    if (records.isEmpty()) {
+      return Mono.empty();
+    }
+    return Flux.fromIterable(listeners)
+        .concatMap(
+            listener ->
+                listener
+                    .onBadgeRecorded(records)
+                    .onErrorResume(
+                        e -> {
+                          logger.error(
+                              "Échec de la mise à jour de {} après badgeage",
+                              listener.getClass().getSimpleName(),
+                              e);
+                          return Mono.empty();
+                        }))
+        .then();
+  }
+
+  public Flux<BadgeBatchResult> addBadgeRecords(Flux<BadgeDto> badges) {
+    return metrics.timed(
+        METRICS_SERVICE,
+        "addBadgeRecords",
+        badges
+            .index()
+            .buffer(properties.getIngest().getBatchSize())
+            .concatMap(this::ingestBatch)
+            .doOnNext(
+                result -> {
+                  switch (result.getStatus()) {
+                    case CREATED -> metrics.punchesAccepted(1);
+                    case DUPLICATE -> metrics.punchesDuplicated(1);
+                    case REJECTED -> metrics.punchesRejected(1);
+                  }
+                }));
+  }
+
+  private Flux<BadgeBatchResult> ingestBatch(List<Tuple2<Long, BadgeDto>> batch) {
+    BadgeBatchResult[] results = new BadgeBatchResult[batch.size()];
+    Set<String> employeeIds = new HashSet<>();
+    for (int i = 0; i < batch.size(); i++) {
+      String error = validate(batch.get(i).getT2());
+      if (error != null) {
+        results[i] = rejected(batch.get(i), error);
+      } else {
+        employeeIds.add(batch.get(i).getT2().getEmployeeId());
+      }
+    }
+    if (employeeIds.isEmpty()) {
+      return Flux.fromArray(results);
+    }
+    // Une seule requête $in pour vérifier l'existence de tous les employés du lot
+    return Mono.zip(
+            employeeRepository
+                .findAllById(employeeIds)
+                .map(Employee::getId)
+                .collect(Collectors.toSet()),
+            partitions.writableFrom())
+        .flatMapMany(
+            checks -> {
+              Set<String> knownIds = checks.getT1();
+              LocalDateTime writableFrom = checks.getT2();
+              List<BadgeRecord> records = new ArrayList<>();
+              List<Integer> positions = new ArrayList<>();
+              for (int i = 0; i < batch.size(); i++) {
+                if (results[i] != null) {
+                  continue;
+                }
+                BadgeDto badgeDto = batch.get(i).getT2();
+                if (!knownIds.contains(badgeDto.getEmployeeId())) {
+                  results[i] =
+                      rejected(
+                          batch.get(i), "Employee not found with id " + badgeDto.getEmployeeId());
+                  continue;
+                }
+                if (badgeDto.getTimestamp().isBefore(writableFrom)) {
+                  results[i] = rejected(batch.get(i), closedPeriodMessage(writableFrom));
+                  continue;
+                }
+                if (!admissionControl.tryAdmitEmployee(badgeDto.getEmployeeId())) {
+                  results[i] =
+                      rejected(
+                          batch.get(i),
+                          "Too many punches for employee " + badgeDto.getEmployeeId());
+                  continue;
+                }
+                records.add(
+                    BadgeRecord.builder()
+                        .id(new ObjectId().toHexString())
+                        .employeeId(badgeDto.getEmployeeId())
+                        .timestamp(badgeDto.getTimestamp())
+                        .type(badgeDto.getType())
+                        .eventId(badgeDto.getEventId())
+                        .build());
+                positions.add(i);
+              }
+              return insertBatch(batch, results, records, positions);
             });
   }
 
-  public Mono<TimeReport> calculateDailyTime(String employeeId, String date) {
+  // Écrit les badgeages valides du lot. Comme pour addBadgeRecord, le rejeu d'un eventId déjà
+  // enregistré est accepté et renvoie l'identifiant de l'original.
+  private Flux<BadgeBatchResult> insertBatch(
+      List<Tuple2<Long, BadgeDto>> batch,
+      BadgeBatchResult[] results,
+      List<BadgeRecord> records,
+      List<Integer> positions) {
     return badgeRepository
-        .findByEmployeeIdAndDate(employeeId, date)
-        .collectList()
-        .map(
-            records -> {
-              long totalMinutes = computeTotalMinutes(records);
-              // 7h = 420 minutes par jour
-              boolean sufficient = totalMinutes >= 420;
-              return TimeReport.builder()
-                  .employeeId(employeeId)
-                  .date(date)
-                  .totalMinutes(totalMinutes)
-                  .sufficient(sufficient)
-                  .build();
-            });
+        .insertAllUnordered(records)
+        .onErrorResume(
+            e -> {
+              // Échec global de l'écriture : chaque enregistrement du lot est rejeté
+              logger.error("Échec de l'insertion d'un lot de {} badgeages", records.size(), e);
+              DataAccessException failure =
+                  new DataAccessResourceFailureException(e.getMessage(), e);
+              Map<Integer, DataAccessException> errors = new HashMap<>();
+              for (int j = 0; j < records.size(); j++) {
+                errors.put(j, failure);
+              }
+              return Mono.just(errors);
+            })
+        .flatMapMany(
+            errors ->
+                originalsOfReplays(records, errors)
+                    .flatMapMany(
+                        originals -> {
+                          List<BadgeRecord> created = new ArrayList<>();
+                          for (int j = 0; j < records.size(); j++) {
+                            Tuple2<Long, BadgeDto> item = batch.get(positions.get(j));
+                            BadgeRecord badgeRecord = records.get(j);
+                            DataAccessException error = errors.get(j);
+                            BadgeRecord original =
+                                error instanceof DuplicateKeyException
+                                    ? originals.get(EventKey.of(badgeRecord))
+                                    : null;
+                            if (error == null) {
+                              results[positions.get(j)] =
+                                  accepted(item, BadgeBatchResult.Status.CREATED, badgeRecord);
+                              created.add(badgeRecord);
+                            } else if (original != null) {
+                              results[positions.get(j)] =
+                                  accepted(item, BadgeBatchResult.Status.DUPLICATE, original);
+                            } else {
+                              results[positions.get(j)] = rejected(item, error.getMessage());
+                            }
+                          }
+                          return notifyListeners(created).thenMany(Flux.fromArray(results));
+                        }));
+  }
+
+  // Originaux des badgeages refusés sur l'index unique (employeeId, eventId), en une requête
+  private Mono<Map<EventKey, BadgeRecord>> originalsOfReplays(
+      List<BadgeRecord> records, Map<Integer, DataAccessException> errors) {
+    List<BadgeRecord> replays = new ArrayList<>();
+    errors.forEach(
+        (j, error) -> {
+          if (error instanceof DuplicateKeyException && records.get(j).getEventId() != null) {
+            replays.add(records.get(j));
+          }
+        });
+    if (replays.isEmpty()) {
+      return Mono.just(Map.of());
+    }
+    return badgeRepository.findByEvents(replays).collectMap(EventKey::of);
+  }
+
+  private record EventKey(String employeeId, String eventId) {
+
+    static EventKey of(BadgeRecord badgeRecord) {
+      return new EventKey(badgeRecord.getEmployeeId(), badgeRecord.getEventId());
+    }
+  }
+
+  private String validate(BadgeDto badgeDto) {
+    if (badgeDto.getEmployeeId() == null || badgeDto.getEmployeeId().isBlank()) {
+      return "employeeId : L'ID de l'employé est requis";
+    }
+    Set<ConstraintViolation<BadgeDto>> violations = validator.validate(badgeDto);
+    if (violations.isEmpty()) {
+      return null;
+    }
+    return violations.stream()
+        .map(violation -> violation.getPropertyPath() + " : " + violation.getMessage())
+        .sorted()
+        .collect(Collectors.joining(", "));
+  }
+
+  private static BadgeBatchResult accepted(
+      Tuple2<Long, BadgeDto> item, BadgeBatchResult.Status status, BadgeRecord badgeRecord) {
+    return BadgeBatchResult.builder()
+        .index(item.getT1())
+        .employeeId(item.getT2().getEmployeeId())
+        .status(status)
+        .id(badgeRecord.getId())
+        .build();
+  }
+
+  private static BadgeBatchResult rejected(Tuple2<Long, BadgeDto> item, String error) {
+    return BadgeBatchResult.builder()
+        .index(item.getT1())
+        .employeeId(item.getT2().getEmployeeId())
+        .status(BadgeBatchResult.Status.REJECTED)
+        .error(error)
+        .build();
+  }
+
+  public Mono<TimeReport> calculateDailyTime(String employeeId, String date) {
+    Mono<TimeReport> report =
+        reportCache.get(
+            employeeId,
+            date,
+            route ->
+                dailyMinutes(employeeId, date, route)
+                    .map(
+                        totalMinutes -> {
+                          // 7h = 420 minutes par jour
+                          boolean sufficient = totalMinutes >= 420;
+                          return TimeReport.builder()
+                              .employeeId(employeeId)
+                              .date(date)
+                              .totalMinutes(totalMinutes)
+                              .sufficient(sufficient)
+                              .build();
+                        }));
+    return metrics.timed(METRICS_SERVICE, "calculateDailyTime", report);
   }
 
   public Mono<TimeReport> calculateMonthlyTime(String employeeId, String month) {
-    return badgeRepository
-        .findByEmployeeIdAndMonth(employeeId, month)
+    Mono<TimeReport> report =
+        reportCache.get(
+            employeeId,
+            month,
+            route ->
+                monthlyMinutes(employeeId, month, route)
+                    .map(
+                        totalMinutes -> {
+                          int workingDays =
+                              workingDayCalendar.workingDaysInMonth(YearMonth.parse(month));
+                          long expectedMinutes = workingDays * 420L;
+                          boolean sufficient = totalMinutes >= expectedMinutes;
+                          return TimeReport.builder()
+                              .employeeId(employeeId)
+                              .month(month)
+                              .totalMinutes(totalMinutes)
+                              .sufficient(sufficient)
+                              .build();
+                        }));
+    return metrics.timed(METRICS_SERVICE, "calculateMonthlyTime", report);
+  }
+
+  // Rapports mensuels de tous les employés, y compris sans badgeage sur le mois, calculés par
+  // une seule agrégation MongoDB et restitués au fil de l'eau dans l'ordre des identifiants
+  public Flux<TimeReport> calculateMonthlyTimeForAll(String month) {
+    YearMonth ym = YearMonth.parse(month);
+    long expectedMinutes = workingDayCalendar.workingDaysInMonth(ym) * 420L;
+    Flux<EmployeeMinutes> minutes =
+        partitions
+            .isArchived(ym)
+            .flatMapMany(
+                archived ->
+                    archived
+                        ? badgeRepository.sumArchivedMinutesByEmployee(ym)
+                        : badgeRepository.sumMinutesByEmployee(
+                            ym.atDay(1).atStartOfDay(), ym.plusMonths(1).atDay(1).atStartOfDay()));
+    Flux<TimeReport> reports =
+        minutes
+            .doOnNext(
+                employeeMinutes ->
+                    metrics.unmatchedRecordsFound(employeeMinutes.getUnmatchedCount()))
+            .map(
+                employeeMinutes ->
+                    TimeReport.builder()
+                        .employeeId(employeeMinutes.getEmployeeId())
+                        .month(month)
+                        .totalMinutes(employeeMinutes.getTotalMinutes())
+                        .sufficient(employeeMinutes.getTotalMinutes() >= expectedMinutes)
+                        .build());
+    return metrics.timed(METRICS_SERVICE, "calculateMonthlyTimeForAll", reports);
+  }
+
+  // Export de paie : une ligne par employé, y compris sans badgeage sur le mois, dans l'ordre
+  // des identifiants. Les rapports sont calculés en parallèle, au plus export.concurrency à la
+  // fois, et émis au fil de l'eau sans attendre la fin du parcours des employés. Le calcul ne
+  // passe pas par TimeReportCache, que le parcours de tous les employés viderait.
+  public Flux<PayrollLine> exportMonthlyPayroll(String month) {
+    long expectedMinutes = workingDayCalendar.workingDaysInMonth(YearMonth.parse(month)) * 420L;
+    Flux<PayrollLine> lines =
+        employeeRepository
+            .findAll(Sort.by("id"))
+            .flatMapSequential(
+                employee ->
+                    monthlyMinutes(employee.getId(), month, Route.REPORTING)
+                        .map(
+                            totalMinutes ->
+                                PayrollLine.builder()
+                                    .employeeId(employee.getId())
+                                    .name(employee.getName())
+                                    .email(employee.getEmail())
+                                    .month(month)
+                                    .totalMinutes(totalMinutes)
+                                    .expectedMinutes(expectedMinutes)
+                                    .sufficient(totalMinutes >= expectedMinutes)
+                                    .build()),
+                properties.getExport().getConcurrency());
+    return metrics.timed(METRICS_SERVICE, "exportMonthlyPayroll", lines);
+  }
+
+  // Rapport sur la plage [start, end] (bornes incluses) : les badgeages de la plage sont lus en
+  // une seule requête et appariés jour par jour en un seul parcours
+  public Mono<RangeReport> calculateRangeTime(String employeeId, LocalDate start, LocalDate end) {
+    if (end.isBefore(start) || ChronoUnit.DAYS.between(start, end) >= MAX_RANGE_DAYS) {
+      return Mono.error(
+          new InvalidRangeException(
+              "Invalid range " + start + " - " + end + " (at most " + MAX_RANGE_DAYS + " days)"));
+    }
+    Mono<RangeReport> report =
+        dailySummaries(employeeId, start, end.plusDays(1))
+            .doOnNext(
+                days ->
+                    anomalyTracker.record(employeeId, start, end.plusDays(1), unmatchedDays(days)))
+            .map(days -> toRangeReport(employeeId, start, end, days));
+    return metrics.timed(METRICS_SERVICE, "calculateRangeTime", report);
+  }
+
+  private Mono<Map<LocalDate, PairingSummary>> dailySummaries(
+      String employeeId, LocalDate from, LocalDate to) {
+    if (dailyAggregateService.isEnabled()) {
+      return aggregatedSummaries(employeeId, from, to);
+    }
+    return pairDays(
+        badgeRepository.findReportNeighbours(employeeId, from.atStartOfDay(), to.atStartOfDay()),
+        from,
+        badgeRepository.findReportRange(employeeId, from.atStartOfDay(), to.atStartOfDay()));
+  }
+
+  // Appariement jour par jour des badgeages triés des journées à partir de from, avec leurs
+  // badgeages voisins : une présence franchissant minuit compte pour le jour de son IN
+  private Mono<Map<LocalDate, PairingSummary>> pairDays(
+      Flux<BadgeRecord> neighbours, LocalDate from, Flux<BadgeRecord> sortedRecords) {
+    return neighbours
         .collectList()
-        .map(
-            records -> {
-              long totalMinutes = computeTotalMinutes(records);
-              int workingDays = calculateWorkingDaysInMonth(month);
-              long expectedMinutes = workingDays * 420L;
-              boolean sufficient = totalMinutes >= expectedMinutes;
-              return TimeReport.builder()
-                  .employeeId(employeeId)
-                  .month(month)
-                  .totalMinutes(totalMinutes)
-                  .sufficient(sufficient)
-                  .build();
-            });
+        .flatMap(
+            found ->
+                sortedRecords.reduce(
+                    new DailyPairing(found, from.atStartOfDay()), DailyPairing::accept))
+        .map(DailyPairing::finish)
+        .doOnNext(
+            days ->
+                metrics.unmatchedRecordsFound(
+                    days.values().stream().mapToLong(PairingSummary::unmatchedCount).sum()));
   }
 
-  private long computeTotalMinutes(List<BadgeRecord> records) {
-    records.sort(Comparator.comparing(BadgeRecord::getTimestamp));
-    long total = 0;
-    final int size = records.size();
-    boolean skipNext = false;
-
-    for (int i = 0; i < size - 1; i++) {
-      if (skipNext) {
-        skipNext = false;
-        continue;
-      }
+  private Mono<Map<LocalDate, PairingSummary>> aggregatedSummaries(
+      String employeeId, LocalDate from, LocalDate to) {
+    return dailyAggregateService
+        .findRange(employeeId, from, to)
+        .collectMap(
+            DailyAggregate::getDate,
+            aggregate ->
+                new PairingSummary(
+                    aggregate.getWorkedMinutes(),
+                    aggregate.getUnmatchedCount(),
+                    aggregate.getPunchCount()));
+  }
 
-      BadgeRecord current = records.get(i);
-      BadgeRecord next = records.get(i + 1);
+  // Nombre de badgeages non appariés des jours qui en comptent
+  private static Map<LocalDate, Integer> unmatchedDays(Map<LocalDate, PairingSummary> days) {
+    Map<LocalDate, Integer> unmatched = new HashMap<>();
+    days.forEach(
+        (day, summary) -> {
+          if (summary.unmatchedCount() > 0) {
+            unmatched.put(day, summary.unmatchedCount());
+          }
+        });
+    return unmatched;
+  }
 
-      if (BadgeType.IN.equals(current.getType()) && BadgeType.OUT.equals(next.getType())) {
-        total += Duration.between(current.getTimestamp(), next.getTimestamp()).toMinutes();
-        // On indique que l'élément suivant est déjà traité
-        skipNext = true;
-      } else {
-        logger.warn(
-            "Enregistrement non apparié détecté pour l'employé {}: {}",
-            current.getEmployeeId(),
-            current);
-      }
+  private RangeReport toRangeReport(
+      String employeeId, LocalDate start, LocalDate end, Map<LocalDate, PairingSummary> days) {
+    List<TimeReport> dayReports = new ArrayList<>();
+    long totalMinutes = 0;
+    for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+      PairingSummary summary = days.get(day);
+      long minutes = summary != null ? summary.totalMinutes() : 0;
+      // 7h = 420 minutes par jour ouvré, aucune attendue les autres jours
+      long expected = workingDayCalendar.isWorkingDay(day) ? 420 : 0;
+      dayReports.add(
+          TimeReport.builder()
+              .employeeId(employeeId)
+              .date(day.toString())
+              .totalMinutes(minutes)
+              .sufficient(minutes >= expected)
+              .build());
+      totalMinutes += minutes;
     }
+    long expectedMinutes = workingDayCalendar.workingDays(start, end.plusDays(1)) * 420L;
+    return RangeReport.builder()
+        .employeeId(employeeId)
+        .start(start.toString())
+        .end(end.toString())
+        .days(dayReports)
+        .totalMinutes(totalMinutes)
+        .expectedMinutes(expectedMinutes)
+        .sufficient(totalMinutes >= expectedMinutes)
+        .build();
+  }
 
-    if (!skipNext && size > 0) {
-      BadgeRecord last = records.get(size - 1);
-      logger.warn(
-          "Enregistrement non apparié détecté pour l'employé {}: {}", last.getEmployeeId(), last);
+  // Minutes d'une journée ; route PRIMARY juste après un badgeage de la journée (TimeReportCache)
+  private Mono<Long> dailyMinutes(String employeeId, String date, Route route) {
+    LocalDate day = LocalDate.parse(date);
+    if (dailyAggregateService.isEnabled()) {
+      return dailyAggregateService
+          .findDay(employeeId, day)
+          .doOnNext(
+              aggregate ->
+                  anomalyTracker.record(
+                      employeeId,
+                      day,
+                      day.plusDays(1),
+                      aggregate.getUnmatchedCount() > 0
+                          ? Map.of(day, aggregate.getUnmatchedCount())
+                          : Map.of()))
+          .map(DailyAggregate::getWorkedMinutes)
+          .defaultIfEmpty(0L);
     }
+    LocalDateTime start = day.atStartOfDay();
+    LocalDateTime end = day.plusDays(1).atStartOfDay();
+    return pairDays(
+            route == Route.PRIMARY
+                ? badgeRepository.findNeighbours(employeeId, start, end)
+                : badgeRepository.findReportNeighbours(employeeId, start, end),
+            day,
+            route == Route.PRIMARY
+                ? badgeRepository.findRange(employeeId, start, end)
+                : badgeRepository.findByEmployeeIdAndDate(employeeId, date))
+        .map(days -> days.getOrDefault(day, new PairingSummary(0, 0, 0)))
+        .doOnNext(
+            summary ->
+                anomalyTracker.record(employeeId, day, day.plusDays(1), summary.unmatchedDays()))
+        .map(PairingSummary::totalMinutes);
+  }
 
-    return total;
+  private Mono<Long> monthlyMinutes(String employeeId, String month, Route route) {
+    return partitions
+        .isArchived(YearMonth.parse(month))
+        .flatMap(
+            archived ->
+                archived
+                    ? summaryRepository
+                        .findById(MonthlySummary.idOf(employeeId, month))
+                        .map(MonthlySummary::getWorkedMinutes)
+                        .defaultIfEmpty(0L)
+                    : unarchivedMonthlyMinutes(employeeId, month, route));
   }
 
-  private int calculateWorkingDaysInMonth(String month) {
+  private Mono<Long> unarchivedMonthlyMinutes(String employeeId, String month, Route route) {
     YearMonth ym = YearMonth.parse(month);
-    int workingDays = 0;
-    for (int day = 1; day <= ym.lengthOfMonth(); day++) {
-      LocalDate date = ym.atDay(day);
-      if (!(date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY)) {
-        workingDays++;
-      }
+    if (dailyAggregateService.isEnabled()) {
+      return aggregatedMinutes(employeeId, ym.atDay(1), ym.plusMonths(1).atDay(1));
     }
-    return workingDays;
+    return computeTotalMinutes(
+        employeeId,
+        ym.atDay(1),
+        ym.plusMonths(1).atDay(1),
+        route == Route.PRIMARY
+            ? badgeRepository.findRange(
+                employeeId, ym.atDay(1).atStartOfDay(), ym.plusMonths(1).atDay(1).atStartOfDay())
+            : badgeRepository.findByEmployeeIdAndMonth(employeeId, month));
+  }
+
+  // Minutes des journées [from, to[ d'après leurs agrégats
+  private Mono<Long> aggregatedMinutes(String employeeId, LocalDate from, LocalDate to) {
+    return aggregatedSummaries(employeeId, from, to)
+        .doOnNext(days -> anomalyTracker.record(employeeId, from, to, unmatchedDays(days)))
+        .map(days -> days.values().stream().mapToLong(PairingSummary::totalMinutes).sum());
+  }
+
+  // Minutes des badgeages triés des journées [from, to[
+  private Mono<Long> computeTotalMinutes(
+      String employeeId, LocalDate from, LocalDate to, Flux<BadgeRecord> sortedRecords) {
+    return pairRecords(sortedRecords)
+        .doOnNext(
+            summary -> {
+              metrics.unmatchedRecordsFound(summary.unmatchedCount());
+              anomalyTracker.record(employeeId, from, to, summary.unmatchedDays());
+            })
+        .map(PairingSummary::totalMinutes);
+  }
+
+  // Appariement d'une liste quelconque : triée en mémoire, réservée aux petits volumes
+  static PairingSummary pairRecords(List<BadgeRecord> records) {
+    records.sort(Comparator.comparing(BadgeRecord::getTimestamp));
+    BadgePairing pairing = new BadgePairing();
+    records.forEach(pairing::accept);
+    return pairing.finish();
+  }
+
+  // Appariement en flux de badgeages déjà triés par MongoDB, en mémoire constante
+  static Mono<PairingSummary> pairRecords(Flux<BadgeRecord> sortedRecords) {
+    return sortedRecords
+        .reduceWith(BadgePairing::new, BadgePairing::accept)
+        .map(BadgePairing::finish);
   }
 }
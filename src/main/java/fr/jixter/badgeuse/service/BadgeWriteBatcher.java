@@ -0,0 +1,113 @@
+package fr.jixter.badgeuse.service;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.repository.ReactiveBadgeRepository;
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+// Regroupe les badgeages unitaires simultanés en insertMany. Un lot part dès qu'il atteint
+// maxBatchSize ou après maxDelay ; chaque appelant reçoit son propre badgeage ou sa propre
+// erreur. Au-delà de queueCapacity badgeages en attente, l'écriture se fait sans lot.
+@Service
+public class BadgeWriteBatcher {
+
+  private static final Logger logger = LoggerFactory.getLogger(BadgeWriteBatcher.class);
+
+  private final ReactiveBadgeRepository badgeRepository;
+  private final BadgeuseMetrics metrics;
+  private final boolean enabled;
+  private final Sinks.Many<PendingWrite> pending;
+
+  public BadgeWriteBatcher(
+      ReactiveBadgeRepository badgeRepository,
+      BadgeuseMetrics metrics,
+      BadgeuseProperties properties) {
+    BadgeuseProperties.WriteCoalescing settings = properties.getWriteCoalescing();
+    this.badgeRepository = badgeRepository;
+    this.metrics = metrics;
+    this.enabled = settings.isEnabled();
+    this.pending =
+        Sinks.many()
+            .unicast()
+            .onBackpressureBuffer(Queues.<PendingWrite>get(settings.getQueueCapacity()).get());
+    if (enabled) {
+      // Demande en amont réglée sur les lots effectivement écrits : la file se remplit quand
+      // MongoDB ralentit, au lieu d'accumuler des lots en mémoire
+      pending
+          .asFlux()
+          .bufferTimeout(settings.getMaxBatchSize(), settings.getMaxDelay(), true)
+          .flatMap(
+              batch -> Mono.defer(() -> write(batch)).subscribeOn(Schedulers.parallel()),
+              settings.getMaxInFlightBatches())
+          .subscribe();
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public Mono<BadgeRecord> insert(BadgeRecord badgeRecord) {
+    return Mono.defer(
+        () -> {
+          Sinks.One<BadgeRecord> result = Sinks.one();
+          if (!enqueue(new PendingWrite(badgeRecord, result))) {
+            return badgeRepository.save(badgeRecord);
+          }
+          return result.asMono();
+        });
+  }
+
+  // Les lots en attente sont écrits avant l'arrêt
+  @PreDestroy
+  public void close() {
+    pending.tryEmitComplete();
+  }
+
+  private boolean enqueue(PendingWrite write) {
+    Sinks.EmitResult result;
+    // Émission concurrente en cours sur un autre thread : section critique très courte
+    while ((result = pending.tryEmitNext(write)) == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+      Thread.onSpinWait();
+    }
+    return result.isSuccess();
+  }
+
+  private Mono<Void> write(List<PendingWrite> batch) {
+    List<BadgeRecord> records = batch.stream().map(PendingWrite::badgeRecord).toList();
+    metrics.coalescedBatchWritten(records.size());
+    return badgeRepository
+        .insertAllUnordered(records)
+        .doOnNext(
+            errors -> {
+              // Erreurs déjà traduites par le repository (DuplicateKeyException pour une clé
+              // unique), transmises telles quelles à chaque appelant
+              for (int i = 0; i < batch.size(); i++) {
+                DataAccessException error = errors.get(i);
+                if (error == null) {
+                  batch.get(i).result().tryEmitValue(records.get(i));
+                } else {
+                  batch.get(i).result().tryEmitError(error);
+                }
+              }
+            })
+        .onErrorResume(
+            e -> {
+              logger.error("Échec de l'écriture d'un lot de {} badgeages", batch.size(), e);
+              batch.forEach(write -> write.result().tryEmitError(e));
+              return Mono.empty();
+            })
+        .then();
+  }
+
+  private record PendingWrite(BadgeRecord badgeRecord, Sinks.One<BadgeRecord> result) {}
+}
@@ -0,0 +1,168 @@
+package fr.jixter.badgeuse.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+// Métriques applicatives exposées par /actuator/prometheus. Les durées sont mesurées de
+// l'abonnement jusqu'au signal terminal, le travail réactif ne commençant qu'à l'abonnement.
+@Component
+public class BadgeuseMetrics {
+
+  static final String OPERATION_TIMER = "badgeuse.operation";
+
+  private final MeterRegistry registry;
+  private final Counter acceptedPunches;
+  private final Counter rejectedPunches;
+  private final Counter duplicatedPunches;
+  private final Counter unmatchedRecords;
+  private final Counter detectedAnomalies;
+  private final DistributionSummary coalescedBatchSize;
+  private final Counter terminalRejections;
+  private final Counter employeeRejections;
+  private final Counter busyRejections;
+  private final Counter droppedPresenceChanges;
+
+  public BadgeuseMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    this.acceptedPunches = punchCounter("accepted");
+    this.rejectedPunches = punchCounter("rejected");
+    this.duplicatedPunches = punchCounter("duplicate");
+    this.unmatchedRecords =
+        Counter.builder("badgeuse.records.unmatched")
+            .description("Badgeages non appariés trouvés lors d'un calcul de temps")
+            .register(registry);
+    this.detectedAnomalies =
+        Counter.builder("badgeuse.anomalies.detected")
+            .description("Journées d'un employé dont les badgeages non appariés apparaissent ou"
+                + " augmentent")
+            .register(registry);
+    this.coalescedBatchSize =
+        DistributionSummary.builder("badgeuse.write.batch.size")
+            .description("Badgeages unitaires regroupés par insertMany")
+            .publishPercentileHistogram()
+            .register(registry);
+    this.terminalRejections = admissionCounter("terminal");
+    this.employeeRejections = admissionCounter("employee");
+    this.busyRejections = admissionCounter("busy");
+    this.droppedPresenceChanges =
+        Counter.builder("badgeuse.presence.dropped")
+            .description("Changements de statut non publiés aux abonnés du tableau de présence")
+            .register(registry);
+  }
+
+  public <T> Mono<T> timed(String service, String operation, Mono<T> mono) {
+    return Mono.defer(
+        () -> {
+          Timer.Sample sample = Timer.start(registry);
+          return mono.doFinally(signal -> stop(sample, service, operation, signal));
+        });
+  }
+
+  public <T> Flux<T> timed(String service, String operation, Flux<T> flux) {
+    return Flux.defer(
+        () -> {
+          Timer.Sample sample = Timer.start(registry);
+          return flux.doFinally(signal -> stop(sample, service, operation, signal));
+        });
+  }
+
+  public void punchesAccepted(int count) {
+    acceptedPunches.increment(count);
+  }
+
+  public void punchesRejected(int count) {
+    rejectedPunches.increment(count);
+  }
+
+  // Rejeux d'un badgeage déjà enregistré (même eventId)
+  public void punchesDuplicated(int count) {
+    duplicatedPunches.increment(count);
+  }
+
+  public void unmatchedRecordsFound(long count) {
+    unmatchedRecords.increment(count);
+  }
+
+  public void anomalyDetected() {
+    detectedAnomalies.increment();
+  }
+
+  // Modifications reçues d'un flux de modifications et appliquées aux projections de l'instance
+  public void changeEventApplied(String collection) {
+    Counter.builder("badgeuse.change.events")
+        .description("Modifications appliquées depuis les flux de modifications MongoDB")
+        .tag("collection", collection)
+        .register(registry)
+        .increment();
+  }
+
+  // Projections reconstruites faute de pouvoir reprendre un flux de modifications
+  public void changeStreamReset(String collection) {
+    Counter.builder("badgeuse.change.resets")
+        .description("Reconstructions des projections après la perte d'un flux de modifications")
+        .tag("collection", collection)
+        .register(registry)
+        .increment();
+  }
+
+  public void presenceChangeDropped() {
+    droppedPresenceChanges.increment();
+  }
+
+  public void coalescedBatchWritten(int size) {
+    coalescedBatchSize.record(size);
+  }
+
+  // Badgeages refusés par le contrôle d'admission : débit d'un terminal, débit d'un employé (y
+  // compris pour un badgeage d'un lot) ou écritures simultanées
+  public void terminalRejected() {
+    terminalRejections.increment();
+  }
+
+  public void employeeRejected() {
+    employeeRejections.increment();
+  }
+
+  public void busyRejected() {
+    busyRejections.increment();
+  }
+
+  private Counter admissionCounter(String reason) {
+    return Counter.builder("badgeuse.admission.rejected")
+        .description(
+            "Requêtes de badgeage refusées (429) et badgeages d'un lot refusés, par motif")
+        .tag("reason", reason)
+        .register(registry);
+  }
+
+  private Counter punchCounter(String result) {
+    return Counter.builder("badgeuse.punches")
+        .description("Badgeages reçus, par résultat")
+        .tag("result", result)
+        .register(registry);
+  }
+
+  private void stop(Timer.Sample sample, String service, String operation, SignalType signal) {
+    String outcome =
+        switch (signal) {
+          case ON_COMPLETE -> "success";
+          case ON_ERROR -> "error";
+          default -> "cancelled";
+        };
+    // Histogramme publié pour calculer les percentiles (p99) côté Prometheus
+    sample.stop(
+        Timer.builder(OPERATION_TIMER)
+            .description("Durée des opérations des services")
+            .tag("service", service)
+            .tag("operation", operation)
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(registry));
+  }
+}
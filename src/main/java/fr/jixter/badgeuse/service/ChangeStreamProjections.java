@@ -0,0 +1,285 @@
+package fr.jixter.badgeuse.service;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.model.changestream.OperationType;
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.config.BadgeuseProperties.BadgeStorage;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.DailyAggregate;
+import fr.jixter.badgeuse.domain.Employee;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+// Flux de modifications MongoDB (badgeuse.change-streams.enabled, replica set requis) : les
+// badgeages insérés par n'importe quelle instance alimentent les BadgeRecordProjection de celle-ci,
+// les modifications d'employés évincent EmployeeCache. Chaque flux reprend après une coupure au
+// jeton du dernier événement appliqué ; si l'historique ne le contient plus, ou si la collection
+// est renommée ou supprimée, les projections sont reconstruites et le flux repart de l'instant.
+// Les agrégats journaliers sont recalculés et persistés par l'instance qui écrit : un badgeage
+// reçu d'une autre instance peut faire recalculer un rapport depuis un agrégat pas encore à jour.
+// Avec le cache des rapports, les modifications de daily_aggregates évincent donc aussi les
+// rapports de leur jour et de leur mois.
+@Component
+public class ChangeStreamProjections {
+
+  private static final Logger logger = LoggerFactory.getLogger(ChangeStreamProjections.class);
+  // ChangeStreamFatalError, ChangeStreamHistoryLost : jeton de reprise inutilisable
+  private static final Set<Integer> HISTORY_LOST = Set.of(280, 286);
+  private static final Duration TIMEOUT = Duration.ofSeconds(30);
+  private static final Document BADGE_EVENTS =
+      new Document(
+          "$match",
+          new Document(
+              "operationType",
+              new Document(
+                  "$in",
+                  List.of(OperationType.INSERT.getValue(), OperationType.INVALIDATE.getValue()))));
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final BadgeuseProperties properties;
+  private final List<BadgeRecordProjection> projections;
+  private final EmployeeCache employeeCache;
+  private final TimeReportCache reportCache;
+  private final BadgeuseMetrics metrics;
+  // Jeton de reprise du dernier événement appliqué, par collection
+  private final Map<String, BsonValue> resumeTokens = new ConcurrentHashMap<>();
+  // Instant d'ouverture des flux, tant qu'aucun événement n'a été appliqué
+  private final Map<String, BsonTimestamp> startTimes = new ConcurrentHashMap<>();
+  private final List<Disposable> subscriptions = new ArrayList<>();
+
+  public ChangeStreamProjections(
+      ReactiveMongoTemplate mongoTemplate,
+      BadgeuseProperties properties,
+      List<BadgeRecordProjection> projections,
+      EmployeeCache employeeCache,
+      TimeReportCache reportCache,
+      BadgeuseMetrics metrics) {
+    this.mongoTemplate = mongoTemplate;
+    this.properties = properties;
+    this.projections = projections;
+    this.employeeCache = employeeCache;
+    this.reportCache = reportCache;
+    this.metrics = metrics;
+  }
+
+  // Avant le chargement du tableau de présence (PresenceBoard.warmUp, sans @Order) : les flux
+  // partent de l'instant lu ici, de façon synchrone, et rejouent donc un badgeage écrit par une
+  // autre instance pendant ce chargement, même s'ils ne s'ouvrent qu'après
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(0)
+  public void start() {
+    if (!properties.getChangeStreams().isEnabled()) {
+      return;
+    }
+    BsonTimestamp startAt = operationTime().block(TIMEOUT);
+    boolean aggregateEvents =
+        properties.getAggregates().isEnabled() && properties.getReportCache().isEnabled();
+    if (startAt != null) {
+      startTimes.put(mongoTemplate.getCollectionName(BadgeRecord.class), startAt);
+      startTimes.put(mongoTemplate.getCollectionName(Employee.class), startAt);
+      if (aggregateEvents) {
+        startTimes.put(mongoTemplate.getCollectionName(DailyAggregate.class), startAt);
+      }
+    }
+    if (properties.getMongo().getBadgeStorage() == BadgeStorage.TIME_SERIES) {
+      // Les collections time-series n'ont pas de flux de modifications
+      logger.warn(
+          "badge_records est time-series : badgeages des autres instances non suivis, seuls les"
+              + " employés le sont");
+    } else {
+      subscriptions.add(badgeRecordEvents().subscribe());
+    }
+    subscriptions.add(employeeEvents().subscribe());
+    if (aggregateEvents) {
+      subscriptions.add(aggregateEvents().subscribe());
+    }
+  }
+
+  // Dernière opération connue du replica set, renvoyée avec la réponse de chaque commande
+  private Mono<BsonTimestamp> operationTime() {
+    return mongoTemplate
+        .executeCommand(new Document("ping", 1))
+        .mapNotNull(reply -> reply.get("operationTime", BsonTimestamp.class));
+  }
+
+  @PreDestroy
+  public void stop() {
+    subscriptions.forEach(Disposable::dispose);
+  }
+
+  Flux<ChangeStreamEvent<BadgeRecord>> badgeRecordEvents() {
+    return watch(
+        mongoTemplate.getCollectionName(BadgeRecord.class),
+        BADGE_EVENTS,
+        BadgeRecord.class,
+        this::applyBadgeRecord,
+        this::resetProjections);
+  }
+
+  Flux<ChangeStreamEvent<Document>> employeeEvents() {
+    return watch(
+        mongoTemplate.getCollectionName(Employee.class),
+        null,
+        Document.class,
+        this::applyEmployeeChange,
+        () -> Mono.fromRunnable(employeeCache::invalidateAll));
+  }
+
+  Flux<ChangeStreamEvent<Document>> aggregateEvents() {
+    return watch(
+        mongoTemplate.getCollectionName(DailyAggregate.class),
+        null,
+        Document.class,
+        this::applyAggregateChange,
+        reportCache::reset);
+  }
+
+  // Événements appliqués, dans l'ordre du flux. Un événement n'est acquitté (jeton conservé)
+  // qu'une fois appliqué ; une erreur de projection est journalisée sans interrompre le flux.
+  private <T> Flux<ChangeStreamEvent<T>> watch(
+      String collection,
+      Document filter,
+      Class<T> type,
+      Function<ChangeStreamEvent<T>, Mono<Void>> apply,
+      Supplier<Mono<Void>> reset) {
+    return Flux.defer(
+            () -> mongoTemplate.changeStream(collection, options(collection, filter), type))
+        .concatMap(
+            event -> {
+              if (event.getOperationType() == OperationType.INVALIDATE) {
+                logger.warn("Flux de modifications de {} invalidé, reconstruction", collection);
+                resumeTokens.remove(collection);
+                startTimes.remove(collection);
+                return restart(collection, reset).then(Mono.<ChangeStreamEvent<T>>empty());
+              }
+              return Mono.defer(() -> apply.apply(event))
+                  .onErrorResume(
+                      e -> {
+                        logger.error(
+                            "Échec de l'application d'une modification de {}", collection, e);
+                        return Mono.empty();
+                      })
+                  .then(
+                      Mono.fromRunnable(
+                          () -> {
+                            resumeTokens.put(collection, event.getResumeToken());
+                            metrics.changeEventApplied(collection);
+                          }))
+                  .thenReturn(event);
+            })
+        .onErrorResume(
+            ChangeStreamProjections::isHistoryLost,
+            e -> {
+              logger.warn(
+                  "Historique des modifications de {} perdu, reconstruction", collection, e);
+              resumeTokens.remove(collection);
+              startTimes.remove(collection);
+              return restart(collection, reset).then(Mono.error(e));
+            })
+        // Un flux invalidé se termine : il est rouvert
+        .repeat()
+        .retryWhen(
+            Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                .maxBackoff(Duration.ofMinutes(1))
+                // Délai remis à zéro dès qu'un événement est reçu
+                .transientErrors(true)
+                .doBeforeRetry(
+                    signal ->
+                        logger.warn(
+                            "Flux de modifications de {} interrompu, reprise",
+                            collection,
+                            signal.failure())));
+  }
+
+  private ChangeStreamOptions options(String collection, Document filter) {
+    ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder();
+    if (filter != null) {
+      options.filter(filter);
+    }
+    BsonValue resumeToken = resumeTokens.get(collection);
+    BsonTimestamp startTime = startTimes.get(collection);
+    if (resumeToken != null) {
+      options.resumeAfter(resumeToken);
+    } else if (startTime != null) {
+      options.resumeAt(startTime);
+    }
+    return options.build();
+  }
+
+  private Mono<Void> restart(String collection, Supplier<Mono<Void>> reset) {
+    return Mono.fromRunnable(() -> metrics.changeStreamReset(collection)).then(reset.get());
+  }
+
+  private Mono<Void> applyBadgeRecord(ChangeStreamEvent<BadgeRecord> event) {
+    BadgeRecord badgeRecord = event.getBody();
+    if (badgeRecord == null) {
+      return Mono.empty();
+    }
+    List<BadgeRecord> records = List.of(badgeRecord);
+    return Flux.fromIterable(projections)
+        .concatMap(projection -> projection.onBadgeRecorded(records))
+        .then();
+  }
+
+  // Création, modification ou suppression : l'employé est relu à sa prochaine utilisation
+  private Mono<Void> applyEmployeeChange(ChangeStreamEvent<Document> event) {
+    BsonDocument documentKey = event.getRaw() != null ? event.getRaw().getDocumentKey() : null;
+    if (documentKey == null || !documentKey.containsKey("_id")) {
+      return Mono.empty();
+    }
+    BsonValue id = documentKey.get("_id");
+    return Mono.fromRunnable(
+        () ->
+            employeeCache.invalidate(
+                id.isObjectId()
+                    ? id.asObjectId().getValue().toHexString()
+                    : id.asString().getValue()));
+  }
+
+  // Agrégat écrit ou supprimé par n'importe quelle instance, désigné par son identifiant
+  // "employeeId_yyyy-MM-dd" : les rapports calculés avant lui sont évincés
+  private Mono<Void> applyAggregateChange(ChangeStreamEvent<Document> event) {
+    BsonDocument documentKey = event.getRaw() != null ? event.getRaw().getDocumentKey() : null;
+    if (documentKey == null || !documentKey.isString("_id")) {
+      return Mono.empty();
+    }
+    String id = documentKey.getString("_id").getValue();
+    int separator = id.lastIndexOf('_');
+    return reportCache.onAggregateChanged(
+        id.substring(0, separator), LocalDate.parse(id.substring(separator + 1)));
+  }
+
+  private Mono<Void> resetProjections() {
+    return Flux.fromIterable(projections).concatMap(BadgeRecordProjection::reset).then();
+  }
+
+  private static boolean isHistoryLost(Throwable e) {
+    return e instanceof MongoException mongoException
+        && HISTORY_LOST.contains(mongoException.getCode());
+  }
+}
@@ -0,0 +1,164 @@
+package fr.jixter.badgeuse.service;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.DailyAggregate;
+import fr.jixter.badgeuse.repository.BadgePartitions;
+import fr.jixter.badgeuse.repository.ReactiveBadgeRepository;
+import fr.jixter.badgeuse.repository.ReactiveDailyAggregateRepository;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Service
+@Order(BadgeRecordListener.AGGREGATES_ORDER)
+@AllArgsConstructor
+public class DailyAggregateService implements BadgeRecordListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(DailyAggregateService.class);
+  private static final int REBUILD_CONCURRENCY = 8;
+  private static final PairingSummary NO_PUNCH = new PairingSummary(0, 0, 0);
+
+  private final ReactiveBadgeRepository badgeRepository;
+  private final ReactiveDailyAggregateRepository aggregateRepository;
+  private final BadgeuseProperties properties;
+  private final BadgePartitions partitions;
+  private final AnomalyTracker anomalyTracker;
+
+  public boolean isEnabled() {
+    return properties.getAggregates().isEnabled();
+  }
+
+  @Override
+  public Mono<Void> onBadgeRecorded(List<BadgeRecord> records) {
+    if (!isEnabled()) {
+      return Mono.empty();
+    }
+    // Un seul recalcul par couple employé / jour, même pour un lot de plusieurs badgeages
+    return Flux.fromIterable(records)
+        .distinct(DailyAggregateService::aggregateIdOf)
+        .concatMap(badgeRecord -> refreshDay(badgeRecord.getEmployeeId(), dayOf(badgeRecord)))
+        .then();
+  }
+
+  // Recalcule l'agrégat d'une seule journée à partir des badgeages bruts, lus sur le primaire pour
+  // inclure celui qui vient d'être écrit ; ses anomalies sont relevées dès l'écriture. Les jours de
+  // ses badgeages voisins sont recalculés ensuite : un OUT fermant une présence ouverte la veille
+  // en change les minutes, attribuées au jour du IN.
+  public Mono<Void> refreshDay(String employeeId, LocalDate date) {
+    return refresh(employeeId, date)
+        .flatMapMany(Flux::fromIterable)
+        .concatMap(day -> refresh(employeeId, day))
+        .then();
+  }
+
+  // Recalcule une journée et renvoie les autres jours de ses badgeages voisins. Le nombre de
+  // badgeages du mois est lu en premier : l'agrégat reflète au moins ces badgeages.
+  private Mono<Set<LocalDate>> refresh(String employeeId, LocalDate date) {
+    LocalDateTime start = date.atStartOfDay();
+    LocalDateTime end = date.plusDays(1).atStartOfDay();
+    return badgeRepository
+        .countInMonth(employeeId, YearMonth.from(date))
+        .zipWhen(count -> badgeRepository.findNeighbours(employeeId, start, end).collectList())
+        .flatMap(
+            read ->
+                badgeRepository
+                    .findRange(employeeId, start, end)
+                    .reduce(new DailyPairing(read.getT2(), start), DailyPairing::accept)
+                    .map(pairing -> pairing.finish().getOrDefault(date, NO_PUNCH))
+                    .doOnNext(
+                        summary ->
+                            anomalyTracker.record(
+                                employeeId, date, date.plusDays(1), summary.unmatchedDays()))
+                    .flatMap(
+                        summary ->
+                            aggregateRepository.saveIfNewer(
+                                toAggregate(employeeId, date, summary, read.getT1())))
+                    .thenReturn(
+                        read.getT2().stream()
+                            .map(DailyAggregateService::dayOf)
+                            .filter(day -> !day.equals(date))
+                            .collect(Collectors.toSet())));
+  }
+
+  public Mono<DailyAggregate> findDay(String employeeId, LocalDate date) {
+    return aggregateRepository.findById(DailyAggregate.idOf(employeeId, date));
+  }
+
+  // Agrégats de l'intervalle [from, to[
+  public Flux<DailyAggregate> findRange(String employeeId, LocalDate from, LocalDate to) {
+    return aggregateRepository.findByEmployeeIdAndDateGreaterThanEqualAndDateLessThan(
+        employeeId, from, to);
+  }
+
+  // Régénère tous les agrégats depuis badge_records, parcourus dans l'ordre de l'index
+  // (employeeId, timestamp) pour ne garder en mémoire qu'un mois d'un employé à la fois, les paires
+  // ne franchissant pas un changement de mois. Les agrégats des mois archivés, dont les badgeages
+  // ne sont plus dans badge_records, sont gardés.
+  public Mono<Long> rebuild() {
+    logger.info("Reconstruction des agrégats journaliers depuis badge_records");
+    return partitions
+        .state()
+        .flatMap(
+            state ->
+                state.archivedBeforeMonth() == null
+                    ? aggregateRepository.deleteAll()
+                    : aggregateRepository
+                        .deleteByDateGreaterThanEqual(state.archivedBeforeMonth().atDay(1))
+                        .then())
+        .thenMany(
+            badgeRepository
+                .findAllByOrderByEmployeeIdAscTimestampAsc()
+                .bufferUntilChanged(
+                    badgeRecord ->
+                        badgeRecord.getEmployeeId()
+                            + "_"
+                            + YearMonth.from(badgeRecord.getTimestamp()))
+                .flatMapIterable(
+                    records -> {
+                      DailyPairing pairing = new DailyPairing();
+                      records.forEach(pairing::accept);
+                      String employeeId = records.get(0).getEmployeeId();
+                      return pairing.finish().entrySet().stream()
+                          .map(
+                              day ->
+                                  toAggregate(
+                                      employeeId, day.getKey(), day.getValue(), records.size()))
+                          .toList();
+                    }))
+        .flatMap(aggregateRepository::save, REBUILD_CONCURRENCY)
+        .count()
+        .doOnNext(count -> logger.info("{} agrégats journaliers reconstruits", count));
+  }
+
+  private static DailyAggregate toAggregate(
+      String employeeId, LocalDate date, PairingSummary summary, long monthPunchCount) {
+    return DailyAggregate.builder()
+        .id(DailyAggregate.idOf(employeeId, date))
+        .employeeId(employeeId)
+        .date(date)
+        .workedMinutes(summary.totalMinutes())
+        .unmatchedCount(summary.unmatchedCount())
+        .punchCount(summary.punchCount())
+        .monthPunchCount(monthPunchCount)
+        .build();
+  }
+
+  private static String aggregateIdOf(BadgeRecord badgeRecord) {
+    return DailyAggregate.idOf(badgeRecord.getEmployeeId(), dayOf(badgeRecord));
+  }
+
+  private static LocalDate dayOf(BadgeRecord badgeRecord) {
+    return badgeRecord.getTimestamp().toLocalDate();
+  }
+}
@@ -0,0 +1,104 @@
+package fr.jixter.badgeuse.service;
+
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.BadgeType;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Appariement jour par jour d'une suite de badgeages triés par horodatage, avec les règles de
+// BadgePairing : un IN immédiatement suivi d'un OUT forme une paire, y compris d'un jour à
+// l'autre. Les minutes d'une paire reviennent au jour de son IN, un badgeage non apparié compte
+// pour son propre jour. Comme les rapports mensuels, qui n'apparient que les badgeages du mois, une
+// paire ne franchit pas un changement de mois : la somme des journées d'un mois est ainsi égale au
+// rapport du mois.
+// Pour une plage partielle, les badgeages voisins de la plage (findNeighbours) ne sont pas comptés
+// mais peuvent former une paire avec son premier ou son dernier badgeage.
+public class DailyPairing {
+
+  private final Map<LocalDate, Day> days = new HashMap<>();
+  private BadgeRecord pending;
+  // Badgeage en attente antérieur à la plage, dont le jour n'est pas compté
+  private boolean pendingOutside;
+  // Premier badgeage après la plage, null s'il n'y en a pas
+  private BadgeRecord next;
+
+  public DailyPairing() {}
+
+  // Plage commençant à start, entourée des badgeages voisins donnés
+  public DailyPairing(List<BadgeRecord> neighbours, LocalDateTime start) {
+    for (BadgeRecord neighbour : neighbours) {
+      if (neighbour.getTimestamp().isBefore(start)) {
+        pending = neighbour;
+        pendingOutside = true;
+      } else {
+        next = neighbour;
+      }
+    }
+  }
+
+  public DailyPairing accept(BadgeRecord badgeRecord) {
+    days.computeIfAbsent(dayOf(badgeRecord), day -> new Day()).punches++;
+    if (pairs(pending, badgeRecord)) {
+      if (!pendingOutside) {
+        days.get(dayOf(pending)).minutes +=
+            Duration.between(pending.getTimestamp(), badgeRecord.getTimestamp()).toMinutes();
+      }
+      pending = null;
+    } else {
+      unmatchedPending();
+      pending = badgeRecord;
+    }
+    pendingOutside = false;
+    return this;
+  }
+
+  // Résumé de chaque journée ayant au moins un badgeage
+  public Map<LocalDate, PairingSummary> finish() {
+    if (next != null && !pendingOutside && pairs(pending, next)) {
+      days.get(dayOf(pending)).minutes +=
+          Duration.between(pending.getTimestamp(), next.getTimestamp()).toMinutes();
+      pending = null;
+    }
+    unmatchedPending();
+    pending = null;
+    Map<LocalDate, PairingSummary> summaries = new HashMap<>();
+    days.forEach(
+        (day, totals) ->
+            summaries.put(
+                day,
+                new PairingSummary(
+                    totals.minutes,
+                    totals.unmatched,
+                    totals.punches,
+                    totals.unmatched > 0 ? Map.of(day, totals.unmatched) : Map.of())));
+    return summaries;
+  }
+
+  private static boolean pairs(BadgeRecord in, BadgeRecord out) {
+    return in != null
+        && BadgeType.IN.equals(in.getType())
+        && BadgeType.OUT.equals(out.getType())
+        && YearMonth.from(in.getTimestamp()).equals(YearMonth.from(out.getTimestamp()));
+  }
+
+  private void unmatchedPending() {
+    if (pending != null && !pendingOutside) {
+      days.get(dayOf(pending)).unmatched++;
+    }
+  }
+
+  private static LocalDate dayOf(BadgeRecord badgeRecord) {
+    return badgeRecord.getTimestamp().toLocalDate();
+  }
+
+  private static final class Day {
+    private long minutes;
+    private int unmatched;
+    private int punches;
+  }
+}
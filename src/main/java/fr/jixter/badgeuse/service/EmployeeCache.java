@@ -0,0 +1,95 @@
+package fr.jixter.badgeuse.service;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.Employee;
+import fr.jixter.badgeuse.repository.ReactiveEmployeeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+// Cache borné devant ReactiveEmployeeRepository. Les identifiants inconnus sont aussi mis en
+// cache (Optional vide) pour ne pas interroger MongoDB à chaque badgeage d'un badge invalide.
+@Service
+public class EmployeeCache implements MeterBinder {
+
+  private final AsyncLoadingCache<String, Optional<Employee>> cache;
+
+  public EmployeeCache(
+      ReactiveEmployeeRepository employeeRepository, BadgeuseProperties properties) {
+    BadgeuseProperties.EmployeeCache settings = properties.getEmployeeCache();
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumSize(settings.getMaximumSize())
+            .expireAfter(new EmployeeExpiry(settings.getTtl(), settings.getNegativeTtl()))
+            .recordStats()
+            .buildAsync(
+                (id, executor) ->
+                    employeeRepository
+                        .findById(id)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .toFuture());
+  }
+
+  // Employé correspondant à l'identifiant, vide s'il n'existe pas
+  public Mono<Employee> findById(String id) {
+    // L'annulation d'un appelant ne doit pas annuler le chargement partagé avec les autres
+    return Mono.fromFuture(() -> cache.get(id), true).flatMap(Mono::justOrEmpty);
+  }
+
+  public void put(Employee employee) {
+    cache.put(employee.getId(), CompletableFuture.completedFuture(Optional.of(employee)));
+  }
+
+  public void invalidate(String id) {
+    cache.synchronous().invalidate(id);
+  }
+
+  public void invalidateAll() {
+    cache.synchronous().invalidateAll();
+  }
+
+  public CacheStats stats() {
+    return cache.synchronous().stats();
+  }
+
+  public long size() {
+    return cache.synchronous().estimatedSize();
+  }
+
+  // Statistiques du cache publiées sous les métriques cache.* (cache="employees")
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, cache, "employees");
+  }
+
+  private record EmployeeExpiry(Duration ttl, Duration negativeTtl)
+      implements Expiry<String, Optional<Employee>> {
+
+    @Override
+    public long expireAfterCreate(String id, Optional<Employee> employee, long currentTime) {
+      return (employee.isPresent() ? ttl : negativeTtl).toNanos();
+    }
+
+    @Override
+    public long expireAfterUpdate(
+        String id, Optional<Employee> employee, long currentTime, long currentDuration) {
+      return expireAfterCreate(id, employee, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(
+        String id, Optional<Employee> employee, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
@@ -2,9 +2,16 @@ package fr.jixter.badgeuse.service;
 
 import fr.jixter.badgeuse.domain.Employee;
 import fr.jixter.badgeuse.domain.dto.EmployeeDto;
+import fr.jixter.badgeuse.domain.dto.EmployeePage;
+import fr.jixter.badgeuse.exception.InvalidCursorException;
 import fr.jixter.badgeuse.exception.ResourceNotFoundException;
 import fr.jixter.badgeuse.repository.ReactiveEmployeeRepository;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
 import lombok.AllArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -13,37 +20,112 @@ import reactor.core.publisher.Mono;
 @AllArgsConstructor
 public class EmployeeService {
 
+  private static final String METRICS_SERVICE = "employee";
+  private static final int MAX_PAGE_SIZE = 500;
+
   private final ReactiveEmployeeRepository employeeRepository;
+  private final EmployeeCache employeeCache;
+  private final BadgeuseMetrics metrics;
 
   public Mono<Employee> createEmployee(EmployeeDto employeeDto) {
     Employee employee = new Employee();
     employee.setName(employeeDto.getName());
     employee.setEmail(employeeDto.getEmail());
-    return employeeRepository.save(employee);
+    return metrics.timed(
+        METRICS_SERVICE,
+        "createEmployee",
+        employeeRepository.save(employee).doOnNext(employeeCache::put));
   }
 
   public Mono<Employee> getEmployeeById(String id) {
-    return employeeRepository
-        .findById(id)
-        .switchIfEmpty(
-            Mono.error(new ResourceNotFoundException("Employee not found with id " + id)));
+    return metrics.timed(METRICS_SERVICE, "getEmployeeById", findEmployee(id));
   }
 
   public Mono<Employee> updateEmployee(String id, EmployeeDto employeeDto) {
-    return getEmployeeById(id)
-        .flatMap(
-            existingEmployee -> {
-              existingEmployee.setName(employeeDto.getName());
-              existingEmployee.setEmail(employeeDto.getEmail());
-              return employeeRepository.save(existingEmployee);
-            });
+    Mono<Employee> updated =
+        findEmployee(id)
+            .flatMap(
+                existingEmployee -> {
+                  // Nouvelle instance : celle du cache ne doit pas être modifiée avant l'écriture
+                  Employee employee =
+                      Employee.builder()
+                          .id(existingEmployee.getId())
+                          .name(employeeDto.getName())
+                          .email(employeeDto.getEmail())
+                          .build();
+                  return employeeRepository.save(employee);
+                })
+            .doOnNext(employeeCache::put);
+    return metrics.timed(METRICS_SERVICE, "updateEmployee", updated);
   }
 
   public Mono<Void> deleteEmployee(String id) {
-    return getEmployeeById(id).flatMap(employeeRepository::delete);
+    Mono<Void> deleted =
+        findEmployee(id)
+            .flatMap(employeeRepository::delete)
+            .then(Mono.fromRunnable(() -> employeeCache.invalidate(id)));
+    return metrics.timed(METRICS_SERVICE, "deleteEmployee", deleted);
   }
 
-  public Flux<Employee> getAllEmployees() {
-    return employeeRepository.findAll();
+  // Page suivant le curseur (première page si absent). Un élément de plus que la taille
+  // demandée est lu pour savoir s'il reste des employés après la page.
+  public Mono<EmployeePage> getEmployeesPage(String cursor, int size) {
+    int pageSize = Math.clamp(size, 1, MAX_PAGE_SIZE);
+    Mono<EmployeePage> page =
+        employeesAfter(cursor, Limit.of(pageSize + 1))
+            .collectList()
+            .map(
+                employees -> {
+                  if (employees.size() <= pageSize) {
+                    return EmployeePage.builder().items(employees).build();
+                  }
+                  List<Employee> items = employees.subList(0, pageSize);
+                  return EmployeePage.builder()
+                      .items(items)
+                      .nextCursor(encodeCursor(items.get(pageSize - 1).getId()))
+                      .build();
+                });
+    return metrics.timed(METRICS_SERVICE, "getEmployeesPage", page);
+  }
+
+  // Tous les employés après le curseur, lus au rythme de la demande du client
+  public Flux<Employee> streamEmployees(String cursor) {
+    return metrics.timed(
+        METRICS_SERVICE, "streamEmployees", employeesAfter(cursor, Limit.unlimited()));
+  }
+
+  private Flux<Employee> employeesAfter(String cursor, Limit limit) {
+    return Mono.fromCallable(() -> cursor == null || cursor.isEmpty() ? "" : decodeCursor(cursor))
+        .flatMapMany(
+            lastId ->
+                lastId.isEmpty()
+                    ? employeeRepository.findAllByOrderByIdAsc(limit)
+                    : employeeRepository.findByIdGreaterThanOrderByIdAsc(lastId, limit));
+  }
+
+  // Curseur opaque : identifiant du dernier employé de la page, encodé en base64 URL
+  static String encodeCursor(String id) {
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(id.getBytes(StandardCharsets.UTF_8));
+  }
+
+  static String decodeCursor(String cursor) {
+    try {
+      String id = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      if (ObjectId.isValid(id)) {
+        return id;
+      }
+    } catch (IllegalArgumentException e) {
+      // Base64 invalide : traité comme un curseur inconnu
+    }
+    throw new InvalidCursorException("Invalid cursor " + cursor);
+  }
+
+  private Mono<Employee> findEmployee(String id) {
+    return employeeCache
+        .findById(id)
+        .switchIfEmpty(
+            Mono.error(new ResourceNotFoundException("Employee not found with id " + id)));
   }
 }
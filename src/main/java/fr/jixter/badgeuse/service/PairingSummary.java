@@ -0,0 +1,14 @@
+package fr.jixter.badgeuse.service;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+// Résultat de l'appariement IN/OUT d'une suite de badgeages. unmatchedDays : nombre de badgeages
+// non appariés par jour, vide si tous sont appariés.
+public record PairingSummary(
+    long totalMinutes, int unmatchedCount, int punchCount, Map<LocalDate, Integer> unmatchedDays) {
+
+  public PairingSummary(long totalMinutes, int unmatchedCount, int punchCount) {
+    this(totalMinutes, unmatchedCount, punchCount, Map.of());
+  }
+}
@@ -0,0 +1,177 @@
+package fr.jixter.badgeuse.service;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.BadgeType;
+import fr.jixter.badgeuse.domain.dto.EmployeeStatus;
+import fr.jixter.badgeuse.repository.ReactiveBadgeRepository;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+// Tableau de présence en mémoire : dernier badgeage connu de chaque employé. Chargé au
+// démarrage puis tenu à jour par les écritures (celles des autres instances par
+// ChangeStreamProjections), il répond aux demandes de statut sans accès à MongoDB. Désactivé,
+// les statuts et la présence sont lus dans MongoDB.
+@Service
+@Order(BadgeRecordListener.PRESENCE_ORDER)
+public class PresenceBoard implements BadgeRecordProjection {
+
+  private static final Logger logger = LoggerFactory.getLogger(PresenceBoard.class);
+
+  private final ReactiveBadgeRepository badgeRepository;
+  private final BadgeuseProperties properties;
+  private final BadgeuseMetrics metrics;
+  // ConcurrentHashMap : verrouillage par segment, lectures sans verrou
+  private final Map<String, EmployeeStatus> latest = new ConcurrentHashMap<>();
+  // Les écritures de cette instance, le regroupement des écritures et les flux de modifications
+  // publient depuis des threads différents : les émissions sont sérialisées sur ce sink, qui
+  // refuserait sinon les émissions concurrentes (FAIL_NON_SERIALIZED)
+  private final Sinks.Many<EmployeeStatus> changes =
+      Sinks.many().multicast().directBestEffort();
+  private volatile boolean ready = false;
+
+  public PresenceBoard(
+      ReactiveBadgeRepository badgeRepository,
+      BadgeuseProperties properties,
+      BadgeuseMetrics metrics) {
+    this.badgeRepository = badgeRepository;
+    this.properties = properties;
+    this.metrics = metrics;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmUp() {
+    if (!properties.getPresence().isEnabled()) {
+      return;
+    }
+    if (!properties.getChangeStreams().isEnabled()) {
+      logger.warn(
+          "Tableau de présence sans flux de modifications : les badgeages reçus par d'autres"
+              + " instances n'y figurent pas (badgeuse.change-streams.enabled)");
+    }
+    badgeRepository
+        .findLatestPerEmployee(null, null)
+        .doOnNext(status -> apply(status, false))
+        .then()
+        .retryWhen(
+            Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                .maxBackoff(Duration.ofMinutes(1)))
+        .subscribe(
+            unused -> {},
+            e -> logger.error("Échec du chargement du tableau de présence", e),
+            () -> {
+              ready = true;
+              logger.info("Tableau de présence chargé : {} employés", latest.size());
+            });
+  }
+
+  public boolean isEnabled() {
+    return properties.getPresence().isEnabled();
+  }
+
+  public boolean isReady() {
+    return ready;
+  }
+
+  @Override
+  public Mono<Void> onBadgeRecorded(List<BadgeRecord> records) {
+    records.forEach(
+        badgeRecord ->
+            apply(
+                EmployeeStatus.builder()
+                    .employeeId(badgeRecord.getEmployeeId())
+                    .type(badgeRecord.getType())
+                    .timestamp(badgeRecord.getTimestamp())
+                    .build(),
+                true));
+    return Mono.empty();
+  }
+
+  // Rechargement depuis MongoDB ; les changements de statut manqués sont publiés
+  @Override
+  public Mono<Void> reset() {
+    if (!properties.getPresence().isEnabled()) {
+      return Mono.empty();
+    }
+    return badgeRepository
+        .findLatestPerEmployee(null, null)
+        .doOnNext(status -> apply(status, true))
+        .then();
+  }
+
+  // Statut à l'instant donné s'il peut être déduit du dernier badgeage connu, vide sinon
+  // (tableau pas encore chargé ou instant antérieur au dernier badgeage : l'historique reste
+  // dans MongoDB)
+  public Optional<BadgeType> statusAt(String employeeId, LocalDateTime timestamp) {
+    if (!ready) {
+      return Optional.empty();
+    }
+    EmployeeStatus status = latest.get(employeeId);
+    if (status == null) {
+      return Optional.of(BadgeType.OUT);
+    }
+    if (status.getTimestamp().isAfter(timestamp)) {
+      return Optional.empty();
+    }
+    return Optional.of(status.getType());
+  }
+
+  // Lu dans MongoDB tant que le tableau n'est pas chargé, ou s'il est désactivé
+  public Flux<EmployeeStatus> snapshot() {
+    return Flux.defer(
+        () ->
+            ready
+                ? Flux.fromIterable(latest.values())
+                : badgeRepository.findLatestPerEmployee(null, null));
+  }
+
+  // Changements de statut (passage IN <-> OUT) au fil de l'eau
+  public Flux<EmployeeStatus> changes() {
+    return changes.asFlux();
+  }
+
+  private void apply(EmployeeStatus status, boolean publish) {
+    EmployeeStatus[] previous = new EmployeeStatus[1];
+    EmployeeStatus current =
+        latest.compute(
+            status.getEmployeeId(),
+            (employeeId, existing) -> {
+              previous[0] = existing;
+              // Un badgeage antérieur au dernier connu (rejeu, saisie rétroactive) est ignoré
+              return existing != null && existing.getTimestamp().isAfter(status.getTimestamp())
+                  ? existing
+                  : status;
+            });
+    boolean changed =
+        current == status && (previous[0] == null || previous[0].getType() != status.getType());
+    if (publish && changed) {
+      publish(status);
+    }
+  }
+
+  private void publish(EmployeeStatus status) {
+    Sinks.EmitResult result;
+    synchronized (changes) {
+      result = changes.tryEmitNext(status);
+    }
+    // Sans abonné, il n'y a personne à prévenir : seuls les autres échecs sont des pertes
+    if (result.isFailure() && result != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+      metrics.presenceChangeDropped();
+      logger.warn("Changement de statut de {} non publié : {}", status.getEmployeeId(), result);
+    }
+  }
+}
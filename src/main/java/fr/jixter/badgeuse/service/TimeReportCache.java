@@ -0,0 +1,191 @@
+package fr.jixter.badgeuse.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.dto.TimeReport;
+import fr.jixter.badgeuse.repository.ReadRouting.Route;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+// Cache des rapports de temps par employé et par période (jour "yyyy-MM-dd" ou mois "yyyy-MM").
+// Un badgeage enregistré évince le rapport de son mois et ceux des jours de ce mois, dont les
+// voisins du badgeage dépendent aussi (présence franchissant minuit, comptée le jour de son IN), y
+// compris sur les autres instances lorsque les flux de modifications sont activés. Avec le
+// routage des lectures, un rapport recalculé moins de max-staleness après un badgeage de son mois
+// est lu sur le primaire : un secondaire en retard ne fige pas en cache un rapport antérieur au
+// badgeage.
+@Service
+@Order(BadgeRecordListener.REPORT_CACHE_ORDER)
+public class TimeReportCache implements BadgeRecordProjection, MeterBinder {
+
+  private static final Logger logger = LoggerFactory.getLogger(TimeReportCache.class);
+
+  private final boolean enabled;
+  private final AsyncCache<ReportKey, TimeReport> cache;
+  // Délai pendant lequel un secondaire peut ignorer un badgeage, nul sans routage des lectures
+  private final Duration staleness;
+  // Mois ayant reçu un badgeage depuis moins de staleness, par employé
+  private final Cache<ReportKey, Boolean> recentWrites;
+  // Fin de la fenêtre suivant une reconstruction, où toutes les périodes sont lues sur le primaire
+  private volatile long primaryUntil = System.nanoTime();
+
+  public TimeReportCache(BadgeuseProperties properties) {
+    BadgeuseProperties.ReportCache settings = properties.getReportCache();
+    this.enabled = settings.isEnabled();
+    if (enabled && !properties.getChangeStreams().isEnabled()) {
+      logger.warn(
+          "Cache des rapports sans flux de modifications : les badgeages reçus par d'autres"
+              + " instances n'évincent pas ses rapports (badgeuse.change-streams.enabled)");
+    }
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumSize(settings.getMaximumSize())
+            .expireAfter(new ReportExpiry(settings.getTtl(), settings.getOpenPeriodTtl()))
+            .recordStats()
+            .buildAsync();
+    this.staleness =
+        properties.getReadRouting().isEnabled()
+            ? properties.getReadRouting().getMaxStaleness()
+            : Duration.ZERO;
+    this.recentWrites =
+        Caffeine.newBuilder()
+            .maximumSize(settings.getMaximumSize())
+            .expireAfterWrite(staleness)
+            .build();
+  }
+
+  // Rapport en cache, sinon calculé une seule fois pour tous les appelants simultanés, par le
+  // loader et sur la route indiquée
+  public Mono<TimeReport> get(
+      String employeeId, String period, Function<Route, Mono<TimeReport>> loader) {
+    if (!enabled) {
+      return loader.apply(Route.REPORTING);
+    }
+    ReportKey key = new ReportKey(employeeId, period);
+    // Une entrée évincée pendant son calcul n'est pas réinsérée à la fin de celui-ci
+    return Mono.fromFuture(
+        () -> cache.get(key, (k, executor) -> loader.apply(routeFor(k)).toFuture()), true);
+  }
+
+  private Route routeFor(ReportKey key) {
+    boolean recentlyWritten =
+        recentWrites.getIfPresent(key.month()) != null || System.nanoTime() - primaryUntil < 0;
+    return recentlyWritten ? Route.PRIMARY : Route.REPORTING;
+  }
+
+  @Override
+  public Mono<Void> onBadgeRecorded(List<BadgeRecord> records) {
+    if (!enabled) {
+      return Mono.empty();
+    }
+    return Mono.fromRunnable(
+        () ->
+            records.forEach(
+                badgeRecord ->
+                    invalidate(
+                        badgeRecord.getEmployeeId(),
+                        YearMonth.from(badgeRecord.getTimestamp()))));
+  }
+
+  private void invalidate(String employeeId, YearMonth month) {
+    ReportKey key = new ReportKey(employeeId, month.toString());
+    if (!staleness.isZero()) {
+      recentWrites.put(key, Boolean.TRUE);
+    }
+    List<ReportKey> keys = new ArrayList<>();
+    keys.add(key);
+    for (int day = 1; day <= month.lengthOfMonth(); day++) {
+      keys.add(new ReportKey(employeeId, month.atDay(day).toString()));
+    }
+    cache.synchronous().invalidateAll(keys);
+  }
+
+  // Agrégat journalier écrit, éventuellement par une autre instance après qu'un badgeage y a fait
+  // recalculer un rapport : les rapports de son jour et de son mois sont évincés
+  public Mono<Void> onAggregateChanged(String employeeId, LocalDate date) {
+    if (!enabled) {
+      return Mono.empty();
+    }
+    return Mono.fromRunnable(
+        () ->
+            cache
+                .synchronous()
+                .invalidateAll(
+                    List.of(
+                        new ReportKey(employeeId, date.toString()),
+                        new ReportKey(employeeId, YearMonth.from(date).toString()))));
+  }
+
+  // Badgeages manqués inconnus : toutes les périodes sont relues sur le primaire pendant staleness
+  @Override
+  public Mono<Void> reset() {
+    return Mono.fromRunnable(
+        () -> {
+          primaryUntil = System.nanoTime() + staleness.toNanos();
+          cache.synchronous().invalidateAll();
+        });
+  }
+
+  public CacheStats stats() {
+    return cache.synchronous().stats();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, cache, "time-reports");
+  }
+
+  private record ReportKey(String employeeId, String period) {
+
+    // Clé du mois de la période
+    ReportKey month() {
+      return period.length() == 7 ? this : new ReportKey(employeeId, period.substring(0, 7));
+    }
+
+    // Jour ou mois entièrement écoulé
+    boolean isClosed() {
+      if (period.length() == 7) {
+        return YearMonth.parse(period).isBefore(YearMonth.now());
+      }
+      return LocalDate.parse(period).isBefore(LocalDate.now());
+    }
+  }
+
+  private record ReportExpiry(Duration ttl, Duration openPeriodTtl)
+      implements Expiry<ReportKey, TimeReport> {
+
+    @Override
+    public long expireAfterCreate(ReportKey key, TimeReport report, long currentTime) {
+      return (key.isClosed() ? ttl : openPeriodTtl).toNanos();
+    }
+
+    @Override
+    public long expireAfterUpdate(
+        ReportKey key, TimeReport report, long currentTime, long currentDuration) {
+      return expireAfterCreate(key, report, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(
+        ReportKey key, TimeReport report, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package fr.jixter.badgeuse.service;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.FrenchHoliday;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Service;
+
+// Calendrier des jours ouvrés : du lundi au vendredi, hors jours fériés et jours de fermeture.
+// Chaque année est calculée une fois sous forme de bitset (un bit par jour) accompagné du nombre
+// de jours ouvrés précédant chaque mot de 64 bits, ce qui permet de compter les jours ouvrés
+// d'un intervalle quelconque de l'année avec deux popcounts.
+@Service
+public class WorkingDayCalendar {
+
+  private final Set<FrenchHoliday> holidays;
+  private final List<LocalDate> closureDays;
+  private final Map<Integer, YearCalendar> years = new ConcurrentHashMap<>();
+
+  public WorkingDayCalendar(BadgeuseProperties properties) {
+    this.holidays = Set.copyOf(properties.getCalendar().getHolidays());
+    this.closureDays = List.copyOf(properties.getCalendar().getClosureDays());
+  }
+
+  public boolean isWorkingDay(LocalDate date) {
+    return year(date.getYear()).isWorkingDay(date.getDayOfYear() - 1);
+  }
+
+  public int workingDaysInMonth(YearMonth month) {
+    return workingDays(month.atDay(1), month.plusMonths(1).atDay(1));
+  }
+
+  // Jours ouvrés de l'intervalle [from, to[
+  public int workingDays(LocalDate from, LocalDate to) {
+    if (!from.isBefore(to)) {
+      return 0;
+    }
+    if (from.getYear() == to.getYear()) {
+      return year(from.getYear()).rank(to.getDayOfYear() - 1)
+          - year(from.getYear()).rank(from.getDayOfYear() - 1);
+    }
+    YearCalendar first = year(from.getYear());
+    int count = first.total() - first.rank(from.getDayOfYear() - 1);
+    for (int y = from.getYear() + 1; y < to.getYear(); y++) {
+      count += year(y).total();
+    }
+    return count + year(to.getYear()).rank(to.getDayOfYear() - 1);
+  }
+
+  private YearCalendar year(int year) {
+    return years.computeIfAbsent(year, this::buildYear);
+  }
+
+  private YearCalendar buildYear(int year) {
+    int length = LocalDate.ofYearDay(year, 1).lengthOfYear();
+    long[] words = new long[(length + 63) / 64];
+    for (LocalDate day = LocalDate.ofYearDay(year, 1); day.getYear() == year; ) {
+      if (day.getDayOfWeek() != DayOfWeek.SATURDAY && day.getDayOfWeek() != DayOfWeek.SUNDAY) {
+        int index = day.getDayOfYear() - 1;
+        words[index >>> 6] |= 1L << index;
+      }
+      day = day.plusDays(1);
+    }
+    for (FrenchHoliday holiday : holidays) {
+      clear(words, holiday.dateIn(year));
+    }
+    for (LocalDate closureDay : closureDays) {
+      if (closureDay.getYear() == year) {
+        clear(words, closureDay);
+      }
+    }
+    return new YearCalendar(words);
+  }
+
+  private static void clear(long[] words, LocalDate date) {
+    int index = date.getDayOfYear() - 1;
+    words[index >>> 6] &= ~(1L << index);
+  }
+
+  private static final class YearCalendar {
+
+    private final long[] words;
+    // Jours ouvrés avant chaque mot ; la dernière case contient le total de l'année
+    private final int[] ranks;
+
+    YearCalendar(long[] words) {
+      this.words = words;
+      this.ranks = new int[words.length + 1];
+      for (int i = 0; i < words.length; i++) {
+        ranks[i + 1] = ranks[i] + Long.bitCount(words[i]);
+      }
+    }
+
+    boolean isWorkingDay(int index) {
+      return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // Jours ouvrés parmi les 'index' premiers jours de l'année
+    int rank(int index) {
+      int word = index >>> 6;
+      if (word == words.length) {
+        return ranks[word];
+      }
+      return ranks[word] + Long.bitCount(words[word] & ((1L << index) - 1));
+    }
+
+    int total() {
+      return ranks[words.length];
+    }
+  }
+}
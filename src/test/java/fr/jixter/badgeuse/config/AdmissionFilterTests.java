@@ -0,0 +1,77 @@
+package fr.jixter.badgeuse.config;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import fr.jixter.badgeuse.service.AdmissionControl;
+import java.time.Duration;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class AdmissionFilterTests {
+
+  @Mock private AdmissionControl admissionControl;
+  @Mock private WebFilterChain chain;
+
+  private AdmissionFilter filter;
+
+  @BeforeEach
+  void setUp() {
+    filter = new AdmissionFilter(admissionControl, "X-Terminal-Id");
+  }
+
+  @Test
+  void testFilter_RejectedWithRetryAfter() {
+    when(admissionControl.tryAdmit("terminal-1", "emp1"))
+        .thenReturn(Optional.of(Duration.ofMillis(1_200)));
+    MockServerWebExchange exchange =
+        MockServerWebExchange.from(
+            MockServerHttpRequest.post("/api/badges/employee/emp1")
+                .header("X-Terminal-Id", "terminal-1"));
+
+    StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+    assert exchange.getResponse().getStatusCode() == HttpStatus.TOO_MANY_REQUESTS;
+    assert "2".equals(exchange.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    verify(chain, never()).filter(any());
+    verify(admissionControl, never()).release();
+  }
+
+  @Test
+  void testFilter_AdmittedReleasedAfterProcessing() {
+    when(admissionControl.tryAdmit("terminal-1", null)).thenReturn(Optional.empty());
+    MockServerWebExchange exchange =
+        MockServerWebExchange.from(
+            MockServerHttpRequest.post("/api/badges/batch").header("X-Terminal-Id", "terminal-1"));
+    when(chain.filter(exchange)).thenReturn(Mono.empty());
+
+    StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+    verify(admissionControl).release();
+  }
+
+  @Test
+  void testFilter_ReportsNotControlled() {
+    MockServerWebExchange exchange =
+        MockServerWebExchange.from(MockServerHttpRequest.get("/api/badges/month/2025-03"));
+    when(chain.filter(exchange)).thenReturn(Mono.empty());
+
+    StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+    verify(admissionControl, never()).tryAdmit(any(), any());
+  }
+}
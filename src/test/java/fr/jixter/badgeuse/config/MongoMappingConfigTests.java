@@ -0,0 +1,88 @@
+package fr.jixter.badgeuse.config;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties.BadgeEncoding;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.BadgeType;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+class MongoMappingConfigTests {
+
+  private static final BadgeRecord BADGE_RECORD =
+      BadgeRecord.builder()
+          .id("65e3a1f0c2b4d5e6f7a8b9c0")
+          .employeeId("emp1")
+          .timestamp(LocalDateTime.parse("2025-03-03T08:47:12"))
+          .type(BadgeType.OUT)
+          .eventId("evt-1")
+          .build();
+
+  @Test
+  void testCompactEncoding_ShortKeysAndTypeRank() {
+    MappingMongoConverter converter = converter(BadgeEncoding.COMPACT);
+    Document document = new Document();
+    converter.write(BADGE_RECORD, document);
+
+    assert document.keySet().equals(Set.of("_id", "e", "t", "k", "v"));
+    assert Integer.valueOf(1).equals(document.get("k"));
+    assert converter.read(BadgeRecord.class, document).equals(BADGE_RECORD);
+    assert MongoMappingConfig.badgeField(converter, "timestamp").equals("t");
+  }
+
+  @Test
+  void testStandardEncoding_Unchanged() {
+    MappingMongoConverter converter = converter(BadgeEncoding.STANDARD);
+    Document document = new Document();
+    converter.write(BADGE_RECORD, document);
+
+    assert document.containsKey("employeeId");
+    assert "OUT".equals(document.get("type"));
+    assert document.containsKey("_class");
+    // Type déjà converti par la migration, lu par une instance encore en STANDARD
+    document.put("type", 0);
+    assert converter.read(BadgeRecord.class, document).getType() == BadgeType.IN;
+  }
+
+  @Test
+  void testMappedIndex_CompactKeysAndPartialFilter() {
+    MappingMongoConverter converter = converter(BadgeEncoding.COMPACT);
+    List<IndexDefinition> indexes = new ArrayList<>();
+    IndexResolver.create(converter.getMappingContext())
+        .resolveIndexFor(BadgeRecord.class)
+        .forEach(
+            index ->
+                indexes.add(MongoMappingConfig.mappedIndex(converter, BadgeRecord.class, index)));
+
+    assert indexes.get(0).getIndexKeys().equals(new Document("e", 1).append("t", 1));
+    IndexDefinition eventIndex = indexes.get(1);
+    assert eventIndex.getIndexKeys().equals(new Document("e", 1).append("v", 1));
+    assert eventIndex
+        .getIndexOptions()
+        .get("partialFilterExpression")
+        .equals(new Document("v", new Document("$exists", true)));
+  }
+
+  private static MappingMongoConverter converter(BadgeEncoding encoding) {
+    MongoCustomConversions conversions = MongoMappingConfig.customConversions(encoding);
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    mappingContext.setFieldNamingStrategy(MongoMappingConfig.fieldNamingStrategy(encoding));
+    mappingContext.afterPropertiesSet();
+    MappingMongoConverter converter =
+        new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    MongoMappingConfig.configureTypeMapper(converter, encoding);
+    converter.afterPropertiesSet();
+    return converter;
+  }
+}
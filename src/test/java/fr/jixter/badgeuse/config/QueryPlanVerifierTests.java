@@ -0,0 +1,147 @@
+package fr.jixter.badgeuse.config;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties.QueryPlanCheckMode;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.Employee;
+import fr.jixter.badgeuse.domain.MonthlySummary;
+import fr.jixter.badgeuse.repository.BadgePartitions;
+import fr.jixter.badgeuse.repository.ReactiveBadgeRepositoryCustomImpl;
+import fr.jixter.badgeuse.repository.ReadRouting;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import reactor.core.publisher.Mono;
+
+class QueryPlanVerifierTests {
+
+  private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+
+  private final BadgeuseProperties properties = new BadgeuseProperties();
+
+  private QueryPlanVerifier verifier;
+
+  @BeforeEach
+  void setUp() {
+    MongoCustomConversions conversions =
+        MongoMappingConfig.customConversions(BadgeuseProperties.BadgeEncoding.STANDARD);
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    mappingContext.afterPropertiesSet();
+    MappingMongoConverter converter =
+        new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+    when(mongoTemplate.getConverter()).thenReturn(converter);
+    when(mongoTemplate.getCollectionName(BadgeRecord.class)).thenReturn("badge_records");
+    when(mongoTemplate.getCollectionName(Employee.class)).thenReturn("employees");
+    when(mongoTemplate.getCollectionName(MonthlySummary.class))
+        .thenReturn("badge_monthly_summaries");
+    verifier =
+        new QueryPlanVerifier(
+            mongoTemplate,
+            new ReactiveBadgeRepositoryCustomImpl(
+                mongoTemplate,
+                new BadgePartitions(mongoTemplate, properties),
+                new ReadRouting(mongoTemplate, properties, new SimpleMeterRegistry())),
+            properties);
+  }
+
+  @Test
+  void testFailMode_RejectsCollscanPlan() {
+    Document explain =
+        new Document(
+            "queryPlanner",
+            new Document("winningPlan", new Document("stage", "COLLSCAN"))
+                .append(
+                    "rejectedPlans",
+                    List.of(new Document("stage", "FETCH").append("inputStage", ixscan()))));
+    QueryPlanVerifier failing = spy(verifier);
+    doReturn(Mono.just(QueryPlanVerifier.violations("findRange", explain))).when(failing).verify();
+
+    properties.getMongo().setQueryPlanCheck(QueryPlanCheckMode.WARN);
+    failing.run(null);
+    properties.getMongo().setQueryPlanCheck(QueryPlanCheckMode.FAIL);
+    try {
+      failing.run(null);
+      assert false;
+    } catch (IllegalStateException e) {
+      assert e.getMessage().contains("findRange (COLLSCAN)");
+    }
+  }
+
+  @Test
+  void testViolations_LookupScanningJoinedCollection() {
+    // Collection des employés parcourue par son index _id, badgeages joints sans index
+    Document winningPlan = new Document("stage", "FETCH").append("inputStage", ixscan());
+    Document cursor =
+        new Document(
+            "queryPlanner",
+            new Document("winningPlan", winningPlan)
+                .append("rejectedPlans", List.of(new Document("stage", "SORT"))));
+    Document explain =
+        new Document(
+            "stages",
+            List.of(
+                new Document("$cursor", cursor),
+                new Document("$lookup", new Document("from", "badge_records"))
+                    .append("collectionScans", 3L)));
+
+    assert QueryPlanVerifier.violations("sumMinutesByEmployee", explain)
+        .equals(List.of("sumMinutesByEmployee (COLLSCAN)"));
+    // Le SORT d'un plan rejeté n'est pas relevé
+    assert QueryPlanVerifier.violations("findRange", cursor).isEmpty();
+  }
+
+  @Test
+  void testProbes_BuiltFromRepositoryQueries() {
+    List<String> aggregations =
+        verifier.aggregationProbes().stream().map(probe -> probe.name()).toList();
+    assert aggregations.containsAll(
+        List.of("sumMinutesByEmployee", "sumArchivedMinutesByEmployee", "findLatestPerEmployee"));
+    List<String> queries = verifier.queryProbes().stream().map(probe -> probe.name()).toList();
+    assert queries.containsAll(
+        List.of("findRange", "findByEvents", "findByIdGreaterThanOrderByIdAsc"));
+
+    // Les collections jointes sont remplacées par leurs copies temporaires
+    List<Document> pipeline =
+        verifier.aggregationProbes().get(0).aggregation().toPipeline(Aggregation.DEFAULT_CONTEXT);
+    Document lookup =
+        QueryPlanVerifier.scratch(
+                pipeline.get(2), Map.of("badge_records", "badge_records_query_plan_probe"))
+            .get("$lookup", Document.class);
+    assert lookup.getString("from").equals("badge_records_query_plan_probe");
+  }
+
+  @Test
+  void testScratchNames_UniquePerVerification() {
+    Map<String, String> first = verifier.scratchNames();
+    Map<String, String> second = verifier.scratchNames();
+
+    assert first.get("badge_records").startsWith("badge_records_query_plan_probe_");
+    // Deux instances démarrant ensemble travaillent sur des copies distinctes
+    assert !first.get("badge_records").equals(second.get("badge_records"));
+    Instant now = Instant.now();
+    assert !QueryPlanVerifier.isStaleScratch(first.get("badge_records"), now);
+    assert QueryPlanVerifier.isStaleScratch(first.get("badge_records"), now.plusSeconds(7200));
+    assert !QueryPlanVerifier.isStaleScratch("badge_records", now.plusSeconds(7200));
+  }
+
+  private static Document ixscan() {
+    return new Document("stage", "IXSCAN").append("indexName", "employee_timestamp_idx");
+  }
+}
@@ -0,0 +1,92 @@
+package fr.jixter.badgeuse.repository;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.BadgePartitionState;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class BadgePartitionsTests {
+
+  private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+
+  private BadgePartitions partitions;
+
+  @BeforeEach
+  void setUp() {
+    BadgeuseProperties properties = new BadgeuseProperties();
+    properties.getPartitions().setEnabled(true);
+    when(mongoTemplate.getCollectionName(BadgeRecord.class)).thenReturn("badge_records");
+    // Janvier et février 2025 archivés, mars fermé aux écritures mais pas encore archivé
+    when(mongoTemplate.findById("badge_records", BadgePartitionState.class))
+        .thenReturn(
+            Mono.just(
+                BadgePartitionState.builder()
+                    .id("badge_records")
+                    .closedBefore("2025-04")
+                    .archivedBefore("2025-03")
+                    .build()));
+    partitions = new BadgePartitions(mongoTemplate, properties);
+  }
+
+  @Test
+  void testCollectionsFor_OnlyTouchedPartitions() {
+    StepVerifier.create(
+            partitions.collectionsFor(
+                LocalDateTime.parse("2025-02-10T00:00:00"),
+                LocalDateTime.parse("2025-03-05T00:00:00")))
+        .expectNext("badge_records_2025_02", "badge_records")
+        .verifyComplete();
+    // Plage entièrement archivée : badge_records n'est pas lu
+    StepVerifier.create(
+            partitions.collectionsFor(
+                LocalDateTime.parse("2024-12-20T00:00:00"),
+                LocalDateTime.parse("2025-03-01T00:00:00")))
+        .expectNext("badge_records_2024_12", "badge_records_2025_01", "badge_records_2025_02")
+        .verifyComplete();
+    StepVerifier.create(
+            partitions.collectionsFor(
+                LocalDateTime.parse("2025-03-03T00:00:00"),
+                LocalDateTime.parse("2025-03-04T00:00:00")))
+        .expectNext("badge_records")
+        .verifyComplete();
+  }
+
+  @Test
+  void testState_ReadOncePerRefreshInterval() {
+    StepVerifier.create(partitions.writableFrom())
+        .expectNext(LocalDateTime.parse("2025-04-01T00:00:00"))
+        .verifyComplete();
+    StepVerifier.create(partitions.isArchived(YearMonth.parse("2025-02")))
+        .expectNext(true)
+        .verifyComplete();
+    StepVerifier.create(partitions.isArchived(YearMonth.parse("2025-03")))
+        .expectNext(false)
+        .verifyComplete();
+
+    verify(mongoTemplate, times(1)).findById("badge_records", BadgePartitionState.class);
+  }
+
+  @Test
+  void testDisabled_EverythingInHotCollection() {
+    BadgePartitions disabled = new BadgePartitions(mongoTemplate, new BadgeuseProperties());
+
+    StepVerifier.create(
+            disabled.collectionsFor(
+                LocalDateTime.parse("2024-01-01T00:00:00"),
+                LocalDateTime.parse("2025-01-01T00:00:00")))
+        .expectNext("badge_records")
+        .verifyComplete();
+    StepVerifier.create(disabled.writableFrom()).expectNext(LocalDateTime.MIN).verifyComplete();
+  }
+}
@@ -0,0 +1,167 @@
+package fr.jixter.badgeuse.repository;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.config.BadgeuseProperties.BadgeEncoding;
+import fr.jixter.badgeuse.config.MongoMappingConfig;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.Employee;
+import fr.jixter.badgeuse.domain.EmployeeMinutes;
+import fr.jixter.badgeuse.domain.MonthlySummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class ReactiveBadgeRepositoryCustomImplTests {
+
+  private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+
+  private ReactiveBadgeRepositoryCustomImpl repository;
+
+  @BeforeEach
+  void setUp() {
+    MongoCustomConversions conversions =
+        MongoMappingConfig.customConversions(BadgeEncoding.STANDARD);
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    mappingContext.afterPropertiesSet();
+    MappingMongoConverter converter =
+        new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+    when(mongoTemplate.getConverter()).thenReturn(converter);
+    when(mongoTemplate.getCollectionName(BadgeRecord.class)).thenReturn("badge_records");
+    when(mongoTemplate.getCollectionName(Employee.class)).thenReturn("employees");
+    when(mongoTemplate.aggregate(
+            any(Aggregation.class), eq("employees"), eq(EmployeeMinutes.class)))
+        .thenReturn(Flux.empty());
+    BadgeuseProperties properties = new BadgeuseProperties();
+    repository =
+        new ReactiveBadgeRepositoryCustomImpl(
+            mongoTemplate,
+            new BadgePartitions(mongoTemplate, properties),
+            new ReadRouting(mongoTemplate, properties, new SimpleMeterRegistry()));
+  }
+
+  @Test
+  void testSumMinutesByEmployee_StartsFromEmployeesKeepingThoseWithoutPunches() {
+    LocalDateTime start = LocalDateTime.parse("2025-03-01T00:00");
+    LocalDateTime end = LocalDateTime.parse("2025-04-01T00:00");
+
+    List<Document> pipeline = run(repository.sumMinutesByEmployee(start, end));
+
+    assert pipeline.get(0).equals(new Document("$sort", new Document("_id", 1)));
+    Document lookup = pipeline.get(2).get("$lookup", Document.class);
+    assert lookup.getString("from").equals("badge_records");
+    assert lookup.getString("foreignField").equals("employeeId");
+    Document range =
+        lookup.getList("pipeline", Document.class).get(0).get("$match", Document.class);
+    assert range.get("timestamp", Document.class).get("$gte") instanceof Date;
+    // Un employé sans badgeage sur le mois n'est écarté par aucune étape : 0 minute
+    assertOnlyProjectionsAfter(pipeline, 3);
+  }
+
+  @Test
+  void testSumMinutesByEmployee_PairsAcrossMidnight() {
+    List<Document> pipeline =
+        run(
+            repository.sumMinutesByEmployee(
+                LocalDateTime.parse("2025-03-01T00:00"), LocalDateTime.parse("2025-04-01T00:00")));
+
+    // Même règle que BadgePairing : un IN suivi d'un OUT forme une paire, quel que soit leur jour
+    String pairing = pipeline.get(4).toJson();
+    assert pairing.contains("$reduce");
+    assert !pairing.contains("$dateToString");
+  }
+
+  @Test
+  void testFindNeighbours_StayWithinTheMonth() {
+    LocalDateTime start = LocalDateTime.parse("2025-03-31T00:00");
+    when(mongoTemplate.findOne(any(Query.class), eq(BadgeRecord.class), eq("badge_records")))
+        .thenReturn(Mono.empty());
+
+    // Dernière journée du mois : le badgeage suivant, en avril, ne peut pas former de paire
+    StepVerifier.create(repository.findNeighbours("1", start, start.plusDays(1)))
+        .verifyComplete();
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).findOne(query.capture(), eq(BadgeRecord.class), eq("badge_records"));
+    Document timestamp = query.getValue().getQueryObject().get("timestamp", Document.class);
+    assert timestamp.get("$gte").equals(LocalDateTime.parse("2025-03-01T00:00"));
+    assert timestamp.get("$lt").equals(start);
+    assert query.getValue().getSortObject().equals(new Document("timestamp", -1));
+    assert query.getValue().getLimit() == 1;
+  }
+
+  @Test
+  void testFindRange_IncludesPunchAtStart() {
+    LocalDateTime start = LocalDateTime.parse("2025-03-03T00:00");
+    when(mongoTemplate.find(any(Query.class), eq(BadgeRecord.class), eq("badge_records")))
+        .thenReturn(Flux.empty());
+
+    StepVerifier.create(repository.findRange("1", start, start.plusDays(1))).verifyComplete();
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).find(query.capture(), eq(BadgeRecord.class), eq("badge_records"));
+    // Un badgeage à 00:00 appartient à la journée, comme dans DailyAggregateService.rebuild
+    Document timestamp = query.getValue().getQueryObject().get("timestamp", Document.class);
+    assert timestamp.get("$gte").equals(start);
+    assert !timestamp.containsKey("$gt");
+  }
+
+  @Test
+  void testSumArchivedMinutesByEmployee_DefaultsToZeroWithoutSummary() {
+    when(mongoTemplate.getCollectionName(MonthlySummary.class))
+        .thenReturn("badge_monthly_summaries");
+
+    List<Document> pipeline =
+        run(repository.sumArchivedMinutesByEmployee(YearMonth.parse("2024-11")));
+
+    Document lookup = pipeline.get(2).get("$lookup", Document.class);
+    assert lookup.getString("from").equals("badge_monthly_summaries");
+    assertOnlyProjectionsAfter(pipeline, 3);
+    Document totalMinutes =
+        pipeline.get(3).get("$project", Document.class).get("totalMinutes", Document.class);
+    assert totalMinutes.getList("$ifNull", Object.class).get(1).equals(0);
+  }
+
+  private List<Document> run(Flux<EmployeeMinutes> minutes) {
+    StepVerifier.create(minutes).verifyComplete();
+    ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+    verify(mongoTemplate)
+        .aggregate(aggregation.capture(), eq("employees"), eq(EmployeeMinutes.class));
+    return aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+  }
+
+  private static void assertOnlyProjectionsAfter(List<Document> pipeline, int from) {
+    assert pipeline.size() > from;
+    pipeline
+        .subList(from, pipeline.size())
+        .forEach(
+            stage -> {
+              assert stage.keySet().equals(Set.of("$project"));
+            });
+  }
+}
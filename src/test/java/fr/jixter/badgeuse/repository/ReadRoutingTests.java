@@ -0,0 +1,58 @@
+package fr.jixter.badgeuse.repository;
+
+import static org.mockito.Mockito.mock;
+
+import com.mongodb.ReadPreference;
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.repository.ReadRouting.Route;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class ReadRoutingTests {
+
+  @Test
+  void testReadPreference_MaxStalenessExceptForPrimary() {
+    BadgeuseProperties.ReadRouting settings = new BadgeuseProperties.ReadRouting();
+    settings.setMaxStaleness(Duration.ofMinutes(2));
+
+    assert ReadRouting.readPreference(settings)
+        .equals(ReadPreference.secondaryPreferred(120, TimeUnit.SECONDS));
+    settings.setReadPreference("primary");
+    assert ReadRouting.readPreference(settings).equals(ReadPreference.primary());
+  }
+
+  @Test
+  void testTimed_PerRouteAndDisabledRoutingUsesPrimary() {
+    ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    ReadRouting readRouting = new ReadRouting(mongoTemplate, new BadgeuseProperties(), registry);
+
+    assert readRouting.template(Route.REPORTING) == mongoTemplate;
+    StepVerifier.create(readRouting.timed(Route.REPORTING, "findAll", Flux.just(1, 2)))
+        .expectNext(1, 2)
+        .verifyComplete();
+    Mono<Object> failed = Mono.error(new IllegalStateException());
+    StepVerifier.create(readRouting.timed(Route.PRIMARY, "findLatestBefore", failed))
+        .verifyError(IllegalStateException.class);
+
+    Timer reporting =
+        registry
+            .find(ReadRouting.READ_TIMER)
+            .tags("route", "reporting", "operation", "findAll", "outcome", "success")
+            .timer();
+    assert reporting != null && reporting.count() == 1;
+    Timer primary =
+        registry
+            .find(ReadRouting.READ_TIMER)
+            .tags("route", "primary", "operation", "findLatestBefore", "outcome", "error")
+            .timer();
+    assert primary != null && primary.count() == 1;
+  }
+}
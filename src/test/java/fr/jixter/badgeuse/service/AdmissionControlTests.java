@@ -0,0 +1,121 @@
+package fr.jixter.badgeuse.service;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AdmissionControlTests {
+
+  private final AtomicLong clock = new AtomicLong();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private AdmissionControl admissionControl;
+
+  @BeforeEach
+  void setUp() {
+    BadgeuseProperties properties = new BadgeuseProperties();
+    properties.getAdmission().setTerminalRate(2);
+    properties.getAdmission().setTerminalBurst(3);
+    properties.getAdmission().setEmployeeRate(0.5);
+    properties.getAdmission().setEmployeeBurst(2);
+    properties.getAdmission().setMaxConcurrentWrites(2);
+    admissionControl =
+        new AdmissionControl(properties, new BadgeuseMetrics(meterRegistry), clock::get);
+  }
+
+  @Test
+  void testTryAdmit_TerminalBucketRefills() {
+    for (int i = 0; i < 3; i++) {
+      assert admissionControl.tryAdmit("terminal-1", null).isEmpty();
+      admissionControl.release();
+    }
+
+    // Rafale épuisée : un jeton toutes les 500 ms
+    Optional<Duration> retryAfter = admissionControl.tryAdmit("terminal-1", null);
+    assert retryAfter.equals(Optional.of(Duration.ofMillis(500)));
+    assert admissionControl.tryAdmit("terminal-2", null).isEmpty();
+    admissionControl.release();
+
+    clock.addAndGet(Duration.ofMillis(500).toNanos());
+    assert admissionControl.tryAdmit("terminal-1", null).isEmpty();
+    admissionControl.release();
+    assert rejected("terminal") == 1;
+    assert admissionControl.inFlight() == 0;
+  }
+
+  @Test
+  void testTryAdmit_EmployeeBucketAcrossTerminals() {
+    assert admissionControl.tryAdmit("terminal-1", "emp1").isEmpty();
+    admissionControl.release();
+    assert admissionControl.tryAdmit("terminal-2", "emp1").isEmpty();
+    admissionControl.release();
+
+    assert admissionControl
+        .tryAdmit("terminal-3", "emp1")
+        .equals(Optional.of(Duration.ofSeconds(2)));
+    assert admissionControl.tryAdmit("terminal-3", "emp2").isEmpty();
+    admissionControl.release();
+    assert rejected("employee") == 1;
+  }
+
+  @Test
+  void testTryAdmit_EmployeeRejectionRefundsTerminalToken() {
+    for (int i = 0; i < 2; i++) {
+      assert admissionControl.tryAdmit("terminal-1", "emp1").isEmpty();
+      admissionControl.release();
+    }
+    // Refus par l'employé : le troisième jeton du terminal n'est pas consommé
+    assert admissionControl.tryAdmit("terminal-1", "emp1").isPresent();
+
+    assert admissionControl.tryAdmit("terminal-1", "emp2").isEmpty();
+    admissionControl.release();
+    assert rejected("terminal") == 0;
+    assert admissionControl.tryAdmit("terminal-1", "emp3").isPresent();
+    assert rejected("terminal") == 1;
+  }
+
+  @Test
+  void testTryAdmitEmployee_OnlyWhenEnabled() {
+    // Contrôle désactivé : les badgeages d'un lot ne sont pas limités
+    for (int i = 0; i < 3; i++) {
+      assert admissionControl.tryAdmitEmployee("emp1");
+    }
+
+    BadgeuseProperties properties = new BadgeuseProperties();
+    properties.getAdmission().setEnabled(true);
+    properties.getAdmission().setEmployeeRate(0.5);
+    properties.getAdmission().setEmployeeBurst(2);
+    AdmissionControl enabled =
+        new AdmissionControl(properties, new BadgeuseMetrics(meterRegistry), clock::get);
+    // Même seau que les badgeages unitaires : le lot suit après une requête unitaire
+    assert enabled.tryAdmit("terminal-1", "emp1").isEmpty();
+    enabled.release();
+    assert enabled.tryAdmitEmployee("emp1");
+    assert !enabled.tryAdmitEmployee("emp1");
+    assert rejected("employee") == 1;
+  }
+
+  @Test
+  void testTryAdmit_BoundedConcurrentWrites() {
+    assert admissionControl.tryAdmit("terminal-1", null).isEmpty();
+    assert admissionControl.tryAdmit("terminal-2", null).isEmpty();
+
+    // Deux badgeages en cours : refus immédiat, sans consommer de jeton
+    assert admissionControl
+        .tryAdmit("terminal-3", null)
+        .equals(Optional.of(Duration.ofSeconds(1)));
+    assert admissionControl.inFlight() == 2;
+
+    admissionControl.release();
+    assert admissionControl.tryAdmit("terminal-3", null).isEmpty();
+    assert rejected("busy") == 1;
+  }
+
+  private double rejected(String reason) {
+    return meterRegistry.get("badgeuse.admission.rejected").tag("reason", reason).counter().count();
+  }
+}
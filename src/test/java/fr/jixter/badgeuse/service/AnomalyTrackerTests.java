@@ -0,0 +1,59 @@
+package fr.jixter.badgeuse.service;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDate;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+class AnomalyTrackerTests {
+
+  private static final LocalDate MONDAY = LocalDate.parse("2025-03-03");
+  private static final LocalDate TUESDAY = MONDAY.plusDays(1);
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AnomalyTracker anomalyTracker =
+      new AnomalyTracker(new BadgeuseProperties(), new BadgeuseMetrics(meterRegistry));
+
+  @Test
+  void testRecord_DeduplicatedPerEmployeeAndDay() {
+    for (int i = 0; i < 3; i++) {
+      anomalyTracker.record("1", MONDAY, MONDAY.plusDays(7), Map.of(TUESDAY, 1));
+    }
+    // Relevé aggravé : seule nouvelle détection
+    anomalyTracker.record("1", TUESDAY, TUESDAY.plusDays(1), Map.of(TUESDAY, 2));
+
+    StepVerifier.create(anomalyTracker.find(null, null, null))
+        .assertNext(
+            anomaly -> {
+              assert anomaly.getEmployeeId().equals("1");
+              assert anomaly.getDate().equals(TUESDAY);
+              assert anomaly.getUnmatchedCount() == 2;
+            })
+        .verifyComplete();
+    assert meterRegistry.get("badgeuse.anomalies.detected").counter().count() == 2;
+  }
+
+  @Test
+  void testRecord_ResolvesDaysOfTheRangeOnly() {
+    anomalyTracker.record("1", MONDAY, TUESDAY.plusDays(1), Map.of(MONDAY, 1, TUESDAY, 1));
+    anomalyTracker.record("2", MONDAY, MONDAY.plusDays(1), Map.of(MONDAY, 1));
+
+    // Lundi corrigé pour l'employé 1 ; mardi, hors de l'intervalle recalculé, reste en anomalie
+    anomalyTracker.record("1", MONDAY, MONDAY.plusDays(1), Map.of());
+
+    StepVerifier.create(anomalyTracker.find(null, null, null))
+        .assertNext(
+            anomaly -> {
+              assert anomaly.getEmployeeId().equals("1");
+              assert anomaly.getDate().equals(TUESDAY);
+            })
+        .assertNext(
+            anomaly -> {
+              assert anomaly.getEmployeeId().equals("2");
+            })
+        .verifyComplete();
+    StepVerifier.create(anomalyTracker.find("1", MONDAY, MONDAY)).verifyComplete();
+  }
+}
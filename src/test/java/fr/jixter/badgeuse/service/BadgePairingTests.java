@@ -0,0 +1,93 @@
+package fr.jixter.badgeuse.service;
+
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.BadgeType;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+class BadgePairingTests {
+
+  private static final LocalDateTime START = LocalDateTime.parse("2025-03-03T08:00");
+
+  @Test
+  void testPairsInOut() {
+    PairingSummary summary =
+        pair(
+            punch(0, BadgeType.IN),
+            punch(240, BadgeType.OUT),
+            punch(300, BadgeType.IN),
+            punch(480, BadgeType.OUT));
+
+    assert summary.totalMinutes() == 420;
+    assert summary.unmatchedCount() == 0;
+    assert summary.punchCount() == 4;
+  }
+
+  @Test
+  void testUnmatchedRecords() {
+    // OUT initial, double IN puis IN final sans OUT
+    PairingSummary summary =
+        pair(
+            punch(0, BadgeType.OUT),
+            punch(10, BadgeType.IN),
+            punch(20, BadgeType.IN),
+            punch(80, BadgeType.OUT),
+            punch(90, BadgeType.IN));
+
+    assert summary.totalMinutes() == 60;
+    assert summary.unmatchedCount() == 3;
+  }
+
+  @Test
+  void testNightShiftPaired() {
+    // IN à 22h, OUT le lendemain à 6h : une seule présence de 8 heures
+    PairingSummary summary = pair(punch(840, BadgeType.IN), punch(1320, BadgeType.OUT));
+
+    assert summary.totalMinutes() == 480;
+    assert summary.unmatchedCount() == 0;
+  }
+
+  @Test
+  void testEmpty() {
+    PairingSummary summary = new BadgePairing().finish();
+
+    assert summary.totalMinutes() == 0;
+    assert summary.unmatchedCount() == 0;
+  }
+
+  @Test
+  void testStreamingMatchesList() {
+    BadgeRecord[] records = {
+      punch(0, BadgeType.IN),
+      punch(30, BadgeType.OUT),
+      punch(31, BadgeType.OUT),
+      punch(40, BadgeType.IN),
+      punch(100, BadgeType.OUT)
+    };
+    PairingSummary expected = BadgeService.pairRecords(new ArrayList<>(List.of(records)));
+
+    StepVerifier.create(BadgeService.pairRecords(Flux.just(records)))
+        .expectNext(expected)
+        .verifyComplete();
+  }
+
+  private static PairingSummary pair(BadgeRecord... records) {
+    BadgePairing pairing = new BadgePairing();
+    for (BadgeRecord badgeRecord : records) {
+      pairing.accept(badgeRecord);
+    }
+    return pairing.finish();
+  }
+
+  private static BadgeRecord punch(int minutes, BadgeType type) {
+    return BadgeRecord.builder()
+        .employeeId("1")
+        .timestamp(START.plusMinutes(minutes))
+        .type(type)
+        .build();
+  }
+}
@@ -1,26 +1,60 @@
 package fr.jixter.badgeuse.service;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import fr.jixter.badgeuse.config.BadgeuseProperties;
 import fr.jixter.badgeuse.domain.BadgeRecord;
 import fr.jixter.badgeuse.domain.BadgeType;
 import fr.jixter.badgeuse.domain.Employee;
+import fr.jixter.badgeuse.domain.EmployeeMinutes;
+import fr.jixter.badgeuse.domain.MonthlySummary;
+import fr.jixter.badgeuse.domain.dto.BadgeBatchResult;
 import fr.jixter.badgeuse.domain.dto.BadgeDto;
+import fr.jixter.badgeuse.domain.dto.EmployeeStatus;
 import fr.jixter.badgeuse.domain.dto.TimeReport;
+import fr.jixter.badgeuse.exception.ClosedPeriodException;
+import fr.jixter.badgeuse.exception.InvalidRangeException;
 import fr.jixter.badgeuse.exception.ResourceNotFoundException;
+import fr.jixter.badgeuse.repository.BadgePartitions;
 import fr.jixter.badgeuse.repository.ReactiveBadgeRepository;
 import fr.jixter.badgeuse.repository.ReactiveEmployeeRepository;
+import fr.jixter.badgeuse.repository.ReactiveMonthlySummaryRepository;
+import fr.jixter.badgeuse.repository.ReadRouting.Route;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -32,6 +66,45 @@ class BadgeServiceTests {
 
   @Mock private ReactiveBadgeRepository badgeRepository;
 
+  @Mock private EmployeeCache employeeCache;
+
+  @Spy private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+  @Spy private BadgeuseProperties properties = new BadgeuseProperties();
+
+  @Mock private DailyAggregateService dailyAggregateService;
+
+  @Mock private PresenceBoard presenceBoard;
+
+  @Spy private List<BadgeRecordListener> listeners = new ArrayList<>();
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Spy private BadgeuseMetrics metrics = new BadgeuseMetrics(meterRegistry);
+
+  @Spy private TimeReportCache reportCache = new TimeReportCache(reportCacheEnabled());
+
+  @Mock private BadgeWriteBatcher writeBatcher;
+
+  @Spy
+  private WorkingDayCalendar workingDayCalendar = new WorkingDayCalendar(new BadgeuseProperties());
+
+  @Spy
+  private BadgePartitions partitions =
+      new BadgePartitions(mock(ReactiveMongoTemplate.class), new BadgeuseProperties());
+
+  @Mock private ReactiveMonthlySummaryRepository summaryRepository;
+
+  @Spy
+  private AnomalyTracker anomalyTracker =
+      new AnomalyTracker(new BadgeuseProperties(), new BadgeuseMetrics(new SimpleMeterRegistry()));
+
+  private final BadgeuseProperties admissionProperties = admissionDisabled();
+
+  @Spy
+  private AdmissionControl admissionControl =
+      new AdmissionControl(admissionProperties, new BadgeuseMetrics(meterRegistry));
+
   @InjectMocks private BadgeService badgeService;
 
   @Test
@@ -51,7 +124,7 @@ class BadgeServiceTests {
             .type(BadgeType.IN)
             .build();
 
-    when(employeeRepository.findById(employeeId)).thenReturn(Mono.just(employee));
+    when(employeeCache.findById(employeeId)).thenReturn(Mono.just(employee));
     when(badgeRepository.save(any(BadgeRecord.class))).thenReturn(Mono.just(badgeRecord));
 
     Mono<BadgeRecord> result = badgeService.addBadgeRecord(employeeId, badgeDto);
@@ -65,7 +138,7 @@ class BadgeServiceTests {
             })
         .verifyComplete();
 
-    verify(employeeRepository).findById(employeeId);
+    verify(employeeCache).findById(employeeId);
     verify(badgeRepository).save(any(BadgeRecord.class));
   }
 
@@ -75,7 +148,7 @@ class BadgeServiceTests {
     BadgeDto badgeDto =
         BadgeDto.builder().timestamp(LocalDateTime.now()).type(BadgeType.IN).build();
 
-    when(employeeRepository.findById(employeeId)).thenReturn(Mono.empty());
+    when(employeeCache.findById(employeeId)).thenReturn(Mono.empty());
 
     Mono<BadgeRecord> result = badgeService.addBadgeRecord(employeeId, badgeDto);
 
@@ -103,6 +176,9 @@ class BadgeServiceTests {
     List<BadgeRecord> records = Arrays.asList(inRecord, outRecord);
     when(badgeRepository.findByEmployeeIdAndDate(employeeId, date))
         .thenReturn(Flux.fromIterable(records));
+    when(badgeRepository.findReportNeighbours(
+            employeeId, localDate.atStartOfDay(), localDate.plusDays(1).atStartOfDay()))
+        .thenReturn(Flux.empty());
 
     Mono<TimeReport> reportMono = badgeService.calculateDailyTime(employeeId, date);
 
@@ -156,4 +232,625 @@ class BadgeServiceTests {
             })
         .verifyComplete();
   }
+
+  @Test
+  void testCalculateMonthlyTime_RecordsAnomalyDays() {
+    String month = "2025-03";
+    LocalDateTime in = LocalDate.parse("2025-03-03").atTime(9, 0);
+    when(badgeRepository.findByEmployeeIdAndMonth("3", month))
+        .thenReturn(
+            Flux.just(
+                BadgeRecord.builder().employeeId("3").timestamp(in).type(BadgeType.IN).build(),
+                BadgeRecord.builder()
+                    .employeeId("3")
+                    .timestamp(in.plusHours(8))
+                    .type(BadgeType.OUT)
+                    .build(),
+                BadgeRecord.builder()
+                    .employeeId("3")
+                    .timestamp(in.plusDays(1))
+                    .type(BadgeType.OUT)
+                    .build()));
+
+    StepVerifier.create(badgeService.calculateMonthlyTime("3", month))
+        .assertNext(
+            report -> {
+              assert report.getTotalMinutes() == 480;
+            })
+        .verifyComplete();
+
+    StepVerifier.create(anomalyTracker.find("3", null, null))
+        .assertNext(
+            anomaly -> {
+              assert anomaly.getDate().equals(LocalDate.parse("2025-03-04"));
+              assert anomaly.getUnmatchedCount() == 1;
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void testExportMonthlyPayroll_OneLinePerEmployeeInOrder() {
+    String month = "2025-03";
+    LocalDateTime in = LocalDate.parse("2025-03-03").atTime(9, 0);
+    properties.getExport().setConcurrency(2);
+    when(employeeRepository.findAll(any(Sort.class)))
+        .thenReturn(
+            Flux.just(
+                Employee.builder().id("1").name("Doe, John").email("john@example.com").build(),
+                Employee.builder().id("2").name("Jane Roe").email("jane@example.com").build()));
+    // Le premier rapport arrive après le second : l'ordre des employés est conservé
+    when(badgeRepository.findByEmployeeIdAndMonth("1", month))
+        .thenReturn(
+            Flux.just(
+                    BadgeRecord.builder().employeeId("1").timestamp(in).type(BadgeType.IN).build(),
+                    BadgeRecord.builder()
+                        .employeeId("1")
+                        .timestamp(in.plusHours(8))
+                        .type(BadgeType.OUT)
+                        .build())
+                .delayElements(Duration.ofMillis(50)));
+    when(badgeRepository.findByEmployeeIdAndMonth("2", month)).thenReturn(Flux.empty());
+
+    StepVerifier.create(badgeService.exportMonthlyPayroll(month))
+        .assertNext(
+            line -> {
+              assert line.getEmployeeId().equals("1");
+              assert line.getName().equals("Doe, John");
+              assert line.getTotalMinutes() == 480;
+              // 21 jours ouvrés en mars 2025
+              assert line.getExpectedMinutes() == 21 * 420L;
+            })
+        .assertNext(
+            line -> {
+              assert line.getEmployeeId().equals("2");
+              assert line.getTotalMinutes() == 0;
+              assert !line.isSufficient();
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void testExportMonthlyPayroll_BypassesReportCache() {
+    String month = "2025-03";
+    when(employeeRepository.findAll(any(Sort.class)))
+        .thenReturn(Flux.just(Employee.builder().id("1").name("John Doe").build()));
+    when(badgeRepository.findByEmployeeIdAndMonth("1", month)).thenReturn(Flux.empty());
+
+    StepVerifier.create(badgeService.exportMonthlyPayroll(month))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    // L'export ne remplace pas les rapports en cache des consultations courantes
+    verify(reportCache, never()).get(any(), any(), any());
+  }
+
+  @Test
+  void testAddBadgeRecords_PartialFailure() {
+    LocalDateTime now = LocalDateTime.now();
+    BadgeDto valid = BadgeDto.builder().employeeId("1").timestamp(now).type(BadgeType.IN).build();
+    BadgeDto unknownEmployee =
+        BadgeDto.builder().employeeId("unknown").timestamp(now).type(BadgeType.IN).build();
+    BadgeDto missingType = BadgeDto.builder().employeeId("1").timestamp(now).build();
+    BadgeDto writeError =
+        BadgeDto.builder().employeeId("1").timestamp(now).type(BadgeType.OUT).build();
+
+    when(employeeRepository.findAllById(Set.of("1", "unknown")))
+        .thenReturn(Flux.just(Employee.builder().id("1").build()));
+    // Le second document envoyé à insertMany est en erreur
+    when(badgeRepository.insertAllUnordered(anyList()))
+        .thenReturn(Mono.just(Map.of(1, new DuplicateKeyException("E11000 duplicate key"))));
+
+    Flux<BadgeBatchResult> results =
+        badgeService.addBadgeRecords(Flux.just(valid, unknownEmployee, missingType, writeError));
+
+    StepVerifier.create(results)
+        .assertNext(
+            result -> {
+              assert result.getIndex() == 0;
+              assert result.getStatus() == BadgeBatchResult.Status.CREATED;
+              assert result.getId() != null;
+            })
+        .assertNext(
+            result -> {
+              assert result.getIndex() == 1;
+              assert result.getStatus() == BadgeBatchResult.Status.REJECTED;
+              assert result.getError().equals("Employee not found with id unknown");
+            })
+        .assertNext(
+            result -> {
+              assert result.getIndex() == 2;
+              assert result.getStatus() == BadgeBatchResult.Status.REJECTED;
+              assert result.getError().startsWith("type : ");
+            })
+        .assertNext(
+            result -> {
+              assert result.getIndex() == 3;
+              assert result.getStatus() == BadgeBatchResult.Status.REJECTED;
+              assert result.getError().equals("E11000 duplicate key");
+            })
+        .verifyComplete();
+
+    verify(employeeRepository).findAllById(Set.of("1", "unknown"));
+    assert meterRegistry.get("badgeuse.punches").tag("result", "accepted").counter().count() == 1;
+    assert meterRegistry.get("badgeuse.punches").tag("result", "rejected").counter().count() == 3;
+  }
+
+  @Test
+  void testAddBadgeRecords_EmployeeLimitAppliesToEachRecord() {
+    admissionProperties.getAdmission().setEnabled(true);
+    LocalDateTime now = LocalDateTime.now();
+    List<BadgeDto> replay = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      replay.add(
+          BadgeDto.builder()
+              .employeeId("1")
+              .timestamp(now.plusMinutes(i))
+              .type(i % 2 == 0 ? BadgeType.IN : BadgeType.OUT)
+              .build());
+    }
+    when(employeeRepository.findAllById(Set.of("1")))
+        .thenReturn(Flux.just(Employee.builder().id("1").build()));
+    when(badgeRepository.insertAllUnordered(anyList())).thenReturn(Mono.just(Map.of()));
+
+    // Rafale de 2 badgeages par employé : le troisième du lot est refusé
+    StepVerifier.create(badgeService.addBadgeRecords(Flux.fromIterable(replay)))
+        .expectNextMatches(result -> result.getStatus() == BadgeBatchResult.Status.CREATED)
+        .expectNextMatches(result -> result.getStatus() == BadgeBatchResult.Status.CREATED)
+        .assertNext(
+            result -> {
+              assert result.getStatus() == BadgeBatchResult.Status.REJECTED;
+              assert result.getError().equals("Too many punches for employee 1");
+            })
+        .verifyComplete();
+
+    verify(badgeRepository).insertAllUnordered(argThat(records -> records.size() == 2));
+    assert meterRegistry
+            .get("badgeuse.admission.rejected")
+            .tag("reason", "employee")
+            .counter()
+            .count()
+        == 1;
+  }
+
+  @Test
+  void testAddBadgeRecords_ReplayedBatchReturnsOriginals() {
+    LocalDateTime now = LocalDateTime.now();
+    BadgeDto stored =
+        BadgeDto.builder()
+            .employeeId("1")
+            .timestamp(now)
+            .type(BadgeType.IN)
+            .eventId("terminal-41")
+            .build();
+    BadgeDto fresh =
+        BadgeDto.builder()
+            .employeeId("1")
+            .timestamp(now.plusHours(4))
+            .type(BadgeType.OUT)
+            .eventId("terminal-42")
+            .build();
+    BadgeRecord original =
+        BadgeRecord.builder()
+            .id("original")
+            .employeeId("1")
+            .timestamp(now)
+            .type(BadgeType.IN)
+            .eventId("terminal-41")
+            .build();
+    when(employeeRepository.findAllById(Set.of("1")))
+        .thenReturn(Flux.just(Employee.builder().id("1").build()));
+    // Lot renvoyé par le terminal : le premier badgeage avait déjà été enregistré
+    when(badgeRepository.insertAllUnordered(anyList()))
+        .thenReturn(
+            Mono.just(
+                Map.of(0, new DuplicateKeyException("E11000 duplicate key employee_event_idx"))));
+    when(badgeRepository.findByEvents(anyList())).thenReturn(Flux.just(original));
+
+    StepVerifier.create(badgeService.addBadgeRecords(Flux.just(stored, fresh)))
+        .assertNext(
+            result -> {
+              assert result.getStatus() == BadgeBatchResult.Status.DUPLICATE;
+              assert result.getId().equals("original");
+              assert result.getError() == null;
+            })
+        .assertNext(
+            result -> {
+              assert result.getStatus() == BadgeBatchResult.Status.CREATED;
+            })
+        .verifyComplete();
+
+    // Seul le doublon est recherché
+    verify(badgeRepository)
+        .findByEvents(
+            argThat(
+                replays ->
+                    replays.size() == 1 && replays.get(0).getEventId().equals("terminal-41")));
+    assert meterRegistry.get("badgeuse.punches").tag("result", "accepted").counter().count() == 1;
+    assert meterRegistry.get("badgeuse.punches").tag("result", "duplicate").counter().count()
+        == 1;
+    assert meterRegistry.get("badgeuse.punches").tag("result", "rejected").counter().count() == 0;
+  }
+
+  @Test
+  void testCalculateDailyTime_RecordsMetrics() {
+    String employeeId = "4";
+    String date = "2025-03-03";
+    LocalDate localDate = LocalDate.parse(date);
+    // Un OUT sans IN préalable : non apparié
+    BadgeRecord orphanOut =
+        BadgeRecord.builder()
+            .employeeId(employeeId)
+            .timestamp(localDate.atTime(8, 0))
+            .type(BadgeType.OUT)
+            .build();
+    BadgeRecord inRecord =
+        BadgeRecord.builder()
+            .employeeId(employeeId)
+            .timestamp(localDate.atTime(9, 0))
+            .type(BadgeType.IN)
+            .build();
+    BadgeRecord outRecord =
+        BadgeRecord.builder()
+            .employeeId(employeeId)
+            .timestamp(localDate.atTime(12, 0))
+            .type(BadgeType.OUT)
+            .build();
+    when(badgeRepository.findByEmployeeIdAndDate(employeeId, date))
+        .thenReturn(Flux.just(orphanOut, inRecord, outRecord));
+    when(badgeRepository.findReportNeighbours(
+            employeeId, localDate.atStartOfDay(), localDate.plusDays(1).atStartOfDay()))
+        .thenReturn(Flux.empty());
+
+    StepVerifier.create(badgeService.calculateDailyTime(employeeId, date))
+        .assertNext(
+            report -> {
+              assert report.getTotalMinutes() == 180;
+            })
+        .verifyComplete();
+
+    assert meterRegistry.get("badgeuse.records.unmatched").counter().count() == 1;
+    assert meterRegistry
+            .get(BadgeuseMetrics.OPERATION_TIMER)
+            .tag("service", "badge")
+            .tag("operation", "calculateDailyTime")
+            .tag("outcome", "success")
+            .timer()
+            .count()
+        == 1;
+  }
+
+  @Test
+  void testCalculateMonthlyTimeForAll() {
+    String month = "2025-03";
+    // Mars 2025 : 21 jours ouvrés, soit 8820 minutes attendues
+    EmployeeMinutes sufficient =
+        EmployeeMinutes.builder().employeeId("1").totalMinutes(8820).build();
+    EmployeeMinutes insufficient =
+        EmployeeMinutes.builder().employeeId("2").totalMinutes(900).unmatchedCount(1).build();
+
+    when(badgeRepository.sumMinutesByEmployee(
+            LocalDateTime.parse("2025-03-01T00:00"), LocalDateTime.parse("2025-04-01T00:00")))
+        .thenReturn(Flux.just(sufficient, insufficient));
+
+    StepVerifier.create(badgeService.calculateMonthlyTimeForAll(month))
+        .assertNext(
+            report -> {
+              assert report.getEmployeeId().equals("1");
+              assert report.getMonth().equals(month);
+              assert report.isSufficient();
+            })
+        .assertNext(
+            report -> {
+              assert report.getEmployeeId().equals("2");
+              assert report.getTotalMinutes() == 900;
+              assert !report.isSufficient();
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void testCalculateMonthlyTime_CachedUntilBackdatedPunch() {
+    String employeeId = "5";
+    String month = "2025-03";
+    LocalDateTime in = LocalDateTime.parse("2025-03-03T09:00");
+    BadgeRecord inRecord =
+        BadgeRecord.builder().employeeId(employeeId).timestamp(in).type(BadgeType.IN).build();
+    BadgeRecord outRecord =
+        BadgeRecord.builder()
+            .employeeId(employeeId)
+            .timestamp(in.plusHours(7))
+            .type(BadgeType.OUT)
+            .build();
+    when(badgeRepository.findByEmployeeIdAndMonth(employeeId, month))
+        .thenReturn(Flux.just(inRecord, outRecord));
+
+    // Mois écoulé : le second appel est servi par le cache
+    StepVerifier.create(badgeService.calculateMonthlyTime(employeeId, month))
+        .expectNextCount(1)
+        .verifyComplete();
+    StepVerifier.create(badgeService.calculateMonthlyTime(employeeId, month))
+        .expectNextCount(1)
+        .verifyComplete();
+    verify(badgeRepository, times(1)).findByEmployeeIdAndMonth(employeeId, month);
+
+    // Un badgeage rétroactif sur ce mois évince le rapport
+    StepVerifier.create(reportCache.onBadgeRecorded(List.of(inRecord))).verifyComplete();
+    StepVerifier.create(badgeService.calculateMonthlyTime(employeeId, month))
+        .expectNextCount(1)
+        .verifyComplete();
+    verify(badgeRepository, times(2)).findByEmployeeIdAndMonth(employeeId, month);
+  }
+
+  @Test
+  void testCalculateMonthlyTime_PrimaryRouteReadsPrimaryRange() {
+    String employeeId = "1";
+    String month = "2025-03";
+    LocalDateTime in = LocalDateTime.parse("2025-03-03T09:00");
+    // Rechargement juste après un badgeage de la période (voir TimeReportCacheTests)
+    doAnswer(
+            invocation ->
+                invocation.<Function<Route, Mono<TimeReport>>>getArgument(2).apply(Route.PRIMARY))
+        .when(reportCache)
+        .get(eq(employeeId), eq(month), any());
+    when(badgeRepository.findRange(
+            employeeId,
+            LocalDate.parse("2025-03-01").atStartOfDay(),
+            LocalDate.parse("2025-04-01").atStartOfDay()))
+        .thenReturn(
+            Flux.just(
+                punch(employeeId, in, BadgeType.IN),
+                punch(employeeId, in.plusHours(7), BadgeType.OUT)));
+
+    StepVerifier.create(badgeService.calculateMonthlyTime(employeeId, month))
+        .assertNext(
+            report -> {
+              assert report.getTotalMinutes() == 420;
+            })
+        .verifyComplete();
+    verify(badgeRepository, never()).findByEmployeeIdAndMonth(any(), any());
+  }
+
+  @Test
+  void testAddBadgeRecord_ReplayedEventReturnsOriginal() {
+    String employeeId = "1";
+    Employee employee = Employee.builder().id(employeeId).build();
+    LocalDateTime now = LocalDateTime.now();
+    BadgeDto retry =
+        BadgeDto.builder().timestamp(now).type(BadgeType.IN).eventId("terminal-42").build();
+    BadgeRecord original =
+        BadgeRecord.builder()
+            .id("original")
+            .employeeId(employeeId)
+            .timestamp(now)
+            .type(BadgeType.IN)
+            .eventId("terminal-42")
+            .build();
+    BadgeRecordListener listener = mock(BadgeRecordListener.class);
+    listeners.add(listener);
+
+    when(employeeCache.findById(employeeId)).thenReturn(Mono.just(employee));
+    when(badgeRepository.insertIfAbsent(any(BadgeRecord.class))).thenReturn(Mono.just(original));
+
+    StepVerifier.create(badgeService.addBadgeRecord(employeeId, retry))
+        .expectNext(original)
+        .verifyComplete();
+
+    verify(badgeRepository, never()).save(any(BadgeRecord.class));
+    verify(listener, never()).onBadgeRecorded(anyList());
+    assert meterRegistry.get("badgeuse.punches").tag("result", "duplicate").counter().count() == 1;
+  }
+
+  @Test
+  void testAddBadgeRecord_AggregatesRefreshedBeforeReportEviction() {
+    String employeeId = "1";
+    BadgeDto badgeDto =
+        BadgeDto.builder().timestamp(LocalDateTime.now()).type(BadgeType.IN).build();
+    // Ordre d'enregistrement des beans quelconque, trié par Spring à l'injection de la liste
+    listeners.addAll(List.of(reportCache, presenceBoard, dailyAggregateService));
+    AnnotationAwareOrderComparator.sort(listeners);
+
+    when(employeeCache.findById(employeeId))
+        .thenReturn(Mono.just(Employee.builder().id(employeeId).build()));
+    when(badgeRepository.save(any(BadgeRecord.class)))
+        .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+    when(dailyAggregateService.onBadgeRecorded(anyList())).thenReturn(Mono.empty());
+    when(presenceBoard.onBadgeRecorded(anyList())).thenReturn(Mono.empty());
+
+    StepVerifier.create(badgeService.addBadgeRecord(employeeId, badgeDto))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    InOrder order = inOrder(dailyAggregateService, presenceBoard, reportCache);
+    order.verify(dailyAggregateService).onBadgeRecorded(anyList());
+    order.verify(presenceBoard).onBadgeRecorded(anyList());
+    order.verify(reportCache).onBadgeRecorded(anyList());
+  }
+
+  @Test
+  void testAddBadgeRecord_NewEventIsInserted() {
+    String employeeId = "1";
+    Employee employee = Employee.builder().id(employeeId).build();
+    BadgeDto badgeDto =
+        BadgeDto.builder()
+            .timestamp(LocalDateTime.now())
+            .type(BadgeType.OUT)
+            .eventId("terminal-43")
+            .build();
+
+    when(employeeCache.findById(employeeId)).thenReturn(Mono.just(employee));
+    when(badgeRepository.insertIfAbsent(any(BadgeRecord.class))).thenReturn(Mono.empty());
+
+    StepVerifier.create(badgeService.addBadgeRecord(employeeId, badgeDto))
+        .assertNext(
+            badgeRecord -> {
+              assert badgeRecord.getEventId().equals("terminal-43");
+              assert badgeRecord.getType() == BadgeType.OUT;
+            })
+        .verifyComplete();
+
+    verify(badgeRepository, never()).save(any(BadgeRecord.class));
+    assert meterRegistry.get("badgeuse.punches").tag("result", "accepted").counter().count() == 1;
+  }
+
+  @Test
+  void testCalculateRangeTime_PerDayBreakdown() {
+    String employeeId = "4";
+    // Vendredi 2 mai au lundi 5 mai 2025 : deux jours ouvrés, un badgeage le samedi
+    LocalDate start = LocalDate.parse("2025-05-02");
+    LocalDate end = LocalDate.parse("2025-05-05");
+    List<BadgeRecord> records =
+        List.of(
+            punch(employeeId, start.atTime(9, 0), BadgeType.IN),
+            punch(employeeId, start.atTime(17, 0), BadgeType.OUT),
+            punch(employeeId, start.plusDays(1).atTime(10, 0), BadgeType.IN),
+            punch(employeeId, start.plusDays(1).atTime(12, 0), BadgeType.OUT),
+            punch(employeeId, end.atTime(9, 0), BadgeType.IN),
+            punch(employeeId, end.atTime(15, 0), BadgeType.OUT));
+    when(badgeRepository.findReportRange(
+            employeeId, start.atStartOfDay(), end.plusDays(1).atStartOfDay()))
+        .thenReturn(Flux.fromIterable(records));
+    when(badgeRepository.findReportNeighbours(
+            employeeId, start.atStartOfDay(), end.plusDays(1).atStartOfDay()))
+        .thenReturn(Flux.empty());
+
+    StepVerifier.create(badgeService.calculateRangeTime(employeeId, start, end))
+        .assertNext(
+            report -> {
+              assert report.getDays().size() == 4;
+              // Vendredi : 480 min, samedi : 120 min non attendues, dimanche : aucun badgeage
+              assert report.getDays().get(0).getTotalMinutes() == 480;
+              assert report.getDays().get(1).isSufficient();
+              assert report.getDays().get(2).getTotalMinutes() == 0;
+              assert report.getDays().get(2).isSufficient();
+              // Lundi : 360 min < 420 attendues
+              assert !report.getDays().get(3).isSufficient();
+              assert report.getTotalMinutes() == 960;
+              assert report.getExpectedMinutes() == 840;
+              assert report.isSufficient();
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void testCalculateDailyTime_NightShiftCountsOnInDay() {
+    String employeeId = "4";
+    LocalDate day = LocalDate.parse("2025-03-03");
+    BadgeRecord in = punch(employeeId, day.atTime(22, 0), BadgeType.IN);
+    BadgeRecord out = punch(employeeId, day.plusDays(1).atTime(6, 0), BadgeType.OUT);
+    when(badgeRepository.findByEmployeeIdAndDate(employeeId, day.toString()))
+        .thenReturn(Flux.just(in));
+    when(badgeRepository.findReportNeighbours(
+            employeeId, day.atStartOfDay(), day.plusDays(1).atStartOfDay()))
+        .thenReturn(Flux.just(out));
+    when(badgeRepository.findByEmployeeIdAndDate(employeeId, day.plusDays(1).toString()))
+        .thenReturn(Flux.just(out));
+    when(badgeRepository.findReportNeighbours(
+            employeeId, day.plusDays(1).atStartOfDay(), day.plusDays(2).atStartOfDay()))
+        .thenReturn(Flux.just(in));
+
+    // Présence de 22h à 6h : 480 minutes le jour du IN, aucune le lendemain, sans anomalie
+    StepVerifier.create(badgeService.calculateDailyTime(employeeId, day.toString()))
+        .assertNext(
+            report -> {
+              assert report.getTotalMinutes() == 480;
+            })
+        .verifyComplete();
+    StepVerifier.create(badgeService.calculateDailyTime(employeeId, day.plusDays(1).toString()))
+        .assertNext(
+            report -> {
+              assert report.getTotalMinutes() == 0;
+            })
+        .verifyComplete();
+    assert meterRegistry.get("badgeuse.records.unmatched").counter().count() == 0;
+  }
+
+  @Test
+  void testCalculateRangeTime_InvalidRange() {
+    LocalDate start = LocalDate.parse("2025-05-05");
+
+    StepVerifier.create(badgeService.calculateRangeTime("4", start, start.minusDays(1)))
+        .expectError(InvalidRangeException.class)
+        .verify();
+    StepVerifier.create(badgeService.calculateRangeTime("4", start, start.plusDays(366)))
+        .expectError(InvalidRangeException.class)
+        .verify();
+    verify(badgeRepository, never()).findReportRange(any(), any(), any());
+  }
+
+  @Test
+  void testGetEmployeesStatusAt_MissingEmployeesAreOut() {
+    LocalDateTime at = LocalDateTime.parse("2025-05-05T14:05:00");
+    List<String> employeeIds = List.of("1", "2", "3");
+    when(badgeRepository.findLatestPerEmployee(at, employeeIds))
+        .thenReturn(
+            Flux.just(
+                new EmployeeStatus("1", BadgeType.IN, at.minusHours(5)),
+                new EmployeeStatus("3", BadgeType.OUT, at.minusHours(1))));
+
+    StepVerifier.create(badgeService.getEmployeesStatusAt(at, employeeIds))
+        .expectNext(new EmployeeStatus("1", BadgeType.IN, at.minusHours(5)))
+        .expectNext(new EmployeeStatus("3", BadgeType.OUT, at.minusHours(1)))
+        // Aucun badgeage avant l'instant : OUT, comme pour le statut d'un seul employé
+        .expectNext(new EmployeeStatus("2", BadgeType.OUT, null))
+        .verifyComplete();
+    verify(presenceBoard, never()).statusAt(any(), any());
+  }
+
+  @Test
+  void testCalculateMonthlyTime_ArchivedMonthReadsSummary() {
+    String employeeId = "5";
+    String month = "2024-11";
+    doReturn(Mono.just(true)).when(partitions).isArchived(YearMonth.parse(month));
+    when(summaryRepository.findById(MonthlySummary.idOf(employeeId, month)))
+        .thenReturn(
+            Mono.just(
+                MonthlySummary.builder()
+                    .employeeId(employeeId)
+                    .month(month)
+                    .workedMinutes(8_400)
+                    .build()));
+
+    StepVerifier.create(badgeService.calculateMonthlyTime(employeeId, month))
+        .assertNext(
+            report -> {
+              // Minutes du résumé fourni par le test, au-delà des 7 980 minutes attendues :
+              // 19 jours ouvrés en novembre 2024, les 1er et 11 novembre étant fériés
+              assert report.getTotalMinutes() == 8_400;
+              assert report.isSufficient();
+            })
+        .verifyComplete();
+    verify(badgeRepository, never()).findByEmployeeIdAndMonth(any(), any());
+  }
+
+  @Test
+  void testAddBadgeRecord_ClosedMonthRejected() {
+    LocalDateTime writableFrom = LocalDateTime.parse("2025-03-01T00:00:00");
+    doReturn(Mono.just(writableFrom)).when(partitions).writableFrom();
+    BadgeDto badgeDto =
+        BadgeDto.builder().timestamp(writableFrom.minusHours(6)).type(BadgeType.OUT).build();
+
+    StepVerifier.create(badgeService.addBadgeRecord("1", badgeDto))
+        .expectError(ClosedPeriodException.class)
+        .verify();
+
+    verify(badgeRepository, never()).save(any(BadgeRecord.class));
+    assert meterRegistry.get("badgeuse.punches").tag("result", "rejected").counter().count() == 1;
+  }
+
+  // Contrôle d'admission activé par les tests qui en ont besoin
+  private static BadgeuseProperties admissionDisabled() {
+    BadgeuseProperties properties = new BadgeuseProperties();
+    properties.getAdmission().setEmployeeBurst(2);
+    return properties;
+  }
+
+  private static BadgeuseProperties reportCacheEnabled() {
+    BadgeuseProperties properties = new BadgeuseProperties();
+    properties.getReportCache().setEnabled(true);
+    return properties;
+  }
+
+  private static BadgeRecord punch(String employeeId, LocalDateTime timestamp, BadgeType type) {
+    return BadgeRecord.builder().employeeId(employeeId).timestamp(timestamp).type(type).build();
+  }
 }
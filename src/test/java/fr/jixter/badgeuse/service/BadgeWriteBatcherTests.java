@@ -0,0 +1,102 @@
+package fr.jixter.badgeuse.service;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.BadgeType;
+import fr.jixter.badgeuse.repository.ReactiveBadgeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class BadgeWriteBatcherTests {
+
+  @Mock private ReactiveBadgeRepository badgeRepository;
+
+  private BadgeWriteBatcher writeBatcher;
+
+  @BeforeEach
+  void setUp() {
+    BadgeuseProperties properties = new BadgeuseProperties();
+    properties.getWriteCoalescing().setEnabled(true);
+    properties.getWriteCoalescing().setMaxBatchSize(3);
+    properties.getWriteCoalescing().setMaxDelay(Duration.ofSeconds(30));
+    writeBatcher =
+        new BadgeWriteBatcher(
+            badgeRepository, new BadgeuseMetrics(new SimpleMeterRegistry()), properties);
+  }
+
+  @Test
+  void testInsert_OneInsertManyPerBatchWithPerCallerResults() {
+    // Le second document du lot est en erreur
+    when(badgeRepository.insertAllUnordered(anyList()))
+        .thenReturn(Mono.just(Map.of(1, new DuplicateKeyException("E11000 duplicate key"))));
+    BadgeRecord first = punch("1");
+    BadgeRecord second = punch("2");
+    BadgeRecord third = punch("3");
+
+    // Lot complet (3 badgeages) : écrit sans attendre le délai maximal
+    Mono<BadgeRecord> firstResult = writeBatcher.insert(first).cache();
+    Mono<BadgeRecord> secondResult = writeBatcher.insert(second).cache();
+    Mono<BadgeRecord> thirdResult = writeBatcher.insert(third).cache();
+    firstResult.subscribe(record -> {}, e -> {});
+    secondResult.subscribe(record -> {}, e -> {});
+    thirdResult.subscribe(record -> {}, e -> {});
+
+    StepVerifier.create(firstResult)
+        .expectNext(first)
+        .expectComplete()
+        .verify(Duration.ofSeconds(5));
+    StepVerifier.create(secondResult)
+        .expectErrorMatches(
+            e ->
+                e instanceof DuplicateKeyException
+                    && e.getMessage().equals("E11000 duplicate key"))
+        .verify(Duration.ofSeconds(5));
+    StepVerifier.create(thirdResult)
+        .expectNext(third)
+        .expectComplete()
+        .verify(Duration.ofSeconds(5));
+
+    verify(badgeRepository, times(1)).insertAllUnordered(anyList());
+    verify(badgeRepository, never()).save(first);
+  }
+
+  @Test
+  void testInsert_FlushesPartialBatchOnClose() {
+    when(badgeRepository.insertAllUnordered(anyList())).thenReturn(Mono.just(Map.of()));
+    BadgeRecord record = punch("1");
+
+    Mono<BadgeRecord> result = writeBatcher.insert(record).cache();
+    result.subscribe();
+    writeBatcher.close();
+
+    StepVerifier.create(result)
+        .expectNext(record)
+        .expectComplete()
+        .verify(Duration.ofSeconds(5));
+  }
+
+  private static BadgeRecord punch(String employeeId) {
+    return BadgeRecord.builder()
+        .employeeId(employeeId)
+        .timestamp(LocalDateTime.parse("2025-03-03T09:00"))
+        .type(BadgeType.IN)
+        .build();
+  }
+}
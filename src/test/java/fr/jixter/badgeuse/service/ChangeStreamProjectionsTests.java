@@ -0,0 +1,295 @@
+package fr.jixter.badgeuse.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.BadgeType;
+import fr.jixter.badgeuse.domain.DailyAggregate;
+import fr.jixter.badgeuse.domain.Employee;
+import fr.jixter.badgeuse.domain.dto.TimeReport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class ChangeStreamProjectionsTests {
+
+  private static final BsonDocument TOKEN = new BsonDocument("_data", new BsonString("8265A1"));
+
+  @Mock private ReactiveMongoTemplate mongoTemplate;
+
+  @Mock private BadgeRecordProjection projection;
+
+  @Mock private EmployeeCache employeeCache;
+
+  @Mock private TimeReportCache reportCache;
+
+  private ChangeStreamProjections changeStreams;
+
+  @BeforeEach
+  void setUp() {
+    changeStreams =
+        new ChangeStreamProjections(
+            mongoTemplate,
+            new BadgeuseProperties(),
+            List.of(projection),
+            employeeCache,
+            reportCache,
+            new BadgeuseMetrics(new SimpleMeterRegistry()));
+  }
+
+  @Test
+  void testBadgeRecordEvents_AppliedAndResumedAfterToken() {
+    BadgeRecord badgeRecord =
+        BadgeRecord.builder()
+            .employeeId("1")
+            .timestamp(LocalDateTime.parse("2025-03-03T09:00:00"))
+            .type(BadgeType.IN)
+            .build();
+    ChangeStreamEvent<BadgeRecord> inserted = badgeEvent(badgeRecord);
+    when(mongoTemplate.getCollectionName(BadgeRecord.class)).thenReturn("badge_records");
+    when(mongoTemplate.changeStream(
+            eq("badge_records"), any(ChangeStreamOptions.class), eq(BadgeRecord.class)))
+        .thenReturn(
+            Flux.just(inserted)
+                .concatWith(Flux.error(new MongoSocketReadException("coupure", null))))
+        .thenReturn(Flux.never());
+    when(projection.onBadgeRecorded(List.of(badgeRecord))).thenReturn(Mono.empty());
+
+    StepVerifier.withVirtualTime(() -> changeStreams.badgeRecordEvents())
+        .expectNext(inserted)
+        .thenAwait(Duration.ofSeconds(2))
+        .thenCancel()
+        .verify();
+
+    ArgumentCaptor<ChangeStreamOptions> options =
+        ArgumentCaptor.forClass(ChangeStreamOptions.class);
+    verify(mongoTemplate, times(2))
+        .changeStream(eq("badge_records"), options.capture(), eq(BadgeRecord.class));
+    assert options.getAllValues().get(0).getResumeToken().isEmpty();
+    // Reprise au jeton du dernier badgeage appliqué
+    assert options.getAllValues().get(1).getResumeToken().equals(Optional.of(TOKEN));
+  }
+
+  @Test
+  void testBadgeRecordEvents_HistoryLost_ResetsProjections() {
+    ChangeStreamEvent<BadgeRecord> inserted =
+        badgeEvent(BadgeRecord.builder().employeeId("1").type(BadgeType.IN).build());
+    MongoCommandException historyLost =
+        new MongoCommandException(
+            new BsonDocument("code", new BsonInt32(286))
+                .append("errmsg", new BsonString("resume point no longer in the oplog")),
+            new ServerAddress());
+    when(mongoTemplate.getCollectionName(BadgeRecord.class)).thenReturn("badge_records");
+    when(mongoTemplate.changeStream(
+            eq("badge_records"), any(ChangeStreamOptions.class), eq(BadgeRecord.class)))
+        .thenReturn(Flux.just(inserted).concatWith(Flux.error(historyLost)))
+        .thenReturn(Flux.never());
+    when(projection.onBadgeRecorded(any())).thenReturn(Mono.empty());
+    when(projection.reset()).thenReturn(Mono.empty());
+
+    StepVerifier.withVirtualTime(() -> changeStreams.badgeRecordEvents())
+        .expectNext(inserted)
+        .thenAwait(Duration.ofSeconds(2))
+        .thenCancel()
+        .verify();
+
+    verify(projection).reset();
+    ArgumentCaptor<ChangeStreamOptions> options =
+        ArgumentCaptor.forClass(ChangeStreamOptions.class);
+    verify(mongoTemplate, times(2))
+        .changeStream(eq("badge_records"), options.capture(), eq(BadgeRecord.class));
+    assert options.getAllValues().get(1).getResumeToken().isEmpty();
+  }
+
+  @Test
+  void testEmployeeEvents_InvalidateCachedEmployee() {
+    ObjectId id = new ObjectId();
+    @SuppressWarnings("unchecked")
+    ChangeStreamDocument<Document> raw = mock(ChangeStreamDocument.class);
+    when(raw.getDocumentKey()).thenReturn(new BsonDocument("_id", new BsonObjectId(id)));
+    @SuppressWarnings("unchecked")
+    ChangeStreamEvent<Document> deleted = mock(ChangeStreamEvent.class);
+    when(deleted.getOperationType()).thenReturn(OperationType.DELETE);
+    when(deleted.getRaw()).thenReturn(raw);
+    when(deleted.getResumeToken()).thenReturn(TOKEN);
+    when(mongoTemplate.getCollectionName(Employee.class)).thenReturn("employees");
+    when(mongoTemplate.changeStream(
+            eq("employees"), any(ChangeStreamOptions.class), eq(Document.class)))
+        .thenReturn(Flux.just(deleted).concatWith(Flux.never()));
+
+    StepVerifier.create(changeStreams.employeeEvents())
+        .expectNext(deleted)
+        .thenCancel()
+        .verify();
+
+    verify(employeeCache).invalidate(id.toHexString());
+  }
+
+  @Test
+  void testStart_StreamsOpenAtOperationTimeReadBeforeWarmUp() {
+    BadgeuseProperties properties = new BadgeuseProperties();
+    properties.getChangeStreams().setEnabled(true);
+    ChangeStreamProjections started =
+        new ChangeStreamProjections(
+            mongoTemplate,
+            properties,
+            List.of(projection),
+            employeeCache,
+            reportCache,
+            new BadgeuseMetrics(new SimpleMeterRegistry()));
+    BsonTimestamp operationTime = new BsonTimestamp(1_741_000_000, 3);
+    when(mongoTemplate.executeCommand(new Document("ping", 1)))
+        .thenReturn(Mono.just(new Document("ok", 1.0).append("operationTime", operationTime)));
+    when(mongoTemplate.getCollectionName(BadgeRecord.class)).thenReturn("badge_records");
+    when(mongoTemplate.getCollectionName(Employee.class)).thenReturn("employees");
+    when(mongoTemplate.changeStream(
+            eq("badge_records"), any(ChangeStreamOptions.class), eq(BadgeRecord.class)))
+        .thenReturn(Flux.never());
+    when(mongoTemplate.changeStream(
+            eq("employees"), any(ChangeStreamOptions.class), eq(Document.class)))
+        .thenReturn(Flux.never());
+
+    started.start();
+    started.stop();
+
+    // Les badgeages écrits pendant le chargement du tableau de présence sont rejoués
+    ArgumentCaptor<ChangeStreamOptions> options =
+        ArgumentCaptor.forClass(ChangeStreamOptions.class);
+    verify(mongoTemplate)
+        .changeStream(eq("badge_records"), options.capture(), eq(BadgeRecord.class));
+    assert options.getValue().getResumeBsonTimestamp().equals(Optional.of(operationTime));
+    assert options.getValue().getResumeToken().isEmpty();
+  }
+
+  @Test
+  void testAggregateEvents_TwoNodesEvictReportsComputedBeforeTheAggregate() {
+    BadgeuseProperties properties = new BadgeuseProperties();
+    properties.getReportCache().setEnabled(true);
+    properties.getAggregates().setEnabled(true);
+    LocalDate day = LocalDate.parse("2025-03-03");
+    BadgeRecord out =
+        BadgeRecord.builder()
+            .employeeId("1")
+            .timestamp(day.atTime(17, 0))
+            .type(BadgeType.OUT)
+            .build();
+    // Agrégat persisté, lu par les deux instances, et flux communs aux deux instances
+    AtomicLong aggregateMinutes = new AtomicLong();
+    Sinks.Many<ChangeStreamEvent<BadgeRecord>> badgeEvents =
+        Sinks.many().multicast().directBestEffort();
+    Sinks.Many<ChangeStreamEvent<Document>> aggregateEvents =
+        Sinks.many().multicast().directBestEffort();
+    when(mongoTemplate.getCollectionName(BadgeRecord.class)).thenReturn("badge_records");
+    when(mongoTemplate.getCollectionName(DailyAggregate.class)).thenReturn("daily_aggregates");
+    when(mongoTemplate.changeStream(
+            eq("badge_records"), any(ChangeStreamOptions.class), eq(BadgeRecord.class)))
+        .thenReturn(badgeEvents.asFlux());
+    when(mongoTemplate.changeStream(
+            eq("daily_aggregates"), any(ChangeStreamOptions.class), eq(Document.class)))
+        .thenReturn(aggregateEvents.asFlux());
+    List<TimeReportCache> caches = new ArrayList<>();
+    List<Disposable> subscriptions = new ArrayList<>();
+    for (int node = 0; node < 2; node++) {
+      TimeReportCache nodeCache = new TimeReportCache(properties);
+      ChangeStreamProjections nodeStreams =
+          new ChangeStreamProjections(
+              mongoTemplate,
+              properties,
+              List.of(nodeCache),
+              employeeCache,
+              nodeCache,
+              new BadgeuseMetrics(new SimpleMeterRegistry()));
+      caches.add(nodeCache);
+      subscriptions.add(nodeStreams.badgeRecordEvents().subscribe());
+      subscriptions.add(nodeStreams.aggregateEvents().subscribe());
+    }
+    Function<TimeReportCache, Long> dailyReport =
+        nodeCache ->
+            nodeCache
+                .get(
+                    "1",
+                    day.toString(),
+                    route ->
+                        Mono.fromSupplier(
+                            () ->
+                                TimeReport.builder()
+                                    .employeeId("1")
+                                    .date(day.toString())
+                                    .totalMinutes(aggregateMinutes.get())
+                                    .build()))
+                .map(TimeReport::getTotalMinutes)
+                .block();
+
+    // Le badgeage du premier nœud atteint le second avant la mise à jour de l'agrégat : le
+    // rapport recalculé aussitôt reprend l'ancien agrégat
+    badgeEvents.tryEmitNext(badgeEvent(out));
+    assert dailyReport.apply(caches.get(1)) == 0;
+    aggregateMinutes.set(480);
+    aggregateEvents.tryEmitNext(aggregateEvent(DailyAggregate.idOf("1", day)));
+
+    // L'écriture de l'agrégat évince ce rapport sur chacun des deux nœuds
+    assert dailyReport.apply(caches.get(0)) == 480;
+    assert dailyReport.apply(caches.get(1)) == 480;
+    subscriptions.forEach(Disposable::dispose);
+  }
+
+  private static ChangeStreamEvent<Document> aggregateEvent(String id) {
+    @SuppressWarnings("unchecked")
+    ChangeStreamDocument<Document> raw = mock(ChangeStreamDocument.class);
+    when(raw.getDocumentKey()).thenReturn(new BsonDocument("_id", new BsonString(id)));
+    @SuppressWarnings("unchecked")
+    ChangeStreamEvent<Document> event = mock(ChangeStreamEvent.class);
+    when(event.getOperationType()).thenReturn(OperationType.UPDATE);
+    when(event.getRaw()).thenReturn(raw);
+    when(event.getResumeToken()).thenReturn(TOKEN);
+    return event;
+  }
+
+  private static ChangeStreamEvent<BadgeRecord> badgeEvent(BadgeRecord badgeRecord) {
+    @SuppressWarnings("unchecked")
+    ChangeStreamEvent<BadgeRecord> event = mock(ChangeStreamEvent.class);
+    when(event.getOperationType()).thenReturn(OperationType.INSERT);
+    when(event.getBody()).thenReturn(badgeRecord);
+    when(event.getResumeToken()).thenReturn(TOKEN);
+    return event;
+  }
+}
@@ -0,0 +1,257 @@
+package fr.jixter.badgeuse.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.BadgeType;
+import fr.jixter.badgeuse.domain.DailyAggregate;
+import fr.jixter.badgeuse.repository.BadgePartitions;
+import fr.jixter.badgeuse.repository.ReactiveBadgeRepository;
+import fr.jixter.badgeuse.repository.ReactiveDailyAggregateRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class DailyAggregateServiceTests {
+
+  @Mock private ReactiveBadgeRepository badgeRepository;
+
+  @Mock private ReactiveDailyAggregateRepository aggregateRepository;
+
+  @Spy private BadgeuseProperties properties = new BadgeuseProperties();
+
+  @Spy
+  private BadgePartitions partitions =
+      new BadgePartitions(mock(ReactiveMongoTemplate.class), new BadgeuseProperties());
+
+  @Spy
+  private AnomalyTracker anomalyTracker =
+      new AnomalyTracker(new BadgeuseProperties(), new BadgeuseMetrics(new SimpleMeterRegistry()));
+
+  @InjectMocks private DailyAggregateService dailyAggregateService;
+
+  @BeforeEach
+  void enableAggregates() {
+    properties.getAggregates().setEnabled(true);
+  }
+
+  @Test
+  void testOnBadgeRecorded_RefreshesEachDayOnce() {
+    LocalDate day = LocalDate.parse("2025-03-03");
+    BadgeRecord in = punch("1", day.atTime(9, 0), BadgeType.IN);
+    BadgeRecord out = punch("1", day.atTime(12, 30), BadgeType.OUT);
+    BadgeRecord lateIn = punch("1", day.atTime(14, 0), BadgeType.IN);
+
+    when(badgeRepository.findRange("1", day.atStartOfDay(), day.plusDays(1).atStartOfDay()))
+        .thenReturn(Flux.just(in, out, lateIn));
+    when(badgeRepository.countInMonth("1", YearMonth.from(day))).thenReturn(Mono.just(3L));
+    when(badgeRepository.findNeighbours("1", day.atStartOfDay(), day.plusDays(1).atStartOfDay()))
+        .thenReturn(Flux.empty());
+    when(aggregateRepository.saveIfNewer(any(DailyAggregate.class))).thenReturn(Mono.empty());
+
+    StepVerifier.create(dailyAggregateService.onBadgeRecorded(List.of(in, out, lateIn)))
+        .verifyComplete();
+
+    ArgumentCaptor<DailyAggregate> captor = ArgumentCaptor.forClass(DailyAggregate.class);
+    verify(badgeRepository, times(1))
+        .findRange("1", day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+    verify(aggregateRepository).saveIfNewer(captor.capture());
+    DailyAggregate aggregate = captor.getValue();
+    assert aggregate.getId().equals("1_2025-03-03");
+    assert aggregate.getWorkedMinutes() == 210;
+    // Le IN de 14h n'a pas de OUT correspondant
+    assert aggregate.getUnmatchedCount() == 1;
+    assert aggregate.getPunchCount() == 3;
+    assert aggregate.getMonthPunchCount() == 3;
+  }
+
+  @Test
+  void testOnBadgeRecorded_Disabled() {
+    properties.getAggregates().setEnabled(false);
+    BadgeRecord in = punch("1", LocalDateTime.now(), BadgeType.IN);
+
+    StepVerifier.create(dailyAggregateService.onBadgeRecorded(List.of(in))).verifyComplete();
+
+    verify(aggregateRepository, never()).saveIfNewer(any(DailyAggregate.class));
+  }
+
+  @Test
+  void testRebuild() {
+    LocalDate day1 = LocalDate.parse("2025-03-03");
+    LocalDate day2 = LocalDate.parse("2025-03-04");
+    when(aggregateRepository.deleteAll()).thenReturn(Mono.empty());
+    when(badgeRepository.findAllByOrderByEmployeeIdAscTimestampAsc())
+        .thenReturn(
+            Flux.just(
+                punch("1", day1.atTime(9, 0), BadgeType.IN),
+                punch("1", day1.atTime(17, 0), BadgeType.OUT),
+                punch("1", day2.atTime(9, 0), BadgeType.IN),
+                punch("2", day2.atTime(8, 0), BadgeType.IN),
+                punch("2", day2.atTime(16, 0), BadgeType.OUT)));
+    when(aggregateRepository.save(any(DailyAggregate.class)))
+        .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+    StepVerifier.create(dailyAggregateService.rebuild()).expectNext(3L).verifyComplete();
+  }
+
+  @Test
+  void testRefreshDay_NightShiftAndMidnightPunchMatchRebuild() {
+    LocalDate day1 = LocalDate.parse("2025-03-03");
+    LocalDate day2 = day1.plusDays(1);
+    LocalDate day3 = day1.plusDays(2);
+    // Présence de 22h à 6h le lendemain, puis présence commençant à minuit
+    List<BadgeRecord> records =
+        List.of(
+            punch("1", day1.atTime(22, 0), BadgeType.IN),
+            punch("1", day2.atTime(6, 0), BadgeType.OUT),
+            punch("1", day3.atStartOfDay(), BadgeType.IN),
+            punch("1", day3.atTime(4, 0), BadgeType.OUT));
+    stubStoredPunches(records);
+    when(aggregateRepository.saveIfNewer(any(DailyAggregate.class))).thenReturn(Mono.empty());
+    when(aggregateRepository.deleteAll()).thenReturn(Mono.empty());
+    when(badgeRepository.findAllByOrderByEmployeeIdAscTimestampAsc())
+        .thenReturn(Flux.fromIterable(records));
+    when(aggregateRepository.save(any(DailyAggregate.class)))
+        .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+    StepVerifier.create(dailyAggregateService.onBadgeRecorded(records)).verifyComplete();
+    StepVerifier.create(dailyAggregateService.rebuild()).expectNext(3L).verifyComplete();
+
+    ArgumentCaptor<DailyAggregate> refreshed = ArgumentCaptor.forClass(DailyAggregate.class);
+    verify(aggregateRepository, atLeast(3)).saveIfNewer(refreshed.capture());
+    ArgumentCaptor<DailyAggregate> rebuilt = ArgumentCaptor.forClass(DailyAggregate.class);
+    verify(aggregateRepository, times(3)).save(rebuilt.capture());
+    assert new HashSet<>(refreshed.getAllValues()).equals(new HashSet<>(rebuilt.getAllValues()));
+    // La présence franchissant minuit est comptée le jour de son IN, sans anomalie
+    Map<LocalDate, DailyAggregate> days =
+        rebuilt.getAllValues().stream()
+            .collect(Collectors.toMap(DailyAggregate::getDate, aggregate -> aggregate));
+    assert days.get(day1).getWorkedMinutes() == 480;
+    assert days.get(day1).getUnmatchedCount() == 0;
+    assert days.get(day2).getWorkedMinutes() == 0;
+    assert days.get(day2).getUnmatchedCount() == 0;
+    assert days.get(day3).getWorkedMinutes() == 240;
+  }
+
+  @Test
+  void testRefreshDay_OutClosingNightShiftRecomputesPreviousDay() {
+    LocalDate day1 = LocalDate.parse("2025-03-03");
+    BadgeRecord in = punch("1", day1.atTime(22, 0), BadgeType.IN);
+    BadgeRecord out = punch("1", day1.plusDays(1).atTime(6, 0), BadgeType.OUT);
+    stubStoredPunches(List.of(in, out));
+    when(aggregateRepository.saveIfNewer(any(DailyAggregate.class))).thenReturn(Mono.empty());
+
+    // Seul le OUT vient d'être écrit : le IN de la veille avait été compté non apparié
+    StepVerifier.create(dailyAggregateService.onBadgeRecorded(List.of(out))).verifyComplete();
+
+    ArgumentCaptor<DailyAggregate> refreshed = ArgumentCaptor.forClass(DailyAggregate.class);
+    verify(aggregateRepository, times(2)).saveIfNewer(refreshed.capture());
+    DailyAggregate outDay = refreshed.getAllValues().get(0);
+    assert outDay.getDate().equals(day1.plusDays(1));
+    assert outDay.getWorkedMinutes() == 0 && outDay.getUnmatchedCount() == 0;
+    DailyAggregate inDay = refreshed.getAllValues().get(1);
+    assert inDay.getDate().equals(day1);
+    assert inDay.getWorkedMinutes() == 480 && inDay.getUnmatchedCount() == 0;
+    assert inDay.getMonthPunchCount() == 2;
+  }
+
+  @Test
+  void testRefreshDay_NoPairAcrossMonths() {
+    LocalDate lastDay = LocalDate.parse("2025-03-31");
+    BadgeRecord in = punch("1", lastDay.atTime(22, 0), BadgeType.IN);
+    BadgeRecord out = punch("1", lastDay.plusDays(1).atTime(6, 0), BadgeType.OUT);
+    stubStoredPunches(List.of(in, out));
+    when(aggregateRepository.saveIfNewer(any(DailyAggregate.class))).thenReturn(Mono.empty());
+
+    StepVerifier.create(dailyAggregateService.onBadgeRecorded(List.of(in, out)))
+        .verifyComplete();
+
+    // Comme le rapport mensuel, qui n'apparie que les badgeages du mois
+    ArgumentCaptor<DailyAggregate> refreshed = ArgumentCaptor.forClass(DailyAggregate.class);
+    verify(aggregateRepository, times(2)).saveIfNewer(refreshed.capture());
+    refreshed
+        .getAllValues()
+        .forEach(
+            aggregate -> {
+              assert aggregate.getWorkedMinutes() == 0;
+              assert aggregate.getUnmatchedCount() == 1;
+            });
+  }
+
+  // Badgeages enregistrés d'un employé, triés, servis par findRange, findNeighbours et countInMonth
+  private void stubStoredPunches(List<BadgeRecord> records) {
+    lenient()
+        .when(badgeRepository.findRange(eq("1"), any(), any()))
+        .thenAnswer(
+            invocation ->
+                Flux.fromIterable(records)
+                    .filter(
+                        punch ->
+                            !punch.getTimestamp().isBefore(invocation.getArgument(1))
+                                && punch.getTimestamp().isBefore(invocation.getArgument(2))));
+    lenient()
+        .when(badgeRepository.findNeighbours(eq("1"), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              LocalDateTime start = invocation.getArgument(1);
+              LocalDateTime end = invocation.getArgument(2);
+              YearMonth first = YearMonth.from(start);
+              YearMonth last = YearMonth.from(end.minusNanos(1));
+              Flux<BadgeRecord> stored = Flux.fromIterable(records);
+              return Flux.concat(
+                  stored
+                      .filter(
+                          punch ->
+                              punch.getTimestamp().isBefore(start)
+                                  && YearMonth.from(punch.getTimestamp()).equals(first))
+                      .takeLast(1),
+                  stored
+                      .filter(
+                          punch ->
+                              !punch.getTimestamp().isBefore(end)
+                                  && YearMonth.from(punch.getTimestamp()).equals(last))
+                      .take(1));
+            });
+    lenient()
+        .when(badgeRepository.countInMonth(eq("1"), any()))
+        .thenAnswer(
+            invocation ->
+                Flux.fromIterable(records)
+                    .filter(
+                        punch ->
+                            YearMonth.from(punch.getTimestamp())
+                                .equals(invocation.getArgument(1)))
+                    .count());
+  }
+
+  private static BadgeRecord punch(String employeeId, LocalDateTime timestamp, BadgeType type) {
+    return BadgeRecord.builder().employeeId(employeeId).timestamp(timestamp).type(type).build();
+  }
+}
@@ -0,0 +1,64 @@
+package fr.jixter.badgeuse.service;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.Employee;
+import fr.jixter.badgeuse.repository.ReactiveEmployeeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class EmployeeCacheTests {
+
+  @Mock private ReactiveEmployeeRepository employeeRepository;
+
+  private EmployeeCache employeeCache;
+
+  @BeforeEach
+  void setUp() {
+    employeeCache = new EmployeeCache(employeeRepository, new BadgeuseProperties());
+  }
+
+  @Test
+  void testFindById_LoadsOnce() {
+    Employee employee = Employee.builder().id("1").name("John Doe").build();
+    when(employeeRepository.findById("1")).thenReturn(Mono.just(employee));
+
+    StepVerifier.create(employeeCache.findById("1")).expectNext(employee).verifyComplete();
+    StepVerifier.create(employeeCache.findById("1")).expectNext(employee).verifyComplete();
+
+    verify(employeeRepository, times(1)).findById("1");
+    assert employeeCache.stats().hitCount() == 1;
+    assert employeeCache.stats().missCount() == 1;
+  }
+
+  @Test
+  void testFindById_NegativeCaching() {
+    when(employeeRepository.findById("unknown")).thenReturn(Mono.empty());
+
+    StepVerifier.create(employeeCache.findById("unknown")).verifyComplete();
+    StepVerifier.create(employeeCache.findById("unknown")).verifyComplete();
+
+    verify(employeeRepository, times(1)).findById("unknown");
+  }
+
+  @Test
+  void testInvalidate() {
+    Employee employee = Employee.builder().id("1").name("John Doe").build();
+    when(employeeRepository.findById("1")).thenReturn(Mono.just(employee));
+
+    StepVerifier.create(employeeCache.findById("1")).expectNext(employee).verifyComplete();
+    employeeCache.invalidate("1");
+    StepVerifier.create(employeeCache.findById("1")).expectNext(employee).verifyComplete();
+
+    verify(employeeRepository, times(2)).findById("1");
+  }
+}
@@ -4,15 +4,21 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import fr.jixter.badgeuse.config.BadgeuseProperties;
 import fr.jixter.badgeuse.domain.Employee;
 import fr.jixter.badgeuse.domain.dto.EmployeeDto;
+import fr.jixter.badgeuse.exception.InvalidCursorException;
 import fr.jixter.badgeuse.exception.ResourceNotFoundException;
 import fr.jixter.badgeuse.repository.ReactiveEmployeeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -23,9 +29,17 @@ class EmployeeServiceTests {
   @Mock
   private ReactiveEmployeeRepository employeeRepository;
 
-  @InjectMocks
   private EmployeeService employeeService;
 
+  @BeforeEach
+  void setUp() {
+    // Cache réel devant le repository simulé : chaque test part d'un cache vide
+    employeeService = new EmployeeService(
+        employeeRepository,
+        new EmployeeCache(employeeRepository, new BadgeuseProperties()),
+        new BadgeuseMetrics(new SimpleMeterRegistry()));
+  }
+
   @Test
   void testCreateEmployee() {
     EmployeeDto employeeDto = EmployeeDto.builder()
@@ -140,27 +154,47 @@ class EmployeeServiceTests {
   }
 
   @Test
-  void testGetAllEmployees() {
-    Employee employee1 = Employee.builder()
-        .id("1")
-        .name("John Doe")
-        .email("john@example.com")
-        .build();
-    Employee employee2 = Employee.builder()
-        .id("2")
-        .name("Jane Doe")
-        .email("jane@example.com")
-        .build();
-
-    when(employeeRepository.findAll()).thenReturn(Flux.just(employee1, employee2));
-
-    Flux<Employee> result = employeeService.getAllEmployees();
+  void testGetEmployeesPage_FirstPageHasCursor() {
+    Employee employee1 = Employee.builder().id(new ObjectId().toHexString()).build();
+    Employee employee2 = Employee.builder().id(new ObjectId().toHexString()).build();
+    Employee employee3 = Employee.builder().id(new ObjectId().toHexString()).build();
+
+    // Un employé de plus que la taille de page est demandé pour détecter la page suivante
+    when(employeeRepository.findAllByOrderByIdAsc(Limit.of(3)))
+        .thenReturn(Flux.just(employee1, employee2, employee3));
+
+    StepVerifier.create(employeeService.getEmployeesPage(null, 2))
+        .assertNext(
+            page -> {
+              assert page.getItems().equals(List.of(employee1, employee2));
+              assert EmployeeService.decodeCursor(page.getNextCursor())
+                  .equals(employee2.getId());
+            })
+        .verifyComplete();
+  }
 
-    StepVerifier.create(result)
-        .expectNext(employee1)
-        .expectNext(employee2)
+  @Test
+  void testGetEmployeesPage_LastPageAfterCursor() {
+    String lastId = new ObjectId().toHexString();
+    Employee employee = Employee.builder().id(new ObjectId().toHexString()).build();
+
+    when(employeeRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(3)))
+        .thenReturn(Flux.just(employee));
+
+    StepVerifier.create(
+            employeeService.getEmployeesPage(EmployeeService.encodeCursor(lastId), 2))
+        .assertNext(
+            page -> {
+              assert page.getItems().equals(List.of(employee));
+              assert page.getNextCursor() == null;
+            })
         .verifyComplete();
+  }
 
-    verify(employeeRepository).findAll();
+  @Test
+  void testGetEmployeesPage_InvalidCursor() {
+    StepVerifier.create(employeeService.getEmployeesPage("not-a-cursor", 50))
+        .expectError(InvalidCursorException.class)
+        .verify();
   }
 }
@@ -0,0 +1,162 @@
+package fr.jixter.badgeuse.service;
+
+import static org.mockito.Mockito.when;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.BadgeType;
+import fr.jixter.badgeuse.domain.dto.EmployeeStatus;
+import fr.jixter.badgeuse.repository.ReactiveBadgeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class PresenceBoardTests {
+
+  private static final LocalDateTime MORNING = LocalDateTime.parse("2025-03-03T09:00");
+
+  @Mock private ReactiveBadgeRepository badgeRepository;
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private PresenceBoard presenceBoard;
+
+  @BeforeEach
+  void setUp() {
+    BadgeuseProperties properties = new BadgeuseProperties();
+    properties.getPresence().setEnabled(true);
+    presenceBoard = new PresenceBoard(badgeRepository, properties, new BadgeuseMetrics(registry));
+  }
+
+  @Test
+  void testStatusAt_BeforeWarmUp() {
+    assert presenceBoard.statusAt("1", MORNING).isEmpty();
+  }
+
+  @Test
+  void testStatusAt_AfterWarmUp() {
+    when(badgeRepository.findLatestPerEmployee(null, null))
+        .thenReturn(
+            Flux.just(
+                EmployeeStatus.builder()
+                    .employeeId("1")
+                    .type(BadgeType.IN)
+                    .timestamp(MORNING)
+                    .build()));
+
+    presenceBoard.warmUp();
+
+    assert presenceBoard.isReady();
+    assert presenceBoard.statusAt("1", MORNING.plusHours(1)).equals(Optional.of(BadgeType.IN));
+    // Instant antérieur au dernier badgeage connu : la réponse doit venir de MongoDB
+    assert presenceBoard.statusAt("1", MORNING.minusHours(1)).isEmpty();
+    // Employé sans aucun badgeage
+    assert presenceBoard.statusAt("2", MORNING).equals(Optional.of(BadgeType.OUT));
+  }
+
+  @Test
+  void testDisabledByDefault_StatusAndSnapshotFromMongo() {
+    EmployeeStatus status =
+        EmployeeStatus.builder().employeeId("1").type(BadgeType.IN).timestamp(MORNING).build();
+    when(badgeRepository.findLatestPerEmployee(null, null)).thenReturn(Flux.just(status));
+    PresenceBoard disabled =
+        new PresenceBoard(
+            badgeRepository, new BadgeuseProperties(), new BadgeuseMetrics(registry));
+
+    disabled.warmUp();
+
+    // Sans tableau chargé, un employé inconnu de cette instance n'est pas supposé OUT
+    assert !disabled.isEnabled();
+    assert !disabled.isReady();
+    assert disabled.statusAt("2", MORNING).isEmpty();
+    StepVerifier.create(disabled.snapshot()).expectNext(status).verifyComplete();
+  }
+
+  @Test
+  void testOnBadgeRecorded_PublishesStatusChangesOnly() {
+    StepVerifier.create(presenceBoard.changes().take(2))
+        .then(
+            () ->
+                presenceBoard
+                    .onBadgeRecorded(
+                        List.of(
+                            punch(MORNING, BadgeType.IN),
+                            // Doublon du terminal : pas de changement de statut
+                            punch(MORNING.plusMinutes(1), BadgeType.IN),
+                            // Badgeage rétroactif plus ancien que le dernier connu : ignoré
+                            punch(MORNING.minusHours(1), BadgeType.OUT),
+                            punch(MORNING.plusHours(4), BadgeType.OUT)))
+                    .block())
+        .assertNext(
+            status -> {
+              assert status.getType() == BadgeType.IN;
+            })
+        .assertNext(
+            status -> {
+              assert status.getType() == BadgeType.OUT;
+              assert status.getTimestamp().equals(MORNING.plusHours(4));
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void testOnBadgeRecorded_ConcurrentWritersLoseNoChange() throws Exception {
+    int threads = 8;
+    int employeesPerThread = 500;
+    List<EmployeeStatus> received = Collections.synchronizedList(new ArrayList<>());
+    Disposable subscription = presenceBoard.changes().subscribe(received::add);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> writers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      writers.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int i = 0; i < employeesPerThread; i++) {
+                  presenceBoard
+                      .onBadgeRecorded(
+                          List.of(punch(thread + "-" + i, MORNING, BadgeType.IN)))
+                      .block();
+                }
+                return null;
+              }));
+    }
+
+    start.countDown();
+    for (Future<?> writer : writers) {
+      writer.get(10, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+    subscription.dispose();
+
+    // Chaque employé passe IN une fois : aucun changement ne doit être perdu
+    assert received.size() == threads * employeesPerThread;
+    assert registry.get("badgeuse.presence.dropped").counter().count() == 0;
+  }
+
+  private static BadgeRecord punch(LocalDateTime timestamp, BadgeType type) {
+    return punch("1", timestamp, type);
+  }
+
+  private static BadgeRecord punch(String employeeId, LocalDateTime timestamp, BadgeType type) {
+    return BadgeRecord.builder().employeeId(employeeId).timestamp(timestamp).type(type).build();
+  }
+}
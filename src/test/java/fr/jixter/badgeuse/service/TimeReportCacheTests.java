@@ -0,0 +1,81 @@
+package fr.jixter.badgeuse.service;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.BadgeRecord;
+import fr.jixter.badgeuse.domain.BadgeType;
+import fr.jixter.badgeuse.domain.dto.TimeReport;
+import fr.jixter.badgeuse.repository.ReadRouting.Route;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class TimeReportCacheTests {
+
+  private static final String MONTH = "2025-03";
+
+  private final List<Route> routes = new ArrayList<>();
+
+  @Test
+  void testEvictedByWrite_ReloadedFromPrimaryWithinStaleness() {
+    TimeReportCache reportCache = new TimeReportCache(properties(true));
+
+    load(reportCache, "1");
+    load(reportCache, "1");
+    assert routes.equals(List.of(Route.REPORTING));
+
+    StepVerifier.create(reportCache.onBadgeRecorded(List.of(punch("1")))).verifyComplete();
+    load(reportCache, "1");
+    // Le rapport rechargé après le badgeage ne vient pas d'un secondaire en retard
+    assert routes.equals(List.of(Route.REPORTING, Route.PRIMARY));
+
+    // Période d'un autre employé, sans badgeage récent
+    load(reportCache, "2");
+    assert routes.get(2) == Route.REPORTING;
+
+    StepVerifier.create(reportCache.reset()).verifyComplete();
+    load(reportCache, "2");
+    assert routes.get(3) == Route.PRIMARY;
+  }
+
+  @Test
+  void testEvictedByWrite_WithoutReadRoutingStaysOnReportingRoute() {
+    TimeReportCache reportCache = new TimeReportCache(properties(false));
+
+    load(reportCache, "1");
+    StepVerifier.create(reportCache.onBadgeRecorded(List.of(punch("1")))).verifyComplete();
+    load(reportCache, "1");
+
+    // Route REPORTING : même template que le primaire sans routage
+    assert routes.equals(List.of(Route.REPORTING, Route.REPORTING));
+  }
+
+  private void load(TimeReportCache reportCache, String employeeId) {
+    Function<Route, Mono<TimeReport>> loader =
+        route -> {
+          routes.add(route);
+          return Mono.just(TimeReport.builder().employeeId(employeeId).month(MONTH).build());
+        };
+    StepVerifier.create(reportCache.get(employeeId, MONTH, loader))
+        .expectNextCount(1)
+        .verifyComplete();
+  }
+
+  private static BadgeuseProperties properties(boolean readRouting) {
+    BadgeuseProperties properties = new BadgeuseProperties();
+    properties.getReportCache().setEnabled(true);
+    properties.getReadRouting().setEnabled(readRouting);
+    return properties;
+  }
+
+  private static BadgeRecord punch(String employeeId) {
+    return BadgeRecord.builder()
+        .employeeId(employeeId)
+        .timestamp(LocalDateTime.parse("2025-03-03T09:00"))
+        .type(BadgeType.IN)
+        .build();
+  }
+}
@@ -0,0 +1,75 @@
+package fr.jixter.badgeuse.service;
+
+import fr.jixter.badgeuse.config.BadgeuseProperties;
+import fr.jixter.badgeuse.domain.FrenchHoliday;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class WorkingDayCalendarTests {
+
+  @Test
+  void testWorkingDaysInMonth_WithoutHolidays() {
+    WorkingDayCalendar calendar = new WorkingDayCalendar(new BadgeuseProperties());
+
+    // Mars 2025 : 21 jours du lundi au vendredi, aucun jour férié
+    assert calendar.workingDaysInMonth(YearMonth.parse("2025-03")) == 21;
+  }
+
+  @Test
+  void testWorkingDaysInMonth_FrenchHolidays() {
+    WorkingDayCalendar calendar = new WorkingDayCalendar(new BadgeuseProperties());
+
+    // Mai 2025 : 22 jours de semaine, moins le 1er mai, le 8 mai et l'Ascension (29 mai)
+    assert calendar.workingDaysInMonth(YearMonth.parse("2025-05")) == 19;
+    // Lundi de Pâques 2024 : 1er avril
+    assert !calendar.isWorkingDay(LocalDate.parse("2024-04-01"));
+    // Lundi de Pentecôte 2025 : 9 juin
+    assert !calendar.isWorkingDay(LocalDate.parse("2025-06-09"));
+    assert calendar.isWorkingDay(LocalDate.parse("2025-06-10"));
+  }
+
+  @Test
+  void testConfiguredHolidaysAndClosureDays() {
+    BadgeuseProperties properties = new BadgeuseProperties();
+    properties.getCalendar().setHolidays(EnumSet.of(FrenchHoliday.LABOUR_DAY));
+    // Pont de l'Ascension
+    properties.getCalendar().setClosureDays(List.of(LocalDate.parse("2025-05-30")));
+    WorkingDayCalendar calendar = new WorkingDayCalendar(properties);
+
+    assert calendar.isWorkingDay(LocalDate.parse("2025-05-08"));
+    assert !calendar.isWorkingDay(LocalDate.parse("2025-05-30"));
+    assert calendar.workingDaysInMonth(YearMonth.parse("2025-05")) == 20;
+  }
+
+  @Test
+  void testWorkingDays_MatchesDayByDayCountAcrossYears() {
+    WorkingDayCalendar calendar = new WorkingDayCalendar(new BadgeuseProperties());
+    LocalDate from = LocalDate.parse("2023-12-20");
+    LocalDate to = LocalDate.parse("2026-01-10");
+
+    // Comptage jour par jour, indépendant du bitset
+    Set<FrenchHoliday> holidays = new BadgeuseProperties().getCalendar().getHolidays();
+    int expected = 0;
+    for (LocalDate day = from; day.isBefore(to); day = day.plusDays(1)) {
+      LocalDate date = day;
+      boolean weekend =
+          day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY;
+      boolean holiday =
+          holidays.stream().anyMatch(h -> h.dateIn(date.getYear()).equals(date));
+      if (!weekend && !holiday) {
+        expected++;
+      }
+    }
+    assert calendar.workingDays(from, to) == expected;
+    assert calendar.workingDays(to, from) == 0;
+    // Le 31 décembre 2024 tombe un mardi : dernier bit d'une année bissextile
+    assert LocalDate.parse("2024-12-31").getDayOfWeek() == DayOfWeek.TUESDAY;
+    assert calendar.workingDays(LocalDate.parse("2024-12-31"), LocalDate.parse("2025-01-01"))
+        == 1;
+  }
+}